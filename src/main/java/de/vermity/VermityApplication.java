@@ -2,8 +2,12 @@ package de.vermity;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@ImportRuntimeHints(VermityRuntimeHints.class)
+@EnableScheduling
 public class VermityApplication {
 
   public static void main(String[] args) {
@@ -0,0 +1,94 @@
+package de.vermity;
+
+import com.zaxxer.hikari.HikariDataSource;
+import java.util.List;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.context.properties.bind.BindableRuntimeHintsRegistrar;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Reachability metadata for the native image that Spring cannot derive on its own: the model
+ * classes serialized by Jackson and read by the invoice template, the classes JJWT loads by name,
+ * the resources of Flying Saucer and OpenPDF, the JDBC drivers, the pool settings bound onto the
+ * connection pools of {@link de.vermity.persistence.DataSourceConfig} and the JCache provider of
+ * the second-level cache with its configuration.
+ *
+ * @author Cedric Stumpf
+ */
+public class VermityRuntimeHints implements RuntimeHintsRegistrar {
+
+  private static final String MODEL_PACKAGE = "de.vermity.model";
+
+  private static final List<String> JJWT_TYPES = List.of(
+      "io.jsonwebtoken.impl.DefaultJwtBuilder",
+      "io.jsonwebtoken.impl.DefaultJwtParserBuilder",
+      "io.jsonwebtoken.impl.DefaultClaimsBuilder",
+      "io.jsonwebtoken.impl.DefaultJwtHeaderBuilder",
+      "io.jsonwebtoken.impl.io.StandardCompressionAlgorithms",
+      "io.jsonwebtoken.impl.security.StandardSecureDigestAlgorithms",
+      "io.jsonwebtoken.impl.security.StandardKeyAlgorithms",
+      "io.jsonwebtoken.impl.security.StandardEncryptionAlgorithms",
+      "io.jsonwebtoken.impl.security.StandardKeyOperations",
+      "io.jsonwebtoken.impl.security.KeysBridge",
+      "io.jsonwebtoken.jackson.io.JacksonSerializer",
+      "io.jsonwebtoken.jackson.io.JacksonDeserializer");
+
+  private static final List<String> JDBC_DRIVERS = List.of(
+      "org.mariadb.jdbc.Driver",
+      "org.h2.Driver");
+
+  private static final List<String> CACHE_TYPES = List.of(
+      "com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider",
+      "org.hibernate.cache.jcache.internal.JCacheRegionFactory");
+
+  private static final List<String> RESOURCE_PATTERNS = List.of(
+      "templates/**",
+      "META-INF/services/io.jsonwebtoken.*",
+      "reference.conf",
+      "resources/conf/*",
+      "resources/css/*",
+      "resources/schema/**",
+      "com/lowagie/text/**/*.afm",
+      "com/lowagie/text/**/*.txt",
+      "com/lowagie/text/**/*.properties");
+
+  @Override
+  public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+    BindingReflectionHintsRegistrar bindingRegistrar = new BindingReflectionHintsRegistrar();
+    modelClassNames().forEach(className -> bindingRegistrar.registerReflectionHints(
+        hints.reflection(), ClassUtils.resolveClassName(className, classLoader)));
+
+    JJWT_TYPES.forEach(type -> hints.reflection().registerType(TypeReference.of(type),
+        MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS));
+    JDBC_DRIVERS.forEach(type -> hints.reflection().registerType(TypeReference.of(type),
+        MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS));
+    CACHE_TYPES.forEach(type -> hints.reflection().registerType(TypeReference.of(type),
+        MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS));
+    RESOURCE_PATTERNS.forEach(pattern -> hints.resources().registerPattern(pattern));
+    BindableRuntimeHintsRegistrar.forTypes(HikariDataSource.class).registerHints(hints);
+  }
+
+  /**
+   * Entities, DTOs and enums, most controllers return {@code ResponseEntity<?>}, so Spring cannot
+   * see which of them are serialized
+   */
+  private static List<String> modelClassNames() {
+    ClassPathScanningCandidateComponentProvider scanner =
+        new ClassPathScanningCandidateComponentProvider(false) {
+          @Override
+          protected boolean isCandidateComponent(AnnotatedBeanDefinition beanDefinition) {
+            return true;
+          }
+        };
+    scanner.addIncludeFilter((metadataReader, metadataReaderFactory) -> true);
+    return scanner.findCandidateComponents(MODEL_PACKAGE).stream()
+        .map(BeanDefinition::getBeanClassName).toList();
+  }
+}
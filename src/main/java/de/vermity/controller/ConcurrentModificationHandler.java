@@ -0,0 +1,27 @@
+package de.vermity.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Answers requests that lost a race against a concurrent modification of the same entity with
+ * 409, the client can reload and try again.
+ *
+ * @author Cedric Stumpf
+ */
+@Slf4j
+@RestControllerAdvice
+public class ConcurrentModificationHandler {
+
+  @ExceptionHandler(OptimisticLockingFailureException.class)
+  public ResponseEntity<String> handleOptimisticLockingFailure(
+      OptimisticLockingFailureException e) {
+    log.warn("Concurrent modification: {}", e.getMessage());
+    return ResponseEntity.status(HttpStatus.CONFLICT)
+        .body("Die Daten wurden gleichzeitig geändert, bitte lade sie neu und versuche es erneut");
+  }
+}
@@ -15,6 +15,7 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @Slf4j
@@ -89,4 +90,21 @@ public class InvoiceController {
       @RequestHeader int buildingId, @RequestHeader String Authorization) {
     return invoiceService.updateInvoicePaidStatus(invoiceId, buildingId, Authorization);
   }
+
+  /**
+   * @return Error messages or a ZIP with the PDFs of all invoices of a building for a year
+   * @author Cedric Stumpf
+   */
+  @GetMapping(value = "exportInvoices")
+  @Operation(summary = "export all invoices of a building and year as zip, only for landlord")
+  @ApiResponses(value = {
+      @ApiResponse(responseCode = "200", description = "Invoices exported"),
+      @ApiResponse(responseCode = "400", description = "Building, Invoices not found"),
+      @ApiResponse(responseCode = "401", description = "Not authorized")
+
+  })
+  ResponseEntity<StreamingResponseBody> exportInvoices(@RequestHeader int buildingId,
+      @RequestHeader int year, @RequestHeader String Authorization) {
+    return invoiceService.exportInvoices(buildingId, year, Authorization);
+  }
 }
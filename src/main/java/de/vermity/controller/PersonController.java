@@ -6,6 +6,7 @@ import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 import de.vermity.model.dto.AuthPersonDto;
 import de.vermity.model.dto.LoginDto;
 import de.vermity.model.dto.PasswordChangeDto;
+import de.vermity.model.dto.RefreshTokenDto;
 import de.vermity.model.dto.RegisterDto;
 import de.vermity.service.PersonService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -83,6 +84,39 @@ public class PersonController {
     return personService.loginUser(loginDto);
   }
 
+  /**
+   * @param refreshTokenDto Refresh token
+   * @return Error message or new tokens on success
+   * @author Cedric Stumpf
+   */
+  @PostMapping(value = "refresh", consumes = APPLICATION_JSON_VALUE, produces = APPLICATION_JSON_VALUE)
+  @Operation(summary = "Renew the tokens of an user")
+  @ApiResponses(value = {
+      @ApiResponse(responseCode = "200", description = "Tokens renewed"),
+      @ApiResponse(responseCode = "401", description = "Invalid or revoked refresh token"),
+      @ApiResponse(responseCode = "500", description = "JWT could not be created"),
+  })
+  ResponseEntity<?> refresh(@RequestBody RefreshTokenDto refreshTokenDto) {
+    return personService.refreshToken(refreshTokenDto);
+  }
+
+  /**
+   * @param refreshTokenDto Refresh token to revoke as well, optional
+   * @param Authorization   JWT
+   * @return Error or success message
+   * @author Cedric Stumpf
+   */
+  @PostMapping(value = "/auth/logout")
+  @Operation(summary = "Logout an user")
+  @ApiResponses(value = {
+      @ApiResponse(responseCode = "200", description = "Tokens revoked"),
+      @ApiResponse(responseCode = "401", description = "Invalid credentials")
+  })
+  ResponseEntity<String> logout(@RequestBody(required = false) RefreshTokenDto refreshTokenDto,
+      @RequestHeader String Authorization) {
+    return personService.logoutUser(refreshTokenDto, Authorization);
+  }
+
   /**
    * @param Authorization JWT
    * @return Error message or user entity on success
@@ -12,13 +12,15 @@ import lombok.NonNull;
  * @param flatList
  * @param operatingCosts
  * @param address
+ * @param version
  * @author Jan Tiedt
  */
 public record BuildingDto(
     int buildingId,
     @NonNull List<FlatDto> flatList,
     @NonNull List<AdditionalCost> operatingCosts,
-    @NonNull AddressDto address
+    @NonNull AddressDto address,
+    long version
 ) implements Serializable {
 
 }
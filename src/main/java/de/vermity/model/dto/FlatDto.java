@@ -18,6 +18,7 @@ import lombok.NonNull;
  * @param coldRent
  * @param warmRent
  * @param invoiceList
+ * @param version
  * @author Cedric Stumpf
  */
 public record FlatDto(
@@ -30,7 +31,8 @@ public record FlatDto(
     @NonNull List<AdditionalCost> additionList,
     double coldRent,
     double warmRent,
-    List<InvoiceDto> invoiceList
+    List<InvoiceDto> invoiceList,
+    long version
 ) implements Serializable {
 
 }
@@ -0,0 +1,15 @@
+package de.vermity.model.dto;
+
+/**
+ * DTO for the PDF of an invoice, selected without the invoice entity
+ *
+ * @param invoiceId the id of the invoice
+ * @param pdf       the Base64 encoded PDF
+ * @author Cedric Stumpf
+ */
+public record InvoicePdfDto(
+    Integer invoiceId,
+    String pdf
+) {
+
+}
@@ -10,14 +10,15 @@ import lombok.NonNull;
  * @param flatList
  * @param operatingCosts
  * @param address
+ * @param version
  * @author Cedric Stumpf
  */
 public record LandlordViewDto(
     int buildingId,
     @NonNull List<LandlordViewFlatDto> flatList,
     @NonNull List<AdditionalCost> operatingCosts,
-    @NonNull AddressDto address
-
+    @NonNull AddressDto address,
+    long version
 ) implements Serializable {
 
 }
@@ -16,6 +16,8 @@ import lombok.NonNull;
  * @param additionList
  * @param coldRent
  * @param warmRent
+ * @param invoiceList
+ * @param version
  * @author Cedric Stumpf
  */
 public record LandlordViewFlatDto(
@@ -29,7 +31,8 @@ public record LandlordViewFlatDto(
     @NonNull List<AdditionalCost> additionList,
     double coldRent,
     double warmRent,
-    @NonNull List<InvoiceDto> invoiceList
+    @NonNull List<InvoiceDto> invoiceList,
+    long version
 ) implements Serializable {
 
 }
@@ -0,0 +1,25 @@
+package de.vermity.model.dto;
+
+import java.io.Serializable;
+
+/**
+ * DTO for the readings of a meter within a period
+ *
+ * @param meterId      the id of the meter
+ * @param firstReading the first reading in the period
+ * @param lastReading  the last reading in the period
+ * @author Cedric Stumpf
+ */
+public record MeterReadingRangeDto(
+    Integer meterId,
+    Integer firstReading,
+    Integer lastReading
+) implements Serializable {
+
+  /**
+   * Consumption within the period
+   */
+  public int difference() {
+    return lastReading - firstReading;
+  }
+}
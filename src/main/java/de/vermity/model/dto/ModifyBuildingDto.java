@@ -10,14 +10,15 @@ import lombok.NonNull;
  * @param flatList
  * @param operatingCosts
  * @param address
+ * @param version Version of the building the modification is based on
  * @author Jan Tiedt
  */
 public record ModifyBuildingDto(
     int buildingId,
     @NonNull List<FlatDto> flatList,
     @NonNull List<AdditionalCost> operatingCosts,
-    @NonNull AddressDto address
-
+    @NonNull AddressDto address,
+    long version
 ) implements Serializable {
 
 }
@@ -10,6 +10,9 @@ import java.io.Serializable;
  *                           must be set
  * @param newTenantFirstName First name of the new tenant. Can be empty, but then email must be set
  * @param newTenantLastName  Last name of the new tenant. Can be empty, but then email must be set
+ * @param residents          Number of residents
+ * @param version            Version of the flat the modification is based on, a changed flat is
+ *                           not modified
  * @author Cedric Stumpf
  */
 public record ModifyFlatDto(
@@ -18,7 +21,8 @@ public record ModifyFlatDto(
     String newTenantEmail,
     String newTenantFirstName,
     String newTenantLastName,
-    int residents
+    int residents,
+    long version
 ) implements Serializable {
 
 }
@@ -17,6 +17,7 @@ import lombok.NonNull;
  * @param address
  * @param roleList
  * @param token
+ * @param refreshToken only set on login
  * @author Cedric Stumpf
  */
 public record PersonDto(
@@ -28,7 +29,8 @@ public record PersonDto(
     @NonNull LocalDate birthDate,
     AddressDto address,
     @NonNull List<Role> roleList,
-    @NonNull String token
+    @NonNull String token,
+    String refreshToken
 
 ) implements Serializable {
 
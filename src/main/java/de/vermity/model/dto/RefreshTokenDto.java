@@ -0,0 +1,16 @@
+package de.vermity.model.dto;
+
+import java.io.Serializable;
+import lombok.NonNull;
+
+/**
+ * DTO for renewing the tokens of a {@link de.vermity.model.entity.Person}
+ *
+ * @param refreshToken
+ * @author Cedric Stumpf
+ */
+public record RefreshTokenDto(
+    @NonNull String refreshToken
+) implements Serializable {
+
+}
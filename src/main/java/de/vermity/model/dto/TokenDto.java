@@ -0,0 +1,18 @@
+package de.vermity.model.dto;
+
+import java.io.Serializable;
+import lombok.NonNull;
+
+/**
+ * DTO for renewed tokens
+ *
+ * @param token        Access token with Bearer prefix
+ * @param refreshToken
+ * @author Cedric Stumpf
+ */
+public record TokenDto(
+    @NonNull String token,
+    @NonNull String refreshToken
+) implements Serializable {
+
+}
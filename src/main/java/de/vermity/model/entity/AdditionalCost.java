@@ -2,6 +2,7 @@ package de.vermity.model.entity;
 
 import de.vermity.util.enums.Distribution;
 import de.vermity.util.enums.Frequency;
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
@@ -15,9 +16,13 @@ import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.proxy.HibernateProxy;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "additional-cost")
 @Builder
 @Getter
 @Setter
@@ -62,7 +67,6 @@ public class AdditionalCost extends BaseEntity {
 
   @Override
   public final int hashCode() {
-    return this instanceof HibernateProxy ? ((HibernateProxy) this).getHibernateLazyInitializer()
-        .getPersistentClass().hashCode() : getClass().hashCode();
+    return getId() != null ? getId().hashCode() : System.identityHashCode(this);
   }
 }
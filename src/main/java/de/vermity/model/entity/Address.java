@@ -1,5 +1,7 @@
 package de.vermity.model.entity;
 
+import jakarta.persistence.Cacheable;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
@@ -13,6 +15,8 @@ import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.proxy.HibernateProxy;
 
 
@@ -22,6 +26,8 @@ import org.hibernate.proxy.HibernateProxy;
  * @author Cedric Stumpf
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "address")
 @Builder
 @AllArgsConstructor
 @Getter
@@ -39,12 +45,15 @@ public class Address extends BaseEntity {
   @Builder.Default
   private String street = "";
   @Builder.Default
+  @Column(length = 100)
   private String city = "";
   @Builder.Default
+  @Column(length = 100)
   private String state = "";
   @Builder.Default
   private Integer zip = 0;
   @Builder.Default
+  @Column(length = 100)
   private String country = "";
 
   @Override
@@ -70,7 +79,6 @@ public class Address extends BaseEntity {
 
   @Override
   public final int hashCode() {
-    return this instanceof HibernateProxy ? ((HibernateProxy) this).getHibernateLazyInitializer()
-        .getPersistentClass().hashCode() : getClass().hashCode();
+    return getId() != null ? getId().hashCode() : System.identityHashCode(this);
   }
 }
@@ -6,6 +6,14 @@ import lombok.Getter;
 import org.hibernate.annotations.UpdateTimestamp;
 
 /**
+ * Base of all entities. Entities are equal when they have the same id, unsaved entities (id null)
+ * are only equal to themselves.
+ * <p>
+ * hashCode() spreads saved entities by their id, unsaved entities use the identity hash. The
+ * hash therefore changes once, when the entity is saved and gets its id. Do not keep unsaved
+ * entities in hash based collections across a save; collect them in lists or in an
+ * {@link java.util.IdentityHashMap} instead, as BuildingService does for new flats and costs.
+ *
  * @author Cedric Stumpf
  */
 @Getter
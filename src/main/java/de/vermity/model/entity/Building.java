@@ -1,6 +1,7 @@
 package de.vermity.model.entity;
 
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
@@ -9,6 +10,8 @@ import jakarta.persistence.Id;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.OneToOne;
+import jakarta.persistence.Version;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
@@ -20,6 +23,9 @@ import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
 import lombok.ToString.Exclude;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.SQLRestriction;
 import org.hibernate.proxy.HibernateProxy;
 
 
@@ -29,6 +35,10 @@ import org.hibernate.proxy.HibernateProxy;
  * @author Cedric Stumpf
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "building")
+// Soft deleted buildings are not found until they are purged
+@SQLRestriction("deleted_at is null")
 @Builder
 @AllArgsConstructor
 @Getter
@@ -41,7 +51,11 @@ public class Building extends BaseEntity {
   @GeneratedValue(strategy = GenerationType.IDENTITY)
   Integer id;
 
-  @OneToMany(cascade = CascadeType.REMOVE)
+  // Optimistic locking, concurrent modifications fail instead of overwriting each other
+  @Version
+  private long version;
+
+  @OneToMany(mappedBy = "building", cascade = CascadeType.REMOVE)
   @Default
   @Exclude
   private List<Flat> flatList = new ArrayList<>();
@@ -50,6 +64,7 @@ public class Building extends BaseEntity {
   private Person landlord;
 
   @OneToMany(cascade = CascadeType.REMOVE)
+  @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "building-operating-costs")
   @Default
   @Exclude
   private List<AdditionalCost> operatingCosts = new ArrayList<>();
@@ -57,6 +72,9 @@ public class Building extends BaseEntity {
   @OneToOne
   private Address address;
 
+  // Set by DeletionService, the address, landlord and tenants are removed at the same time
+  private LocalDateTime deletedAt;
+
   @Override
   public final boolean equals(Object o) {
     if (this == o) {
@@ -80,7 +98,6 @@ public class Building extends BaseEntity {
 
   @Override
   public final int hashCode() {
-    return this instanceof HibernateProxy ? ((HibernateProxy) this).getHibernateLazyInitializer()
-        .getPersistentClass().hashCode() : getClass().hashCode();
+    return getId() != null ? getId().hashCode() : System.identityHashCode(this);
   }
 }
@@ -0,0 +1,73 @@
+package de.vermity.model.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import java.util.Objects;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.hibernate.proxy.HibernateProxy;
+
+/**
+ * Invalidation of an in-memory cache, published by one instance for all others
+ *
+ * @author Cedric Stumpf
+ */
+@Entity
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+public class CacheInvalidation extends BaseEntity {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @Column(length = 50, nullable = false)
+  private String cacheName;
+
+  // null invalidates the whole cache
+  @Column(length = 100)
+  private String cacheKey;
+
+  // Instance that published the invalidation
+  @Column(length = 36, nullable = false)
+  private String origin;
+
+  public CacheInvalidation(String cacheName, String cacheKey, String origin) {
+    this.cacheName = cacheName;
+    this.cacheKey = cacheKey;
+    this.origin = origin;
+  }
+
+  @Override
+  public final boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null) {
+      return false;
+    }
+    Class<?> oEffectiveClass = o instanceof HibernateProxy
+        ? ((HibernateProxy) o).getHibernateLazyInitializer().getPersistentClass()
+        : o.getClass();
+    Class<?> thisEffectiveClass = this instanceof HibernateProxy
+        ? ((HibernateProxy) this).getHibernateLazyInitializer()
+        .getPersistentClass() : this.getClass();
+    if (thisEffectiveClass != oEffectiveClass) {
+      return false;
+    }
+    CacheInvalidation cacheInvalidation = (CacheInvalidation) o;
+    return getId() != null && Objects.equals(getId(), cacheInvalidation.getId());
+  }
+
+  @Override
+  public final int hashCode() {
+    return getId() != null ? getId().hashCode() : System.identityHashCode(this);
+  }
+}
@@ -6,8 +6,12 @@ import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
@@ -17,6 +21,7 @@ import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
+import lombok.ToString.Exclude;
 import org.hibernate.proxy.HibernateProxy;
 
 
@@ -32,15 +37,25 @@ import org.hibernate.proxy.HibernateProxy;
 @Setter
 @ToString
 @RequiredArgsConstructor
+@Table(indexes = {@Index(name = "idx_flat_building", columnList = "building_id")})
 public class Flat extends BaseEntity {
 
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
   Integer id;
 
+  // Optimistic locking, concurrent modifications fail instead of overwriting each other
+  @Version
+  private long version;
+
   @ManyToOne
   private Person tenant;
 
+  @ManyToOne(fetch = FetchType.LAZY)
+  @JoinColumn(name = "building_id")
+  @Exclude
+  private Building building;
+
   @OneToMany(cascade = CascadeType.REMOVE, fetch = FetchType.EAGER)
   @Builder.Default
   private List<Meter> meterList = new ArrayList<>();
@@ -84,7 +99,6 @@ public class Flat extends BaseEntity {
 
   @Override
   public final int hashCode() {
-    return this instanceof HibernateProxy ? ((HibernateProxy) this).getHibernateLazyInitializer()
-        .getPersistentClass().hashCode() : getClass().hashCode();
+    return getId() != null ? getId().hashCode() : System.identityHashCode(this);
   }
 }
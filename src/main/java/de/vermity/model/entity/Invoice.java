@@ -1,13 +1,16 @@
 package de.vermity.model.entity;
 
+import jakarta.persistence.Basic;
 import jakarta.persistence.Column;
 import jakarta.persistence.ElementCollection;
 import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.Lob;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Version;
 import java.util.Map;
 import java.util.Objects;
 import lombok.AllArgsConstructor;
@@ -37,6 +40,10 @@ public class Invoice extends BaseEntity {
   @GeneratedValue(strategy = GenerationType.IDENTITY)
   Integer id;
 
+  // Optimistic locking, concurrent modifications fail instead of overwriting each other
+  @Version
+  private long version;
+
   @ManyToOne
   private Flat flat;
 
@@ -61,8 +68,11 @@ public class Invoice extends BaseEntity {
   private int totalSquareMeters;
   private int invoiceForYear;
 
+  // Only loaded when accessed, listing or updating invoices does not read the PDFs
   @Lob
+  @Basic(fetch = FetchType.LAZY)
   @Column(columnDefinition = "LONGTEXT")
+  @ToString.Exclude
   private String pdf;
 
   @Override
@@ -88,7 +98,6 @@ public class Invoice extends BaseEntity {
 
   @Override
   public final int hashCode() {
-    return this instanceof HibernateProxy ? ((HibernateProxy) this).getHibernateLazyInitializer()
-        .getPersistentClass().hashCode() : getClass().hashCode();
+    return getId() != null ? getId().hashCode() : System.identityHashCode(this);
   }
 }
\ No newline at end of file
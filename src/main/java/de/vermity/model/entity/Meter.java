@@ -8,6 +8,7 @@ import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.Version;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
@@ -19,6 +20,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
 import lombok.ToString.Exclude;
+import org.hibernate.annotations.Formula;
 import org.hibernate.proxy.HibernateProxy;
 
 
@@ -40,6 +42,13 @@ public class Meter extends BaseEntity {
   @GeneratedValue(strategy = GenerationType.IDENTITY)
   Integer id;
 
+  // Optimistic locking, concurrent modifications fail instead of overwriting each other
+  @Version
+  private long version;
+
+  // Derived from the reading log, the newest reading is the current one (idx_update_meter_newest)
+  @Formula("(select coalesce(max(u.reading), 0) from update_tbl u where u.id ="
+      + " (select max(l.id) from update_tbl l where l.meter_id = id))")
   private int reading;
   @Column(nullable = false, unique = true)
   private String meterNr;
@@ -75,7 +84,6 @@ public class Meter extends BaseEntity {
 
   @Override
   public final int hashCode() {
-    return this instanceof HibernateProxy ? ((HibernateProxy) this).getHibernateLazyInitializer()
-        .getPersistentClass().hashCode() : getClass().hashCode();
+    return getId() != null ? getId().hashCode() : System.identityHashCode(this);
   }
 }
\ No newline at end of file
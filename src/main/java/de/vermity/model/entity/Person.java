@@ -2,6 +2,7 @@ package de.vermity.model.entity;
 
 import de.vermity.util.enums.Gender;
 import de.vermity.util.enums.Role;
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.ElementCollection;
 import jakarta.persistence.Entity;
@@ -14,6 +15,7 @@ import jakarta.persistence.Id;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
@@ -25,6 +27,8 @@ import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
 import lombok.ToString.Exclude;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.proxy.HibernateProxy;
 
 /**
@@ -33,6 +37,8 @@ import org.hibernate.proxy.HibernateProxy;
  * @author Cedric Stumpf
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "person")
 @Builder
 @AllArgsConstructor
 @Getter
@@ -49,6 +55,7 @@ public class Person extends BaseEntity {
   private String lastName;
   private Gender gender;
   private String phoneNumber;
+  @Column(unique = true)
   private String email;
   private LocalDate birthDate;
   @Column(length = 60)
@@ -60,7 +67,11 @@ public class Person extends BaseEntity {
   @ManyToOne
   private Address address;
 
+  // Set by DeletionService, the email is removed at the same time so the login stops working
+  private LocalDateTime deletedAt;
+
   @ElementCollection(targetClass = Role.class, fetch = FetchType.EAGER)
+  @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "person-roles")
   @Enumerated(EnumType.STRING)
   @Builder.Default
   private List<Role> roleList = new ArrayList<>();
@@ -98,7 +109,6 @@ public class Person extends BaseEntity {
 
   @Override
   public final int hashCode() {
-    return this instanceof HibernateProxy ? ((HibernateProxy) this).getHibernateLazyInitializer()
-        .getPersistentClass().hashCode() : getClass().hashCode();
+    return getId() != null ? getId().hashCode() : System.identityHashCode(this);
   }
 }
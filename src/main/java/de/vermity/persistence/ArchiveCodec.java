@@ -0,0 +1,102 @@
+package de.vermity.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compressed formats of the archive tables. A reading segment holds the readings of one meter in
+ * one year, sorted by time and delta encoded (time in microseconds like {@code datetime(6)},
+ * reading, person id or 0) before gzip, consecutive monthly readings shrink to a few bytes each.
+ *
+ * @author Cedric Stumpf
+ */
+final class ArchiveCodec {
+
+  private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+  private ArchiveCodec() {
+  }
+
+  static byte[] gzip(byte[] data) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 2 + 32);
+    try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+      gzip.write(data);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  static byte[] gunzip(byte[] data) {
+    try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(data))) {
+      return gzip.readAllBytes();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  static byte[] encodeReadings(List<ArchivedReading> readings) {
+    List<ArchivedReading> sorted = readings.stream()
+        .sorted(Comparator.comparing(ArchivedReading::createdAt)).toList();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(sorted.size() * 16 + 4);
+    try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes))) {
+      out.writeInt(sorted.size());
+      long previousTime = 0;
+      int previousReading = 0;
+      for (ArchivedReading reading : sorted) {
+        long time = ChronoUnit.MICROS.between(EPOCH, reading.createdAt());
+        out.writeLong(time - previousTime);
+        out.writeInt(reading.reading() - previousReading);
+        out.writeInt(reading.personId() != null ? reading.personId() : 0);
+        previousTime = time;
+        previousReading = reading.reading();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  static List<ArchivedReading> decodeReadings(byte[] segment) {
+    try (DataInputStream in = new DataInputStream(
+        new GZIPInputStream(new ByteArrayInputStream(segment)))) {
+      int count = in.readInt();
+      List<ArchivedReading> readings = new ArrayList<>(count);
+      long time = 0;
+      int reading = 0;
+      for (int i = 0; i < count; i++) {
+        time += in.readLong();
+        reading += in.readInt();
+        int personId = in.readInt();
+        readings.add(new ArchivedReading(
+            EPOCH.plus(time, ChronoUnit.MICROS), reading, personId != 0 ? personId : null));
+      }
+      return readings;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Reading of the archive
+   *
+   * @param createdAt Time of the reading
+   * @param reading   Reading
+   * @param personId  Id of the person that entered it, null if unknown
+   */
+  record ArchivedReading(LocalDateTime createdAt, int reading, Integer personId) {
+
+  }
+}
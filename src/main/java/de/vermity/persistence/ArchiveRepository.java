@@ -0,0 +1,299 @@
+package de.vermity.persistence;
+
+import de.vermity.model.dto.GetInvoiceDto;
+import de.vermity.model.dto.MeterReadingRangeDto;
+import de.vermity.persistence.ArchiveCodec.ArchivedReading;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Moves invoices and readings from the hot tables into {@code invoice_archive} and
+ * {@code reading_archive} and reads them from there. Rows are copied and deleted in the
+ * transaction of the caller, an interrupted run leaves them in the hot tables.
+ * <p>
+ * The newest reading of every meter stays in {@code update_tbl}, it is the current reading of the
+ * meter.
+ *
+ * @author Cedric Stumpf
+ */
+@Repository
+@RequiredArgsConstructor
+public class ArchiveRepository {
+
+  private static final int DELETE_CHUNK_SIZE = 1000;
+  // Readings before the horizon, except the newest one of their meter (idx_update_meter_newest)
+  private static final String ARCHIVABLE_READINGS = " from update_tbl u"
+      + " where u.created_at < :before and u.id <> (select max(l.id) from update_tbl l"
+      + " where l.meter_id = u.meter_id)";
+
+  private final NamedParameterJdbcTemplate jdbcTemplate;
+
+  /**
+   * @param beforeYear First billing year that is not archived
+   * @param limit      Maximum number of ids
+   * @return Ids of invoices for billing years before {@code beforeYear}
+   * @author Cedric Stumpf
+   */
+  public List<Integer> findInvoiceIdsToArchive(int beforeYear, int limit) {
+    return jdbcTemplate.queryForList("select id from invoice where invoice_for_year < :year"
+        + " order by id limit :limit", Map.of("year", beforeYear, "limit", limit), Integer.class);
+  }
+
+  /**
+   * Move invoices with their element collections into the archive
+   *
+   * @param invoiceIds Ids of the invoices
+   * @return Number of archived invoices
+   * @author Cedric Stumpf
+   */
+  public int archiveInvoices(Collection<Integer> invoiceIds) {
+    if (invoiceIds.isEmpty()) {
+      return 0;
+    }
+    Map<String, Object> ids = Map.of("ids", invoiceIds);
+    Map<Integer, StringBuilder> details = new HashMap<>();
+    appendDetails(details, "meter-difference", "select invoice_id, meter_difference_key,"
+        + " meter_difference from invoice_meter_difference where invoice_id in (:ids)", ids);
+    appendDetails(details, "meter-total-cost", "select invoice_id, meter_total_cost_key,"
+        + " meter_total_cost from invoice_meter_total_cost where invoice_id in (:ids)", ids);
+    appendDetails(details, "operating-cost", "select invoice_id,"
+        + " operating_cost_per_distribution_key_key, operating_cost_per_distribution_key"
+        + " from invoice_operating_cost_per_distribution_key where invoice_id in (:ids)", ids);
+
+    Timestamp archivedAt = Timestamp.valueOf(LocalDateTime.now());
+    List<MapSqlParameterSource> rows = jdbcTemplate.query("select id, created_at, flat_id,"
+        + " building_id, paid, total_warm_rent_paid, total_cold_rent, total_cost,"
+        + " total_square_meters, invoice_for_year, pdf from invoice where id in (:ids)", ids,
+        (resultSet, rowNum) -> {
+          int id = resultSet.getInt("id");
+          StringBuilder invoiceDetails = details.get(id);
+          String pdf = resultSet.getString("pdf");
+          return new MapSqlParameterSource()
+              .addValue("id", id)
+              .addValue("archivedAt", archivedAt)
+              .addValue("createdAt", resultSet.getTimestamp("created_at"))
+              .addValue("flatId", resultSet.getObject("flat_id", Integer.class))
+              .addValue("buildingId", resultSet.getObject("building_id", Integer.class))
+              .addValue("paid", resultSet.getBoolean("paid"))
+              .addValue("totalWarmRentPaid", resultSet.getDouble("total_warm_rent_paid"))
+              .addValue("totalColdRent", resultSet.getDouble("total_cold_rent"))
+              .addValue("totalCost", resultSet.getDouble("total_cost"))
+              .addValue("totalSquareMeters", resultSet.getInt("total_square_meters"))
+              .addValue("invoiceForYear", resultSet.getInt("invoice_for_year"))
+              .addValue("details", invoiceDetails == null ? null : ArchiveCodec.gzip(
+                  invoiceDetails.toString().getBytes(StandardCharsets.UTF_8)))
+              .addValue("pdf", pdf == null ? null
+                  : ArchiveCodec.gzip(Base64.getDecoder().decode(pdf)));
+        });
+    jdbcTemplate.batchUpdate("insert into invoice_archive (id, archived_at, created_at, flat_id,"
+        + " building_id, paid, total_warm_rent_paid, total_cold_rent, total_cost,"
+        + " total_square_meters, invoice_for_year, details, pdf) values (:id, :archivedAt,"
+        + " :createdAt, :flatId, :buildingId, :paid, :totalWarmRentPaid, :totalColdRent,"
+        + " :totalCost, :totalSquareMeters, :invoiceForYear, :details, :pdf)",
+        rows.toArray(MapSqlParameterSource[]::new));
+
+    jdbcTemplate.update("delete from invoice_meter_difference where invoice_id in (:ids)", ids);
+    jdbcTemplate.update("delete from invoice_meter_total_cost where invoice_id in (:ids)", ids);
+    jdbcTemplate.update("delete from invoice_operating_cost_per_distribution_key"
+        + " where invoice_id in (:ids)", ids);
+    jdbcTemplate.update("delete from flat_invoice_list where invoice_list_id in (:ids)", ids);
+    jdbcTemplate.update("delete from invoice where id in (:ids)", ids);
+    return rows.size();
+  }
+
+  /**
+   * @param before Time before which readings are archived
+   * @param limit  Maximum number of ids
+   * @return Ids of meters with readings to archive
+   * @author Cedric Stumpf
+   */
+  public List<Integer> findMeterIdsToArchive(LocalDateTime before, int limit) {
+    return jdbcTemplate.queryForList("select distinct u.meter_id" + ARCHIVABLE_READINGS
+            + " order by u.meter_id limit :limit",
+        Map.of("before", Timestamp.valueOf(before), "limit", limit), Integer.class);
+  }
+
+  /**
+   * Move the readings of meters into the archive, merged with the segments archived before
+   *
+   * @param meterIds Ids of the meters
+   * @param before   Time before which readings are archived
+   * @return Number of archived readings
+   * @author Cedric Stumpf
+   */
+  public int archiveReadings(Collection<Integer> meterIds, LocalDateTime before) {
+    if (meterIds.isEmpty()) {
+      return 0;
+    }
+    record Segment(int meterId, int year) {
+
+    }
+    Map<String, Object> parameters = Map.of("ids", meterIds, "before",
+        Timestamp.valueOf(before));
+    List<Integer> updateIds = new ArrayList<>();
+    Map<Segment, List<ArchivedReading>> segments = new LinkedHashMap<>();
+    jdbcTemplate.query("select u.id, u.meter_id, u.created_at, u.reading, u.person_id"
+        + ARCHIVABLE_READINGS + " and u.meter_id in (:ids) order by u.id",
+        parameters, resultSet -> {
+      LocalDateTime createdAt = resultSet.getTimestamp("created_at").toLocalDateTime();
+      updateIds.add(resultSet.getInt("id"));
+      segments.computeIfAbsent(new Segment(resultSet.getInt("meter_id"), createdAt.getYear()),
+          segment -> new ArrayList<>()).add(new ArchivedReading(createdAt,
+          resultSet.getInt("reading"), resultSet.getObject("person_id", Integer.class)));
+    });
+    if (updateIds.isEmpty()) {
+      return 0;
+    }
+    jdbcTemplate.query("select meter_id, reading_year, segment from reading_archive"
+        + " where meter_id in (:ids)", parameters, resultSet -> {
+      List<ArchivedReading> readings = segments.get(
+          new Segment(resultSet.getInt("meter_id"), resultSet.getInt("reading_year")));
+      if (readings != null) {
+        readings.addAll(ArchiveCodec.decodeReadings(resultSet.getBytes("segment")));
+      }
+    });
+
+    Timestamp archivedAt = Timestamp.valueOf(LocalDateTime.now());
+    MapSqlParameterSource[] rows = segments.entrySet().stream()
+        .map(segment -> new MapSqlParameterSource()
+            .addValue("meterId", segment.getKey().meterId())
+            .addValue("year", segment.getKey().year())
+            .addValue("archivedAt", archivedAt)
+            .addValue("count", segment.getValue().size())
+            .addValue("segment", ArchiveCodec.encodeReadings(segment.getValue())))
+        .toArray(MapSqlParameterSource[]::new);
+    jdbcTemplate.batchUpdate("delete from reading_archive where meter_id = :meterId"
+        + " and reading_year = :year", rows);
+    jdbcTemplate.batchUpdate("insert into reading_archive (meter_id, reading_year, archived_at,"
+        + " reading_count, segment) values (:meterId, :year, :archivedAt, :count, :segment)", rows);
+    for (int i = 0; i < updateIds.size(); i += DELETE_CHUNK_SIZE) {
+      jdbcTemplate.update("delete from update_tbl where id in (:ids)", Map.of("ids",
+          updateIds.subList(i, Math.min(i + DELETE_CHUNK_SIZE, updateIds.size()))));
+    }
+    return updateIds.size();
+  }
+
+  /**
+   * @param buildingId Id of the building
+   * @param year       Billing year
+   * @return Ids of the archived invoices of the building for the year
+   * @author Cedric Stumpf
+   */
+  public List<Integer> findInvoiceIds(int buildingId, int year) {
+    return jdbcTemplate.queryForList("select id from invoice_archive"
+            + " where building_id = :buildingId and invoice_for_year = :year order by id",
+        Map.of("buildingId", buildingId, "year", year), Integer.class);
+  }
+
+  /**
+   * @param invoiceId Id of the archived invoice
+   * @return PDF of the invoice, empty if it is not archived or has no PDF
+   * @author Cedric Stumpf
+   */
+  public Optional<byte[]> findInvoicePdf(int invoiceId) {
+    return jdbcTemplate.query("select pdf from invoice_archive where id = :id",
+            Map.of("id", invoiceId), (resultSet, rowNum) -> resultSet.getBytes("pdf"))
+        .stream().filter(Objects::nonNull).findFirst().map(ArchiveCodec::gunzip);
+  }
+
+  /**
+   * @param flatIds Ids of the flats
+   * @return Archived invoices of the flats, PDFs Base64 encoded like the ones of the hot table
+   * @author Cedric Stumpf
+   */
+  public List<GetInvoiceDto> findInvoicesByFlatIds(Collection<Integer> flatIds) {
+    if (flatIds.isEmpty()) {
+      return List.of();
+    }
+    return jdbcTemplate.query("select id, pdf, building_id, flat_id, paid from invoice_archive"
+        + " where flat_id in (:ids) order by id", Map.of("ids", flatIds), this::mapInvoice);
+  }
+
+  /**
+   * @param flatIds Ids of the flats
+   * @return Newest archived invoice of each flat, PDFs Base64 encoded
+   * @author Cedric Stumpf
+   */
+  public List<GetInvoiceDto> findLatestInvoicesByFlatIds(Collection<Integer> flatIds) {
+    if (flatIds.isEmpty()) {
+      return List.of();
+    }
+    return jdbcTemplate.query("select id, pdf, building_id, flat_id, paid from invoice_archive"
+        + " where id in (select max(id) from invoice_archive where flat_id in (:ids)"
+        + " group by flat_id) order by id", Map.of("ids", flatIds), this::mapInvoice);
+  }
+
+  /**
+   * First and last archived reading of each meter within a period, meters without archived
+   * readings in the period are missing
+   *
+   * @param meterIds Ids of the meters
+   * @param start    Start of the period
+   * @param end      End of the period
+   * @return List of the reading ranges
+   * @author Cedric Stumpf
+   */
+  public List<MeterReadingRangeDto> findReadingRanges(Collection<Integer> meterIds,
+      LocalDateTime start, LocalDateTime end) {
+    if (meterIds.isEmpty()) {
+      return List.of();
+    }
+    Map<Integer, ArchivedReading[]> ranges = new LinkedHashMap<>();
+    jdbcTemplate.query("select meter_id, segment from reading_archive where meter_id in (:ids)"
+            + " and reading_year between :startYear and :endYear",
+        Map.of("ids", meterIds, "startYear", start.getYear(), "endYear", end.getYear()),
+        resultSet -> {
+          int meterId = resultSet.getInt("meter_id");
+          for (ArchivedReading reading : ArchiveCodec.decodeReadings(
+              resultSet.getBytes("segment"))) {
+            if (reading.createdAt().isBefore(start) || reading.createdAt().isAfter(end)) {
+              continue;
+            }
+            ArchivedReading[] range = ranges.computeIfAbsent(meterId,
+                id -> new ArchivedReading[]{reading, reading});
+            if (reading.createdAt().isBefore(range[0].createdAt())) {
+              range[0] = reading;
+            }
+            // Segments keep the order of the log, of equal times the later one is newer
+            if (!reading.createdAt().isBefore(range[1].createdAt())) {
+              range[1] = reading;
+            }
+          }
+        });
+    return ranges.entrySet().stream().map(range -> new MeterReadingRangeDto(range.getKey(),
+        range.getValue()[0].reading(), range.getValue()[1].reading())).toList();
+  }
+
+  private GetInvoiceDto mapInvoice(ResultSet resultSet, int rowNum) throws SQLException {
+    byte[] pdf = resultSet.getBytes("pdf");
+    return new GetInvoiceDto(resultSet.getInt("id"),
+        pdf == null ? null : Base64.getEncoder().encodeToString(ArchiveCodec.gunzip(pdf)),
+        resultSet.getInt("building_id"), resultSet.getInt("flat_id"),
+        resultSet.getBoolean("paid"));
+  }
+
+  private void appendDetails(Map<Integer, StringBuilder> details, String collection, String sql,
+      Map<String, Object> parameters) {
+    jdbcTemplate.query(sql, parameters, resultSet -> {
+      details.computeIfAbsent(resultSet.getInt(1), id -> new StringBuilder())
+          .append(collection).append(' ').append(resultSet.getInt(2)).append(' ')
+          .append(resultSet.getObject(3)).append('\n');
+    });
+  }
+}
@@ -1,11 +1,15 @@
 package de.vermity.persistence;
 
 import de.vermity.model.entity.Building;
-import de.vermity.model.entity.Flat;
 import de.vermity.model.entity.Person;
+import jakarta.persistence.QueryHint;
 import java.util.List;
 import java.util.Optional;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 /**
  * Repository for the Building entity.
@@ -17,7 +21,10 @@ public interface BuildingRepository extends JpaRepository<Building, Integer> {
   Optional<Building> findByAddress_StreetAndAddress_CityAndAddress_StateAndAddress_ZipAndAddress_Country(
       String street, String city, String state, int zip, String country);
 
+  // Only read for views, loaded without snapshots even inside a write transaction
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
   List<Building> findByLandlord(Person landlord);
 
-  Optional<Building> findByFlatListContaining(Flat flat);
-}
\ No newline at end of file
+  @Query("select f.building from Flat f where f.id = :flatId")
+  Optional<Building> findByFlatId(@Param("flatId") int flatId);
+}
@@ -0,0 +1,230 @@
+package de.vermity.persistence;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Set based deletion of buildings and persons. Instead of loading every flat, meter, reading and
+ * invoice for {@code CascadeType.REMOVE}, the ids of the dependent rows are selected and deleted
+ * with one statement per table, children before parents. Readings and invoices (with their PDFs)
+ * are never read.
+ * <p>
+ * The JDBC template takes part in the transaction of the caller. Hibernate does not see these
+ * writes, the caller evicts the second-level cache.
+ *
+ * @author Cedric Stumpf
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class BulkDeletion {
+
+  private final NamedParameterJdbcTemplate jdbcTemplate;
+
+  /**
+   * Mark buildings as deleted. Address, landlord and tenants are removed from them, so the address
+   * can be used again and nobody reaches the building until it is purged.
+   *
+   * @param buildingIds Ids of the buildings
+   * @param deletedAt   Time of the deletion
+   * @author Cedric Stumpf
+   */
+  public void softDeleteBuildings(Collection<Integer> buildingIds, LocalDateTime deletedAt) {
+    if (buildingIds.isEmpty()) {
+      return;
+    }
+    Map<String, Object> parameters = Map.of("ids", buildingIds, "deletedAt",
+        Timestamp.valueOf(deletedAt));
+    jdbcTemplate.update("update flat set tenant_id = null where building_id in (:ids)",
+        parameters);
+    jdbcTemplate.update("update building set deleted_at = :deletedAt, address_id = null,"
+        + " landlord_id = null where id in (:ids)", parameters);
+  }
+
+  /**
+   * Mark a person and the buildings of the person as deleted. The email is removed, the person
+   * can no longer log in and the email can be registered again.
+   *
+   * @param personId  Id of the person
+   * @param deletedAt Time of the deletion
+   * @return Ids of the buildings marked as deleted
+   * @author Cedric Stumpf
+   */
+  public List<Integer> softDeletePerson(Integer personId, LocalDateTime deletedAt) {
+    Map<String, Object> parameters = Map.of("id", personId, "deletedAt",
+        Timestamp.valueOf(deletedAt));
+    List<Integer> buildingIds = findBuildingIdsByLandlord(personId);
+    softDeleteBuildings(buildingIds, deletedAt);
+    jdbcTemplate.update("update flat set tenant_id = null where tenant_id = :id", parameters);
+    jdbcTemplate.update("update person set deleted_at = :deletedAt, email = null where id = :id",
+        parameters);
+    return buildingIds;
+  }
+
+  /**
+   * Delete buildings with their flats, meters, readings, costs and invoices
+   *
+   * @param buildingIds Ids of the buildings
+   * @author Cedric Stumpf
+   */
+  public void deleteBuildings(Collection<Integer> buildingIds) {
+    if (buildingIds.isEmpty()) {
+      return;
+    }
+    List<Integer> flatIds = select("select id from flat where building_id in (:ids)",
+        buildingIds);
+    List<Integer> meterIds = select(
+        "select meter_list_id from flat_meter_list where flat_id in (:ids)", flatIds);
+    List<Integer> additionIds = select(
+        "select addition_list_id from flat_addition_list where flat_id in (:ids)", flatIds);
+    List<Integer> operatingCostIds = select("select operating_costs_id"
+        + " from building_operating_costs where building_id in (:ids)", buildingIds);
+    Set<Integer> invoiceIds = new LinkedHashSet<>(
+        select("select id from invoice where building_id in (:ids)", buildingIds));
+    invoiceIds.addAll(
+        select("select invoice_list_id from flat_invoice_list where flat_id in (:ids)", flatIds));
+    // Costs removed from a flat or the building earlier, kept as long as an invoice refers to them
+    List<Integer> invoiceCostIds = select("select operating_cost_per_distribution_key_key"
+        + " from invoice_operating_cost_per_distribution_key where invoice_id in (:ids)",
+        invoiceIds);
+
+    delete("invoice_meter_difference", "invoice_id", invoiceIds);
+    delete("invoice_meter_total_cost", "invoice_id", invoiceIds);
+    delete("invoice_operating_cost_per_distribution_key", "invoice_id", invoiceIds);
+    delete("flat_invoice_list", "flat_id", flatIds);
+    delete("invoice", "id", invoiceIds);
+    delete("invoice_archive", "building_id", buildingIds);
+    delete("invoice_archive", "flat_id", flatIds);
+    int readings = delete("update_tbl", "meter_id", meterIds);
+    delete("reading_archive", "meter_id", meterIds);
+    delete("flat_meter_list", "flat_id", flatIds);
+    delete("meter", "id", meterIds);
+    delete("flat_addition_list", "flat_id", flatIds);
+    delete("building_operating_costs", "building_id", buildingIds);
+    delete("additional_cost", "id", additionIds);
+    delete("additional_cost", "id", operatingCostIds);
+    deleteUnreferencedCosts(invoiceCostIds);
+    delete("flat", "id", flatIds);
+    delete("building", "id", buildingIds);
+    log.info("Deleted {} buildings with {} flats, {} meters, {} readings and {} invoices",
+        buildingIds.size(), flatIds.size(), meterIds.size(), readings, invoiceIds.size());
+  }
+
+  /**
+   * Delete a person and the buildings of the person. Flats rented by the person stay without
+   * tenant, readings entered by the person stay without person.
+   *
+   * @param personId Id of the person
+   * @return Ids of the deleted buildings
+   * @author Cedric Stumpf
+   */
+  public List<Integer> deletePerson(Integer personId) {
+    Map<String, Object> parameters = Map.of("id", personId);
+    List<Integer> buildingIds = findBuildingIdsByLandlord(personId);
+    deleteBuildings(buildingIds);
+    jdbcTemplate.update("update flat set tenant_id = null where tenant_id = :id", parameters);
+    jdbcTemplate.update("update update_tbl set person_id = null where person_id = :id",
+        parameters);
+    jdbcTemplate.update("delete from person_role_list where person_id = :id", parameters);
+    jdbcTemplate.update("delete from person where id = :id", parameters);
+    return buildingIds;
+  }
+
+  /**
+   * Delete additional costs that no flat, building or invoice refers to anymore
+   *
+   * @param costIds Ids of the costs to check
+   * @return Number of deleted costs
+   * @author Cedric Stumpf
+   */
+  public int deleteUnreferencedCosts(Collection<Integer> costIds) {
+    if (costIds.isEmpty()) {
+      return 0;
+    }
+    return jdbcTemplate.update("delete from additional_cost where id in (:ids)"
+        + " and not exists (select 1 from flat_addition_list a"
+        + " where a.addition_list_id = additional_cost.id)"
+        + " and not exists (select 1 from building_operating_costs b"
+        + " where b.operating_costs_id = additional_cost.id)"
+        + " and not exists (select 1 from invoice_operating_cost_per_distribution_key i"
+        + " where i.operating_cost_per_distribution_key_key = additional_cost.id)",
+        Map.of("ids", costIds));
+  }
+
+  /**
+   * Lock a soft deleted building until the end of the transaction. Another instance purging the
+   * same building holds the lock, the row is skipped instead of waiting for it.
+   *
+   * @param buildingId Id of the building
+   * @return Whether the building is locked, false if another instance purges it or it is gone
+   * @author Cedric Stumpf
+   */
+  public boolean claimDeletedBuilding(int buildingId) {
+    return !jdbcTemplate.queryForList("select id from building where id = :id"
+            + " and deleted_at is not null for update skip locked", Map.of("id", buildingId),
+        Integer.class).isEmpty();
+  }
+
+  /**
+   * Lock a soft deleted person until the end of the transaction, like
+   * {@link #claimDeletedBuilding(int)}
+   *
+   * @param personId Id of the person
+   * @return Whether the person is locked, false if another instance purges it or it is gone
+   * @author Cedric Stumpf
+   */
+  public boolean claimDeletedPerson(int personId) {
+    return !jdbcTemplate.queryForList("select id from person where id = :id"
+            + " and deleted_at is not null for update skip locked", Map.of("id", personId),
+        Integer.class).isEmpty();
+  }
+
+  /**
+   * @param limit Maximum number of ids
+   * @return Ids of soft deleted buildings, oldest first
+   * @author Cedric Stumpf
+   */
+  public List<Integer> findDeletedBuildingIds(int limit) {
+    return jdbcTemplate.queryForList("select id from building where deleted_at is not null"
+        + " order by deleted_at limit :limit", Map.of("limit", limit), Integer.class);
+  }
+
+  /**
+   * @param limit Maximum number of ids
+   * @return Ids of soft deleted persons, oldest first
+   * @author Cedric Stumpf
+   */
+  public List<Integer> findDeletedPersonIds(int limit) {
+    return jdbcTemplate.queryForList("select id from person where deleted_at is not null"
+        + " order by deleted_at limit :limit", Map.of("limit", limit), Integer.class);
+  }
+
+  private List<Integer> findBuildingIdsByLandlord(Integer personId) {
+    return jdbcTemplate.queryForList("select id from building where landlord_id = :id",
+        Map.of("id", personId), Integer.class);
+  }
+
+  private List<Integer> select(String sql, Collection<Integer> ids) {
+    if (ids.isEmpty()) {
+      return List.of();
+    }
+    return jdbcTemplate.queryForList(sql, Map.of("ids", ids), Integer.class);
+  }
+
+  private int delete(String table, String column, Collection<Integer> ids) {
+    if (ids.isEmpty()) {
+      return 0;
+    }
+    return jdbcTemplate.update("delete from " + table + " where " + column + " in (:ids)",
+        Map.of("ids", ids));
+  }
+}
@@ -0,0 +1,25 @@
+package de.vermity.persistence;
+
+import de.vermity.model.entity.CacheInvalidation;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Repository for the entity CacheInvalidation.
+ *
+ * @author Cedric Stumpf
+ */
+public interface CacheInvalidationRepository extends JpaRepository<CacheInvalidation, Long> {
+
+  List<CacheInvalidation> findByCreatedAtAfterOrderById(LocalDateTime createdAt);
+
+  @Transactional
+  @Modifying
+  @Query("delete from CacheInvalidation c where c.createdAt < :before")
+  int deleteCreatedBefore(@Param("before") LocalDateTime before);
+}
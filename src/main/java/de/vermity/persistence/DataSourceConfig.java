@@ -0,0 +1,70 @@
+package de.vermity.persistence;
+
+import com.zaxxer.hikari.HikariDataSource;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.IntStream;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+/**
+ * Connection pools of the primary ({@code spring.datasource.*}) and of the replicas in
+ * {@code vermity.datasource.replica.urls}, with the same credentials unless
+ * {@code vermity.datasource.replica.username} and {@code password} are set. Both use the
+ * {@code spring.datasource.hikari.*} settings. Without replicas everything goes to the primary.
+ *
+ * @author Cedric Stumpf
+ */
+@Configuration(proxyBeanMethods = false)
+public class DataSourceConfig {
+
+  @Bean(autowireCandidate = false)
+  public ReadWriteRoutingDataSource readWriteRoutingDataSource(
+      DataSourceProperties properties, Environment environment,
+      @Value("${vermity.datasource.replica.urls:}") List<String> replicaUrls,
+      @Value("${vermity.datasource.replica.username:${spring.datasource.username:}}")
+      String replicaUsername,
+      @Value("${vermity.datasource.replica.password:${spring.datasource.password:}}")
+      String replicaPassword,
+      @Value("${vermity.datasource.replica.max-lag:5000}") long maxLag,
+      @Value("${vermity.datasource.replica.connection-timeout:2000}") long connectionTimeout) {
+    HikariDataSource primary = hikari(environment,
+        properties.initializeDataSourceBuilder().type(HikariDataSource.class).build());
+    primary.setPoolName("primary");
+    List<String> urls = replicaUrls.stream().map(String::strip).filter(url -> !url.isEmpty())
+        .toList();
+    List<HikariDataSource> replicas = IntStream.range(0, urls.size())
+        .mapToObj(index -> {
+          HikariDataSource replica = hikari(environment, properties.initializeDataSourceBuilder()
+              .type(HikariDataSource.class).url(urls.get(index)).username(replicaUsername)
+              .password(replicaPassword).build());
+          replica.setPoolName("replica-" + index);
+          replica.setReadOnly(true);
+          // An unreachable replica must not stall the check or the reads falling back
+          replica.setConnectionTimeout(connectionTimeout);
+          return replica;
+        })
+        .toList();
+    return new ReadWriteRoutingDataSource(primary, replicas, Duration.ofMillis(maxLag));
+  }
+
+  @Bean
+  @Primary
+  public DataSource dataSource(ReadWriteRoutingDataSource readWriteRoutingDataSource) {
+    return new LazyConnectionDataSourceProxy(readWriteRoutingDataSource);
+  }
+
+  private static HikariDataSource hikari(Environment environment, HikariDataSource dataSource) {
+    return Binder.get(environment)
+        .bind("spring.datasource.hikari", Bindable.ofInstance(dataSource))
+        .orElse(dataSource);
+  }
+}
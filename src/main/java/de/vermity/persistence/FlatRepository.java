@@ -3,7 +3,11 @@ package de.vermity.persistence;
 import de.vermity.model.entity.Flat;
 import de.vermity.model.entity.Person;
 import java.util.List;
+import jakarta.persistence.QueryHint;
+import java.util.Optional;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 
 
 /**
@@ -13,5 +17,15 @@ import org.springframework.data.jpa.repository.JpaRepository;
  */
 public interface FlatRepository extends JpaRepository<Flat, Integer> {
 
+  // Only read for views, loaded without snapshots even inside a write transaction
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
   List<Flat> findByTenant(Person tenant);
-}
\ No newline at end of file
+
+  Optional<Flat> findByIdAndBuilding_Id(int id, int buildingId);
+
+  boolean existsByIdAndBuilding_Id(int id, int buildingId);
+
+  boolean existsByIdAndTenant_Id(int id, int tenantId);
+
+  boolean existsByIdAndMeterList_Id(int id, int meterId);
+}
@@ -1,7 +1,15 @@
 package de.vermity.persistence;
 
+import de.vermity.model.dto.InvoicePdfDto;
 import de.vermity.model.entity.Invoice;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 /**
  * Repository for the entity Invoice.
@@ -10,4 +18,32 @@ import org.springframework.data.jpa.repository.JpaRepository;
  */
 public interface InvoiceRepository extends JpaRepository<Invoice, Integer> {
 
-}
\ No newline at end of file
+  @Query("select i.id from Invoice i where i.building.id = :buildingId"
+      + " and i.invoiceForYear = :year order by i.id")
+  List<Integer> findIdsByBuildingIdAndInvoiceForYear(@Param("buildingId") int buildingId,
+      @Param("year") int year);
+
+  @Query("select i.pdf from Invoice i where i.id = :id")
+  Optional<String> findPdfById(@Param("id") int id);
+
+  @Query("select new de.vermity.model.dto.InvoicePdfDto(i.id, i.pdf) from Invoice i"
+      + " where i.id in :ids")
+  List<InvoicePdfDto> findPdfsByIdIn(@Param("ids") Collection<Integer> ids);
+
+  /**
+   * PDFs of invoices in one query. Invoice.pdf is lazy, reading it from every listed invoice would
+   * select it once per invoice.
+   *
+   * @param ids Ids of the invoices
+   * @return PDF by invoice id, invoices without PDF are missing
+   */
+  default Map<Integer, String> findPdfsByIds(Collection<Integer> ids) {
+    if (ids.isEmpty()) {
+      return Map.of();
+    }
+    return findPdfsByIdIn(ids).stream().filter(invoicePdf -> invoicePdf.pdf() != null)
+        .collect(Collectors.toMap(InvoicePdfDto::invoiceId, InvoicePdfDto::pdf));
+  }
+
+  boolean existsByIdAndFlat_Building_Id(int id, int buildingId);
+}
@@ -3,6 +3,9 @@ package de.vermity.persistence;
 import de.vermity.model.entity.Person;
 import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 /**
  * @author Cedric Stumpf
@@ -10,4 +13,8 @@ import org.springframework.data.jpa.repository.JpaRepository;
 public interface PersonRepository extends JpaRepository<Person, Integer> {
 
   Optional<Person> findByEmail(String email);
-}
\ No newline at end of file
+
+  @Modifying
+  @Query("update Person p set p.password = :password where p.email = :email")
+  int updatePasswordByEmail(@Param("email") String email, @Param("password") String password);
+}
@@ -0,0 +1,146 @@
+package de.vermity.persistence;
+
+import com.zaxxer.hikari.HikariDataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Sends connections of read-only transactions to the replicas, round robin, and everything else
+ * to the primary. Has to be wrapped in a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}, the transaction is
+ * only marked read-only after it fetched its connection.
+ * <p>
+ * Every instance writes the heartbeat on the primary and reads it back from each replica, a
+ * replica that is more than {@code vermity.datasource.replica.max-lag} milliseconds behind or
+ * does not answer gets no reads until a later check. Reads fall back to the primary when no
+ * replica is usable or fetching the connection of a replica fails.
+ *
+ * @author Cedric Stumpf
+ */
+@Slf4j
+public class ReadWriteRoutingDataSource extends AbstractDataSource implements Closeable {
+
+  private static final String WRITE_HEARTBEAT =
+      "update replication_heartbeat set beat = current_timestamp(6) where id = 1";
+  private static final String READ_HEARTBEAT =
+      "select beat from replication_heartbeat where id = 1";
+
+  private final HikariDataSource primary;
+  private final List<HikariDataSource> replicas;
+  private final Duration maxLag;
+  private final AtomicInteger nextReplica = new AtomicInteger();
+
+  // Indexes of the replicas that passed the last check
+  private volatile List<Integer> usableReplicas = List.of();
+
+  /**
+   * @param primary  Pool of the primary, gets all writes
+   * @param replicas Pools of the replicas, may be empty
+   * @param maxLag   Lag up to which a replica gets reads
+   */
+  public ReadWriteRoutingDataSource(HikariDataSource primary, List<HikariDataSource> replicas,
+      Duration maxLag) {
+    this.primary = primary;
+    this.replicas = List.copyOf(replicas);
+    this.maxLag = maxLag;
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+      return primary.getConnection();
+    }
+    List<Integer> usable = usableReplicas;
+    if (usable.isEmpty()) {
+      return primary.getConnection();
+    }
+    int replica = usable.get(Math.floorMod(nextReplica.getAndIncrement(), usable.size()));
+    try {
+      return replicas.get(replica).getConnection();
+    } catch (SQLException e) {
+      log.warn("Replica {} not reachable, reading from the primary: {}", replica,
+          e.getMessage());
+      markUnusable(replica);
+      return primary.getConnection();
+    }
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    return primary.getConnection(username, password);
+  }
+
+  /**
+   * Write the heartbeat on the primary and route reads only to the replicas that replicated it
+   * within the maximum lag
+   *
+   * @author Cedric Stumpf
+   */
+  @Scheduled(fixedDelayString = "${vermity.datasource.replica.check-interval:1000}")
+  public synchronized void checkReplicas() {
+    if (replicas.isEmpty()) {
+      return;
+    }
+    LocalDateTime beat;
+    try {
+      JdbcTemplate primaryTemplate = new JdbcTemplate(primary);
+      primaryTemplate.update(WRITE_HEARTBEAT);
+      beat = primaryTemplate.queryForObject(READ_HEARTBEAT, LocalDateTime.class);
+    } catch (DataAccessException e) {
+      log.warn("Heartbeat not written on the primary: {}", e.getMessage());
+      return;
+    }
+
+    List<Integer> usable = new ArrayList<>();
+    for (int replica = 0; replica < replicas.size(); replica++) {
+      try {
+        LocalDateTime replicaBeat = new JdbcTemplate(replicas.get(replica))
+            .queryForObject(READ_HEARTBEAT, LocalDateTime.class);
+        Duration lag = Duration.between(replicaBeat, beat);
+        if (lag.compareTo(maxLag) <= 0) {
+          usable.add(replica);
+        } else if (usableReplicas.contains(replica)) {
+          log.warn("Replica {} is {} ms behind, reading from the primary", replica,
+              lag.toMillis());
+        }
+      } catch (DataAccessException e) {
+        if (usableReplicas.contains(replica)) {
+          log.warn("Replica {} not reachable, reading from the primary: {}", replica,
+              e.getMessage());
+        }
+      }
+    }
+    usable.stream().filter(replica -> !usableReplicas.contains(replica))
+        .forEach(replica -> log.info("Replica {} caught up, reading from it", replica));
+    usableReplicas = List.copyOf(usable);
+  }
+
+  /**
+   * @return Indexes of the replicas that currently get reads
+   */
+  public List<Integer> getUsableReplicas() {
+    return usableReplicas;
+  }
+
+  private void markUnusable(int replica) {
+    usableReplicas = usableReplicas.stream().filter(usable -> usable != replica).toList();
+  }
+
+  @Override
+  public void close() {
+    replicas.forEach(HikariDataSource::close);
+    primary.close();
+  }
+}
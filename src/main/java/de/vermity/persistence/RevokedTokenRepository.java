@@ -0,0 +1,52 @@
+package de.vermity.persistence;
+
+import de.vermity.model.entity.RevokedToken;
+import jakarta.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Repository for the entity RevokedToken.
+ *
+ * @author Cedric Stumpf
+ */
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, String> {
+
+  // Not read-only, revocations are checked on the primary and never on a lagging replica
+  @Override
+  @Transactional
+  boolean existsById(String id);
+
+  /**
+   * Insert a revocation, unlike save it never merges into an existing row
+   *
+   * @param id        Id of the token
+   * @param expiresAt Expiration of the token
+   * @param now       Creation time of the entry
+   * @return Number of inserted rows
+   * @throws org.springframework.dao.DataIntegrityViolationException if the token was revoked
+   */
+  // Only revoked_token is written, the hint keeps the second-level cache regions
+  @Transactional
+  @Modifying
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "revoked_token"))
+  @Query(value = "insert into revoked_token (id, created_at, updated_at, expires_at)"
+      + " values (:id, :now, :now, :expiresAt)", nativeQuery = true)
+  int insert(@Param("id") String id, @Param("expiresAt") LocalDateTime expiresAt,
+      @Param("now") LocalDateTime now);
+
+  @Query("select r.id from RevokedToken r where r.expiresAt > :now")
+  List<String> findIdsByExpiresAtAfter(@Param("now") LocalDateTime now);
+
+  @Transactional
+  @Modifying
+  @Query("delete from RevokedToken r where r.expiresAt <= :now")
+  int deleteExpired(@Param("now") LocalDateTime now);
+}
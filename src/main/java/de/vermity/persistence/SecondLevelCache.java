@@ -0,0 +1,192 @@
+package de.vermity.persistence;
+
+import de.vermity.model.entity.AdditionalCost;
+import de.vermity.model.entity.Address;
+import de.vermity.model.entity.Building;
+import de.vermity.model.entity.Person;
+import de.vermity.util.CacheInvalidationBus;
+import de.vermity.util.CacheInvalidationEvent;
+import jakarta.persistence.EntityManagerFactory;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the Hibernate second-level cache of the reference entities consistent between instances.
+ * Hibernate updates the regions of the own instance on every write, the services publish the
+ * entities they changed through the {@link CacheInvalidationBus} and the other instances evict
+ * them together with their cached collections. Logs the hit ratio of every region each
+ * {@code vermity.cache.second-level.report-interval} milliseconds.
+ * <p>
+ * With read replicas, a read-only transaction may load an evicted entity from a replica that has
+ * not replicated the change yet and cache the old state until its time to live. Evictions are
+ * therefore repeated after {@code vermity.cache.second-level.replica-delay} milliseconds, the
+ * maximum lag of a replica that still gets reads.
+ *
+ * @author Cedric Stumpf
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SecondLevelCache {
+
+  static final String CACHE_NAME = "second-level";
+
+  static final List<String> REGIONS = List.of("address", "additional-cost", "person",
+      "person-roles", "building", "building-operating-costs");
+
+  // Cached entities with the roles of their cached collections
+  private static final Map<Class<?>, List<String>> CACHED_ENTITIES = Map.of(
+      Address.class, List.of(),
+      AdditionalCost.class, List.of(),
+      Person.class, List.of(Person.class.getName() + ".roleList"),
+      Building.class, List.of(Building.class.getName() + ".operatingCosts"));
+
+  private final EntityManagerFactory entityManagerFactory;
+  private final CacheInvalidationBus invalidationBus;
+  private final TaskScheduler taskScheduler;
+
+  @Value("${vermity.datasource.replica.urls:}")
+  private List<String> replicaUrls;
+  @Value("${vermity.cache.second-level.replica-delay:6000}")
+  private long replicaDelay;
+
+  /**
+   * Evict an entity and its collections on the other instances, call it in the transaction that
+   * changes it
+   *
+   * @param type Class of the entity
+   * @param id   Id of the entity, nothing is evicted for unsaved entities
+   * @author Cedric Stumpf
+   */
+  public void evict(Class<?> type, Object id) {
+    if (id != null) {
+      invalidationBus.publish(CACHE_NAME, type.getSimpleName() + ":" + id);
+    }
+  }
+
+  /**
+   * Evict all entities of a type and their collections on the other instances, for bulk updates
+   *
+   * @param type Class of the entities
+   * @author Cedric Stumpf
+   */
+  public void evictAll(Class<?> type) {
+    invalidationBus.publish(CACHE_NAME, type.getSimpleName());
+  }
+
+  /**
+   * Evict an entity and its collections on this instance only, for writes Hibernate does not see
+   *
+   * @param type Class of the entity
+   * @param id   Id of the entity
+   * @author Cedric Stumpf
+   */
+  public void evictLocally(Class<?> type, Object id) {
+    Runnable eviction = () -> {
+      Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+      cache.evictEntityData(type, id);
+      collectionRoles(type).forEach(role -> cache.evictCollectionData(role, id));
+    };
+    eviction.run();
+    repeatAfterReplicaDelay(eviction);
+  }
+
+  /**
+   * Evict all entities of a type and their collections on this instance only
+   *
+   * @param type Class of the entities
+   * @author Cedric Stumpf
+   */
+  public void evictAllLocally(Class<?> type) {
+    Runnable eviction = () -> {
+      Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+      cache.evictEntityData(type);
+      collectionRoles(type).forEach(cache::evictCollectionData);
+    };
+    eviction.run();
+    repeatAfterReplicaDelay(eviction);
+  }
+
+  /**
+   * Apply an eviction of another instance
+   */
+  @EventListener
+  public void onInvalidation(CacheInvalidationEvent event) {
+    if (!CACHE_NAME.equals(event.cache()) || event.key() == null) {
+      return;
+    }
+    String[] typeAndId = event.key().split(":", 2);
+    Class<?> type = CACHED_ENTITIES.keySet().stream()
+        .filter(entity -> entity.getSimpleName().equals(typeAndId[0])).findFirst().orElse(null);
+    if (type == null) {
+      log.warn("Invalidation of unknown entity {}", typeAndId[0]);
+      return;
+    }
+    if (typeAndId.length == 1) {
+      evictAllLocally(type);
+    } else {
+      evictLocally(type, Integer.valueOf(typeAndId[1]));
+    }
+  }
+
+  /**
+   * Log hits, misses and hit ratio of every region since startup
+   *
+   * @author Cedric Stumpf
+   */
+  @Scheduled(fixedDelayString = "${vermity.cache.second-level.report-interval:300000}",
+      initialDelayString = "${vermity.cache.second-level.report-interval:300000}")
+  public void report() {
+    Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    for (String region : REGIONS) {
+      CacheRegionStatistics regionStatistics = statistics.getDomainDataRegionStatistics(region);
+      long hits = regionStatistics.getHitCount();
+      long misses = regionStatistics.getMissCount();
+      log.info("Second-level cache region {}: {} hits, {} misses, hit ratio {}", region, hits,
+          misses, String.format("%.2f", hitRatio(hits, misses)));
+    }
+  }
+
+  /**
+   * Hit ratio of a region since startup
+   *
+   * @param region Name of the region
+   * @return Share of the lookups answered by the region, 0 without lookups
+   * @author Cedric Stumpf
+   */
+  public double hitRatio(String region) {
+    CacheRegionStatistics regionStatistics = entityManagerFactory.unwrap(SessionFactory.class)
+        .getStatistics().getDomainDataRegionStatistics(region);
+    return hitRatio(regionStatistics.getHitCount(), regionStatistics.getMissCount());
+  }
+
+  /**
+   * Evict again once every replica that gets reads has the change, drops the entities that were
+   * loaded from a lagging replica in the meantime
+   */
+  private void repeatAfterReplicaDelay(Runnable eviction) {
+    if (replicaUrls.stream().anyMatch(url -> !url.isBlank())) {
+      taskScheduler.schedule(eviction, Instant.now().plusMillis(replicaDelay));
+    }
+  }
+
+  private static double hitRatio(long hits, long misses) {
+    return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+  }
+
+  private static List<String> collectionRoles(Class<?> type) {
+    return CACHED_ENTITIES.getOrDefault(type, List.of());
+  }
+}
@@ -0,0 +1,54 @@
+package de.vermity.persistence;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import java.net.URI;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * JCache regions of the Hibernate second-level cache, held by Caffeine in the heap. Every region
+ * in {@link SecondLevelCache#REGIONS} gets its size ({@code vermity.cache.second-level.<region>.
+ * max-size}) and time to live in milliseconds ({@code vermity.cache.second-level.<region>.ttl}).
+ * Hibernate fails on startup when an entity uses a region that is not created here.
+ *
+ * @author Cedric Stumpf
+ */
+@Configuration(proxyBeanMethods = false)
+public class SecondLevelCacheConfig {
+
+  private static final String PREFIX = "vermity.cache.second-level.";
+
+  @Bean
+  public CacheManager secondLevelCacheManager(Environment environment) {
+    CachingProvider provider = Caching.getCachingProvider(
+        CaffeineCachingProvider.class.getName());
+    // Own manager per application context, instances started in the same JVM share no regions
+    CacheManager cacheManager = provider.getCacheManager(
+        URI.create("vermity:second-level:" + UUID.randomUUID()), getClass().getClassLoader());
+    for (String region : SecondLevelCache.REGIONS) {
+      CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+      configuration.setMaximumSize(OptionalLong.of(
+          environment.getProperty(PREFIX + region + ".max-size", Long.class, 10_000L)));
+      configuration.setExpireAfterWrite(OptionalLong.of(TimeUnit.MILLISECONDS.toNanos(
+          environment.getProperty(PREFIX + region + ".ttl", Long.class, 3_600_000L))));
+      cacheManager.createCache(region, configuration);
+    }
+    return cacheManager;
+  }
+
+  @Bean
+  public HibernatePropertiesCustomizer secondLevelCacheCustomizer(
+      CacheManager secondLevelCacheManager) {
+    return properties -> properties.put(ConfigSettings.CACHE_MANAGER, secondLevelCacheManager);
+  }
+}
@@ -4,10 +4,12 @@ import de.vermity.model.entity.Update;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 /**
- * Repository for the entity Update.
+ * Repository for the entity Update. Updates are the reading log of the meters, rows are only ever
+ * appended, the newest reading (highest id) of a meter is its current one.
  *
  * @author Cedric Stumpf
  */
-public interface UpdateRepository extends JpaRepository<Update, Integer> {
+public interface UpdateRepository extends JpaRepository<Update, Integer>,
+    UpdateRepositoryCustom {
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,48 @@
+package de.vermity.persistence;
+
+import de.vermity.model.dto.MeterReadingRangeDto;
+import de.vermity.model.entity.Update;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Writes to the reading log that Spring Data cannot batch and reads it cannot express
+ *
+ * @author Cedric Stumpf
+ */
+public interface UpdateRepositoryCustom {
+
+  /**
+   * Append a reading to the log of a meter unless its current (newest) reading is higher. The
+   * meter row stays locked until the end of the transaction, readings of the same meter are
+   * checked and appended one after the other.
+   *
+   * @param meterId  Id of the meter
+   * @param personId Id of the person submitting the reading
+   * @param reading  New reading
+   * @return 1 if the reading was appended, 0 if the current reading of the meter is higher
+   */
+  int appendReading(int meterId, int personId, int reading);
+
+  /**
+   * Append readings to the logs of their meters in JDBC batches, without loading the meters. The
+   * meter rows stay locked until the end of the transaction. The updates are not managed by the
+   * persistence context afterwards and keep an empty id.
+   *
+   * @param updates Readings with their saved meter and the person entering them, if any
+   */
+  void insertAll(Collection<Update> updates);
+
+  /**
+   * First and last reading of each meter within a period, ordered by id like the current reading
+   * of a meter. Meters without readings in the period are missing.
+   *
+   * @param meterIds Ids of the meters
+   * @param start    Start of the period
+   * @param end      End of the period
+   * @return List of the reading ranges
+   */
+  List<MeterReadingRangeDto> findReadingRanges(Collection<Integer> meterIds,
+      LocalDateTime start, LocalDateTime end);
+}
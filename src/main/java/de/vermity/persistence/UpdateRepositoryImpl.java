@@ -0,0 +1,88 @@
+package de.vermity.persistence;
+
+import de.vermity.model.dto.MeterReadingRangeDto;
+import de.vermity.model.entity.Update;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+/**
+ * Inserts into the reading log and reading ranges. The JDBC template takes part in the
+ * transaction of the caller, the meters have to be inserted before. Writers lock the rows of their
+ * meters until the end of the transaction, so the newest reading of a meter is the last committed.
+ *
+ * @author Cedric Stumpf
+ */
+@RequiredArgsConstructor
+public class UpdateRepositoryImpl implements UpdateRepositoryCustom {
+
+  private static final String INSERT = "insert into update_tbl"
+      + " (created_at, updated_at, meter_id, person_id, reading) values (?, ?, ?, ?, ?)";
+  // Skips the insert if the newest row of the meter is higher (idx_update_meter_newest)
+  private static final String APPEND_READING = "insert into update_tbl"
+      + " (created_at, updated_at, meter_id, person_id, reading)"
+      + " select current_timestamp(6), current_timestamp(6), :meterId, :personId, :reading"
+      + " from dual where coalesce((select u.reading from update_tbl u where u.id ="
+      + " (select max(l.id) from update_tbl l where l.meter_id = :meterId)), 0) <= :reading";
+  private static final String LOCK_METERS = "select id from meter where id in (:meterIds)"
+      + " order by id for update";
+  private static final int BATCH_SIZE = 500;
+  // First and last row of each meter in the period (idx_update_meter_created)
+  private static final String READING_RANGES = "select r.meter_id,"
+      + " (select f.reading from update_tbl f where f.id = r.first_id) first_reading,"
+      + " (select l.reading from update_tbl l where l.id = r.last_id) last_reading"
+      + " from (select meter_id, min(id) first_id, max(id) last_id"
+      + " from update_tbl where meter_id in (:meterIds) and created_at between :start and :end"
+      + " group by meter_id) r";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+  @Override
+  public void insertAll(Collection<Update> updates) {
+    if (updates.isEmpty()) {
+      return;
+    }
+    lockMeters(updates.stream().map(update -> update.getMeter().getId()).distinct().toList());
+    jdbcTemplate.batchUpdate(INSERT, updates, BATCH_SIZE, (statement, update) -> {
+      Timestamp createdAt = Timestamp.valueOf(update.getCreatedAt());
+      statement.setTimestamp(1, createdAt);
+      statement.setTimestamp(2, createdAt);
+      statement.setInt(3, update.getMeter().getId());
+      statement.setObject(4, update.getPerson() != null ? update.getPerson().getId() : null,
+          Types.INTEGER);
+      statement.setInt(5, update.getReading());
+    });
+  }
+
+  @Override
+  public int appendReading(int meterId, int personId, int reading) {
+    lockMeters(List.of(meterId));
+    return namedParameterJdbcTemplate.update(APPEND_READING, Map.of("meterId", meterId,
+        "personId", personId, "reading", reading));
+  }
+
+  @Override
+  public List<MeterReadingRangeDto> findReadingRanges(Collection<Integer> meterIds,
+      LocalDateTime start, LocalDateTime end) {
+    if (meterIds.isEmpty()) {
+      return List.of();
+    }
+    return namedParameterJdbcTemplate.query(READING_RANGES, Map.of("meterIds", meterIds,
+            "start", Timestamp.valueOf(start), "end", Timestamp.valueOf(end)),
+        (resultSet, rowNum) -> new MeterReadingRangeDto(resultSet.getInt("meter_id"),
+            resultSet.getInt("first_reading"), resultSet.getInt("last_reading")));
+  }
+
+  // Ordered by id, writers locking several meters do not deadlock each other
+  private void lockMeters(List<Integer> meterIds) {
+    namedParameterJdbcTemplate.queryForList(LOCK_METERS, Map.of("meterIds", meterIds),
+        Integer.class);
+  }
+}
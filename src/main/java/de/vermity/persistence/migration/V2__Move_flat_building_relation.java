@@ -0,0 +1,75 @@
+package de.vermity.persistence.migration;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.springframework.stereotype.Component;
+
+/**
+ * Moves the flat to building relation from the old join table {@code building_flat_list} to the
+ * foreign key {@code flat.building_id}. Databases created before the baseline may still have the
+ * join table and miss the column, new databases already start with the column. Registered as a
+ * bean, Flyway gets the Java migrations from the context because the classpath cannot be scanned
+ * in a native image.
+ *
+ * @author Cedric Stumpf
+ */
+@Slf4j
+@Component
+public class V2__Move_flat_building_relation extends BaseJavaMigration {
+
+  private static final String JOIN_TABLE = "building_flat_list";
+
+  @Override
+  public void migrate(Context context) throws SQLException {
+    Connection connection = context.getConnection();
+    try (Statement statement = connection.createStatement()) {
+      if (!columnExists(connection, "flat", "building_id")) {
+        statement.execute("alter table flat add column building_id integer");
+        statement.execute("create index idx_flat_building on flat (building_id)");
+        statement.execute("alter table flat add constraint fk_flat_building"
+            + " foreign key (building_id) references building (id)");
+      }
+      if (!tableExists(connection, JOIN_TABLE)) {
+        return;
+      }
+      int migrated = statement.executeUpdate("update flat set building_id = (select"
+          + " bfl.building_id from " + JOIN_TABLE + " bfl where bfl.flat_list_id = flat.id)"
+          + " where building_id is null");
+      statement.execute("drop table " + JOIN_TABLE);
+      log.info("Moved {} flats from {} to flat.building_id", migrated, JOIN_TABLE);
+    }
+  }
+
+  private static boolean tableExists(Connection connection, String table) throws SQLException {
+    DatabaseMetaData metaData = connection.getMetaData();
+    try (ResultSet tables = metaData.getTables(connection.getCatalog(), null, null,
+        new String[]{"TABLE"})) {
+      while (tables.next()) {
+        if (table.equalsIgnoreCase(tables.getString("TABLE_NAME"))) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static boolean columnExists(Connection connection, String table, String column)
+      throws SQLException {
+    DatabaseMetaData metaData = connection.getMetaData();
+    try (ResultSet columns = metaData.getColumns(connection.getCatalog(), null, null, null)) {
+      while (columns.next()) {
+        if (table.equalsIgnoreCase(columns.getString("TABLE_NAME"))
+            && column.equalsIgnoreCase(columns.getString("COLUMN_NAME"))) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,121 @@
+package de.vermity.security;
+
+import de.vermity.util.TokenBucket;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Decides whether a request is admitted. Logins are rate limited with token buckets per client IP
+ * and per account, expensive endpoints are limited to a number of concurrent requests. Rejected
+ * requests are answered with 429 and the seconds until a retry can succeed, instead of queueing
+ * until they time out.
+ *
+ * @author Cedric Stumpf
+ */
+@Slf4j
+@Component
+public class AdmissionControl {
+
+  public static final String TOO_MANY_REQUESTS = "Zu viele Anfragen, bitte später erneut versuchen";
+  // Idle buckets are dropped once this many clients are tracked
+  private static final int MAX_TRACKED_CLIENTS = 10_000;
+
+  private final Map<String, TokenBucket> loginBucketsByIp = new ConcurrentHashMap<>();
+  private final Map<String, TokenBucket> loginBucketsByAccount = new ConcurrentHashMap<>();
+  private final Map<String, Semaphore> permitsByPath = new ConcurrentHashMap<>();
+
+  @Value("${vermity.admission.enabled:true}")
+  private boolean enabled;
+  @Value("${vermity.admission.login.ip.capacity:20}")
+  private long ipCapacity;
+  @Value("${vermity.admission.login.ip.refill-per-minute:10}")
+  private long ipRefillPerMinute;
+  @Value("${vermity.admission.login.account.capacity:5}")
+  private long accountCapacity;
+  @Value("${vermity.admission.login.account.refill-per-minute:2}")
+  private long accountRefillPerMinute;
+  @Value("${vermity.admission.concurrency-limited-paths:/auth/createInvoice}")
+  private List<String> concurrencyLimitedPaths;
+  @Value("${vermity.admission.max-concurrent-requests:4}")
+  private int maxConcurrentRequests;
+
+  /**
+   * Take a login attempt of a client IP
+   *
+   * @param ip Address of the client
+   * @return Empty if admitted, otherwise the seconds until the next attempt is admitted
+   * @author Cedric Stumpf
+   */
+  public OptionalLong tryLoginFromIp(String ip) {
+    return tryConsume(loginBucketsByIp, ip, ipCapacity, ipRefillPerMinute);
+  }
+
+  /**
+   * Take a login attempt of an account, independent of the IPs the attempts come from
+   *
+   * @param email Email of the account
+   * @return Empty if admitted, otherwise the seconds until the next attempt is admitted
+   * @author Cedric Stumpf
+   */
+  public OptionalLong tryLoginForAccount(String email) {
+    if (email == null) {
+      return OptionalLong.empty();
+    }
+    return tryConsume(loginBucketsByAccount, email.toLowerCase(Locale.ROOT), accountCapacity,
+        accountRefillPerMinute);
+  }
+
+  /**
+   * @param path Servlet path of the request
+   * @return Whether the number of concurrent requests to the path is limited
+   */
+  public boolean isConcurrencyLimited(String path) {
+    return enabled && concurrencyLimitedPaths.contains(path);
+  }
+
+  /**
+   * Take a permit for a concurrency limited path, must be returned with {@link #leave(String)}
+   *
+   * @param path Servlet path of the request
+   * @return Whether a permit was taken
+   * @author Cedric Stumpf
+   */
+  public boolean tryEnter(String path) {
+    return permitsByPath.computeIfAbsent(path, p -> new Semaphore(maxConcurrentRequests))
+        .tryAcquire();
+  }
+
+  /**
+   * Return the permit taken with {@link #tryEnter(String)}
+   *
+   * @param path Servlet path of the request
+   */
+  public void leave(String path) {
+    permitsByPath.get(path).release();
+  }
+
+  private OptionalLong tryConsume(Map<String, TokenBucket> buckets, String key, long capacity,
+      long refillPerMinute) {
+    if (!enabled) {
+      return OptionalLong.empty();
+    }
+    long now = System.nanoTime();
+    if (buckets.size() > MAX_TRACKED_CLIENTS) {
+      buckets.values().removeIf(bucket -> bucket.isFull(now));
+    }
+    long waitNanos = buckets.computeIfAbsent(key,
+        k -> new TokenBucket(capacity, refillPerMinute, now)).tryConsume(now);
+    if (waitNanos == 0) {
+      return OptionalLong.empty();
+    }
+    log.warn("Login attempts for '{}' exceed the rate limit", key);
+    return OptionalLong.of(Math.max(1, (waitNanos + 999_999_999) / 1_000_000_000));
+  }
+}
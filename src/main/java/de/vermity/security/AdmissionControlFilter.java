@@ -0,0 +1,74 @@
+package de.vermity.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Applies the {@link AdmissionControl} before the security filter chain: the login rate limit per
+ * client IP and the concurrency limits of expensive endpoints. The rate limit per account is
+ * applied by the login itself, because it needs the request body.
+ *
+ * @author Cedric Stumpf
+ * @see OncePerRequestFilter
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@Order(SecurityProperties.DEFAULT_FILTER_ORDER - 1)
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+  private static final String LOGIN_PATH = "/login";
+
+  private final AdmissionControl admissionControl;
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+      FilterChain filterChain) throws ServletException, IOException {
+    String path = request.getServletPath();
+    if (LOGIN_PATH.equals(path) && HttpMethod.POST.matches(request.getMethod())) {
+      var retryAfter = admissionControl.tryLoginFromIp(request.getRemoteAddr());
+      if (retryAfter.isPresent()) {
+        reject(response, retryAfter.getAsLong());
+        return;
+      }
+    }
+
+    if (!admissionControl.isConcurrencyLimited(path)) {
+      filterChain.doFilter(request, response);
+      return;
+    }
+    if (!admissionControl.tryEnter(path)) {
+      log.warn("Too many concurrent requests to {}", path);
+      reject(response, 1);
+      return;
+    }
+    try {
+      filterChain.doFilter(request, response);
+    } finally {
+      admissionControl.leave(path);
+    }
+  }
+
+  private static void reject(HttpServletResponse response, long retryAfterSeconds)
+      throws IOException {
+    response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+    response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+    response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+    response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+    response.getWriter().write(AdmissionControl.TOO_MANY_REQUESTS);
+  }
+}
@@ -1,39 +1,65 @@
 package de.vermity.security;
 
+import de.vermity.model.entity.Person;
 import de.vermity.persistence.PersonRepository;
+import de.vermity.persistence.SecondLevelCache;
 import de.vermity.util.enums.Role;
 import java.util.Collection;
 import java.util.List;
 import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
-import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 /**
  * Custom UserDetailsService for Spring Security. This class is used to load a user by its email.
  * The user is then mapped to a UserDetails object. The UserDetails object is used by Spring
  * Security to authenticate the user.
+ * <p>
+ * Also stores passwords that Spring Security re-hashed after a successful login, which happens when
+ * the hash was created with a lower BCrypt strength than {@code vermity.security.bcrypt-strength}.
  *
  * @author Cedric Stumpf
  * @see UserDetailsService
+ * @see UserDetailsPasswordService
  */
+@Slf4j
 @Service
 @RequiredArgsConstructor
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
   private final PersonRepository personRepository;
+  private final SecondLevelCache secondLevelCache;
 
 
+  // Not read-only, a user logging in right after the registration is not on the replicas yet
   @Override
+  @Transactional
   public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
     var user = personRepository.findByEmail(email)
         .orElseThrow(() -> new UsernameNotFoundException("Email not found"));
-    return new User(user.getEmail(), user.getPassword(), mapRolesToAuthorities(user.getRoleList()));
+    return new PersonPrincipal(user, mapRolesToAuthorities(user.getRoleList()));
+  }
+
+  @Override
+  @Transactional
+  public UserDetails updatePassword(UserDetails user, String newPassword) {
+    log.info("Upgrading password hash of user");
+    personRepository.updatePasswordByEmail(user.getUsername(), newPassword);
+    if (user instanceof PersonPrincipal principal) {
+      secondLevelCache.evict(Person.class, principal.getPerson().getId());
+      principal.getPerson().setPassword(newPassword);
+      return new PersonPrincipal(principal.getPerson(), principal.getAuthorities());
+    }
+    secondLevelCache.evictAll(Person.class);
+    return loadUserByUsername(user.getUsername());
   }
 
   private Collection<GrantedAuthority> mapRolesToAuthorities(List<Role> roles) {
@@ -1,10 +1,12 @@
 package de.vermity.security;
 
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -20,6 +22,7 @@ import org.springframework.web.filter.OncePerRequestFilter;
  * @author Cedric Stumpf
  * @see OncePerRequestFilter
  */
+@Slf4j
 public class JWTAuthenticationFilter extends OncePerRequestFilter {
 
   @Autowired
@@ -34,8 +37,16 @@ public class JWTAuthenticationFilter extends OncePerRequestFilter {
       FilterChain filterChain) throws ServletException, IOException {
 
     String token = getJWTFromRequest(request);
-    if (StringUtils.hasText(token) && tokenGenerator.validateToken(token)) {
-      String username = tokenGenerator.getUsernameFromJWT(token);
+    if (StringUtils.hasText(token)) {
+      String username;
+      try {
+        username = tokenGenerator.parseAccessToken(token).getSubject();
+      } catch (JwtException | IllegalArgumentException e) {
+        // Expired, revoked or signed with an unknown key, the request stays unauthenticated
+        log.debug("Invalid token: {}", e.getMessage());
+        filterChain.doFilter(request, response);
+        return;
+      }
 
       UserDetails userDetails = customUserDetailsService.loadUserByUsername(username);
       UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(
@@ -5,7 +5,8 @@ import io.jsonwebtoken.JwtException;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.InvalidKeyException;
 import java.util.Date;
-import javax.crypto.SecretKey;
+import java.util.UUID;
+import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
@@ -14,46 +15,120 @@ import org.springframework.util.StringUtils;
 /**
  * This class is used to generate and validate JWT tokens for the authentication of users. The JWT
  * token is generated using the email of the user. The token is then used to authenticate the user.
+ * <p>
+ * Access tokens authenticate requests, refresh tokens are only accepted to issue new tokens. Both
+ * carry an id, so they can be revoked before they expire.
  *
  * @author Cedric Stumpf
+ * @see SigningKeys
+ * @see TokenRevocationList
  */
 @Component
+@RequiredArgsConstructor
 public class JWTGenerator {
 
-  private static final SecretKey KEY = Jwts.SIG.HS512.key().build();
+  static final String TYPE_CLAIM = "typ";
+  static final String ACCESS_TOKEN = "access";
+  static final String REFRESH_TOKEN = "refresh";
+
+  private final SigningKeys signingKeys;
+  private final TokenRevocationList revocationList;
+
   @Value("${vermity.token.expiration:3600000}")
   private long JWT_EXPIRATION;
+  @Value("${vermity.token.refresh-expiration:1209600000}")
+  private long REFRESH_EXPIRATION;
 
   public String generateToken(Authentication authentication) throws InvalidKeyException {
-    String email = authentication.getName();
+    return buildToken(authentication.getName(), ACCESS_TOKEN, JWT_EXPIRATION);
+  }
+
+  public String generateAccessToken(String email) throws InvalidKeyException {
+    return buildToken(email, ACCESS_TOKEN, JWT_EXPIRATION);
+  }
+
+  public String generateRefreshToken(String email) throws InvalidKeyException {
+    return buildToken(email, REFRESH_TOKEN, REFRESH_EXPIRATION);
+  }
+
+  private String buildToken(String email, String type, long expiration)
+      throws InvalidKeyException {
     Date currentDate = new Date();
-    Date expireDate = new Date(currentDate.getTime() + JWT_EXPIRATION);
+    Date expireDate = new Date(currentDate.getTime() + expiration);
 
     return Jwts.builder()
+        .header().keyId(signingKeys.getSigningKeyId()).and()
+        .id(UUID.randomUUID().toString())
         .subject(email)
-        .issuedAt(new Date())
+        .claim(TYPE_CLAIM, type)
+        .issuedAt(currentDate)
         .expiration(expireDate)
-        .signWith(KEY)
+        .signWith(signingKeys.getSigningKey(), Jwts.SIG.HS512)
         .compact();
   }
 
   public String getUsernameFromJWT(String token) throws JwtException, IllegalArgumentException {
-    Claims claims = Jwts.parser()
-        .verifyWith(KEY)
-        .build()
-        .parseSignedClaims(token)
-        .getPayload();
-    return claims.getSubject();
+    return parseAccessToken(token).getSubject();
   }
 
   public boolean validateToken(String token) throws JwtException, IllegalArgumentException {
-    Jwts.parser()
-        .verifyWith(KEY)
-        .build()
-        .parseSignedClaims(token);
+    parseAccessToken(token);
     return true;
   }
 
+  /**
+   * Verify an access token
+   *
+   * @param token Access token without the Bearer prefix
+   * @return Claims of the token
+   * @throws JwtException if the token is invalid, expired, revoked or no access token
+   * @author Cedric Stumpf
+   */
+  public Claims parseAccessToken(String token) throws JwtException, IllegalArgumentException {
+    Claims claims = parse(token, ACCESS_TOKEN);
+    if (revocationList.isRevoked(claims.getId())) {
+      throw new JwtException("Token revoked");
+    }
+    return claims;
+  }
+
+  /**
+   * Verify a refresh token, the revocation is checked against the database
+   *
+   * @param token Refresh token
+   * @return Claims of the token
+   * @throws JwtException if the token is invalid, expired, revoked or no refresh token
+   * @author Cedric Stumpf
+   */
+  public Claims parseRefreshToken(String token) throws JwtException, IllegalArgumentException {
+    Claims claims = parse(token, REFRESH_TOKEN);
+    if (revocationList.isRevokedAnywhere(claims.getId())) {
+      throw new JwtException("Token revoked");
+    }
+    return claims;
+  }
+
+  /**
+   * Revoke a token until it expires
+   *
+   * @param claims Claims of a verified token
+   * @return Whether the token was revoked by this call, false if it was revoked before
+   * @author Cedric Stumpf
+   */
+  public boolean revoke(Claims claims) {
+    return revocationList.revoke(claims.getId(), claims.getExpiration().toInstant());
+  }
+
+  private Claims parse(String token, String type) throws JwtException, IllegalArgumentException {
+    Claims claims = signingKeys.getParser()
+        .parseSignedClaims(token)
+        .getPayload();
+    if (!type.equals(claims.get(TYPE_CLAIM, String.class)) || claims.getId() == null) {
+      throw new JwtException("Token is no " + type + " token");
+    }
+    return claims;
+  }
+
   public String extractToken(String bearerToken) {
     if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
       return bearerToken.substring(7);
@@ -0,0 +1,24 @@
+package de.vermity.security;
+
+import de.vermity.model.entity.Person;
+import java.util.Collection;
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+/**
+ * UserDetails of a person. Keeps the person that was loaded for the authentication, so the login
+ * does not have to load it a second time.
+ *
+ * @author Cedric Stumpf
+ */
+@Getter
+public class PersonPrincipal extends User {
+
+  private final transient Person person;
+
+  public PersonPrincipal(Person person, Collection<? extends GrantedAuthority> authorities) {
+    super(person.getEmail(), person.getPassword(), authorities);
+    this.person = person;
+  }
+}
@@ -0,0 +1,96 @@
+package de.vermity.security;
+
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.LocatorAdapter;
+import io.jsonwebtoken.ProtectedHeader;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.InvalidKeyException;
+import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.crypto.SecretKey;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * HS512 keys of the JWTs, configured with {@code vermity.token.signing-keys} as comma separated
+ * Base64 encoded secrets of at least 64 bytes. Every instance has to use the same keys.
+ * <p>
+ * The first key signs, all keys verify. Tokens carry the id of their key in the header. To rotate,
+ * put a new key in front and remove the old one after the refresh token expiration. Without
+ * configured keys a random key is generated, tokens are then only valid until the restart.
+ *
+ * @author Cedric Stumpf
+ */
+@Slf4j
+@Component
+public class SigningKeys {
+
+  private static final int MIN_KEY_BYTES = 64;
+
+  @Value("${vermity.token.signing-keys:}")
+  private String[] encodedKeys;
+
+  @Getter
+  private String signingKeyId;
+  @Getter
+  private SecretKey signingKey;
+  @Getter
+  private JwtParser parser;
+
+  @PostConstruct
+  void init() {
+    Map<String, SecretKey> keysById = new LinkedHashMap<>();
+    for (String encodedKey : encodedKeys) {
+      if (encodedKey.isBlank()) {
+        continue;
+      }
+      byte[] secret = Decoders.BASE64.decode(encodedKey.strip());
+      if (secret.length < MIN_KEY_BYTES) {
+        throw new IllegalStateException(
+            "vermity.token.signing-keys: HS512 keys need at least " + MIN_KEY_BYTES + " bytes");
+      }
+      SecretKey key = Keys.hmacShaKeyFor(secret);
+      keysById.put(keyId(key), key);
+    }
+    if (keysById.isEmpty()) {
+      log.warn("No vermity.token.signing-keys configured, tokens are invalid after a restart");
+      SecretKey key = Jwts.SIG.HS512.key().build();
+      keysById.put(keyId(key), key);
+    }
+    var signing = keysById.entrySet().iterator().next();
+    signingKeyId = signing.getKey();
+    signingKey = signing.getValue();
+    parser = Jwts.parser().keyLocator(new LocatorAdapter<Key>() {
+      @Override
+      protected Key locate(ProtectedHeader header) {
+        SecretKey key = keysById.get(header.getKeyId());
+        if (key == null) {
+          throw new InvalidKeyException("Unknown signing key");
+        }
+        return key;
+      }
+    }).build();
+    log.info("Signing tokens with key {}, {} keys accepted", signingKeyId, keysById.size());
+  }
+
+  /**
+   * Id of a key that does not reveal it, the same on every instance
+   */
+  private static String keyId(SecretKey key) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getEncoded());
+      return HexFormat.of().formatHex(digest, 0, 8);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package de.vermity.security;
+
+import de.vermity.persistence.RevokedTokenRepository;
+import de.vermity.util.BloomFilter;
+import de.vermity.util.CacheInvalidationBus;
+import de.vermity.util.CacheInvalidationEvent;
+import jakarta.annotation.PostConstruct;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Ids of revoked tokens. They are stored in the database until the token expires, every instance
+ * keeps a bloom filter of them in memory. A token that is not in the filter was not revoked, so
+ * the database is only asked for revoked tokens and the rare false positive.
+ * <p>
+ * Revocations are broadcast to the other instances through the {@link CacheInvalidationBus}, the
+ * filter is also rebuilt from the database every {@code vermity.token.revocation.sync-interval}
+ * milliseconds. Refresh tokens are always checked against the database.
+ *
+ * @author Cedric Stumpf
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TokenRevocationList {
+
+  static final String CACHE_NAME = "revoked-token";
+
+  private final RevokedTokenRepository revokedTokenRepository;
+  private final CacheInvalidationBus invalidationBus;
+
+  @Value("${vermity.token.revocation.expected-revocations:10000}")
+  private int expectedRevocations;
+  @Value("${vermity.token.revocation.false-positive-probability:0.01}")
+  private double falsePositiveProbability;
+
+  private volatile BloomFilter filter;
+
+  @PostConstruct
+  void init() {
+    sync();
+  }
+
+  /**
+   * Purge expired entries and rebuild the filter from the database
+   *
+   * @author Cedric Stumpf
+   */
+  @Scheduled(fixedDelayString = "${vermity.token.revocation.sync-interval:60000}",
+      initialDelayString = "${vermity.token.revocation.sync-interval:60000}")
+  public synchronized void sync() {
+    LocalDateTime now = LocalDateTime.now();
+    int purged = revokedTokenRepository.deleteExpired(now);
+    List<String> ids = revokedTokenRepository.findIdsByExpiresAtAfter(now);
+    BloomFilter rebuilt = new BloomFilter(Math.max(expectedRevocations, ids.size() * 2),
+        falsePositiveProbability);
+    ids.forEach(rebuilt::put);
+    filter = rebuilt;
+    log.debug("Token revocation list synced, {} revoked, {} purged", ids.size(), purged);
+  }
+
+  /**
+   * Revoke a token. The entry is inserted, the primary key decides which of several concurrent
+   * revocations of the same token, on any instance, succeeds.
+   *
+   * @param tokenId   Id of the token
+   * @param expiresAt Expiration of the token, the entry is kept until then
+   * @return Whether the token was revoked by this call, false if it was revoked before
+   * @author Cedric Stumpf
+   */
+  public synchronized boolean revoke(String tokenId, Instant expiresAt) {
+    try {
+      revokedTokenRepository.insert(tokenId,
+          LocalDateTime.ofInstant(expiresAt, ZoneId.systemDefault()), LocalDateTime.now());
+    } catch (DataIntegrityViolationException e) {
+      log.debug("Token '{}' was already revoked", tokenId);
+      filter.put(tokenId);
+      return false;
+    }
+    filter.put(tokenId);
+    invalidationBus.publish(CACHE_NAME, tokenId);
+    return true;
+  }
+
+  /**
+   * Add a token revoked by another instance to the filter
+   */
+  @EventListener
+  public synchronized void onInvalidation(CacheInvalidationEvent event) {
+    if (CACHE_NAME.equals(event.cache()) && event.key() != null) {
+      filter.put(event.key());
+    }
+  }
+
+  /**
+   * @param tokenId Id of the token
+   * @return Whether the token was revoked on this instance or before the last sync
+   * @author Cedric Stumpf
+   */
+  public boolean isRevoked(String tokenId) {
+    return filter.mightContain(tokenId) && revokedTokenRepository.existsById(tokenId);
+  }
+
+  /**
+   * @param tokenId Id of the token
+   * @return Whether the token was revoked on any instance
+   * @author Cedric Stumpf
+   */
+  public boolean isRevokedAnywhere(String tokenId) {
+    return revokedTokenRepository.existsById(tokenId);
+  }
+}
@@ -2,6 +2,7 @@ package de.vermity.security;
 
 import java.util.List;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -29,6 +30,10 @@ public class WebSecurityConfig {
   private final JwtAuthEntryPoint authEntryPoint;
   private final CustomUserDetailsService userDetailsService;
 
+  // Raising it re-hashes the password of every user on their next login
+  @Value("${vermity.security.bcrypt-strength:10}")
+  private int bcryptStrength;
+
   @Autowired
   public WebSecurityConfig(
       CustomUserDetailsService userDetailsService, JwtAuthEntryPoint authEntryPoint) {
@@ -53,6 +58,8 @@ public class WebSecurityConfig {
                     .permitAll()
                     .requestMatchers("/api/login")
                     .permitAll()
+                    .requestMatchers("/api/refresh")
+                    .permitAll()
                     .requestMatchers("/swagger-ui/**")
                     .permitAll()
                     .requestMatchers("/api-docs/**")
@@ -91,6 +98,6 @@ public class WebSecurityConfig {
 
   @Bean
   PasswordEncoder passwordEncoder() {
-    return new BCryptPasswordEncoder();
+    return new BCryptPasswordEncoder(bcryptStrength);
   }
 }
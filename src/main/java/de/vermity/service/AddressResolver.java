@@ -0,0 +1,153 @@
+package de.vermity.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import de.vermity.model.dto.AddressDto;
+import de.vermity.model.entity.Address;
+import de.vermity.persistence.AddressRepository;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Resolves addresses to their saved entity. Addresses are normalized (trimmed, whitespace
+ * collapsed) and keyed by a 64 bit hash of their fields, the last
+ * {@code vermity.cache.address.max-size} resolved addresses are kept in memory, so the shared empty
+ * address of new users and the addresses of buildings are not queried on every request.
+ * <p>
+ * Addresses are unique ({@code unique_address}) and never changed or deleted, an entry stays valid
+ * once the address is committed. New addresses are inserted in their own transaction, when a
+ * concurrent request inserted the same address first the saved one is read back instead.
+ *
+ * @author Cedric Stumpf
+ */
+@Slf4j
+@Component
+public class AddressResolver {
+
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private final AddressRepository addressRepository;
+  private final TransactionTemplate insertTransaction;
+  private final Cache<Long, Address> addressByKey;
+
+  public AddressResolver(AddressRepository addressRepository,
+      PlatformTransactionManager transactionManager,
+      @Value("${vermity.cache.address.max-size:10000}") long maxSize) {
+    this.addressRepository = addressRepository;
+    // Committed before the calling transaction, a conflict must not roll back the caller
+    this.insertTransaction = new TransactionTemplate(transactionManager);
+    this.insertTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    this.addressByKey = Caffeine.newBuilder().maximumSize(maxSize).build();
+  }
+
+  /**
+   * Find a saved address
+   *
+   * @param addressDto Address, normalized before the lookup
+   * @return Saved address or empty if there is none
+   * @author Cedric Stumpf
+   */
+  public Optional<Address> find(AddressDto addressDto) {
+    Address address = normalize(addressDto);
+    long key = key(address);
+    Address indexed = addressByKey.getIfPresent(key);
+    if (indexed != null && isSameAddress(indexed, address)) {
+      return Optional.of(copy(indexed));
+    }
+    Optional<Address> saved = query(address);
+    saved.ifPresent(found -> addressByKey.put(key, copy(found)));
+    return saved;
+  }
+
+  /**
+   * Find a saved address or save it
+   *
+   * @param addressDto Address, saved normalized
+   * @return Saved address
+   * @author Cedric Stumpf
+   */
+  public Address resolve(AddressDto addressDto) {
+    return find(addressDto).orElseGet(() -> insertOrGet(normalize(addressDto)));
+  }
+
+  /**
+   * @return Saved empty address of users that did not enter one
+   * @author Cedric Stumpf
+   */
+  public Address emptyAddress() {
+    return resolve(new AddressDto("", 0, "", "", ""));
+  }
+
+  private Address insertOrGet(Address address) {
+    long key = key(address);
+    Address saved;
+    try {
+      log.info("Address not found, creating new one");
+      saved = insertTransaction.execute(status -> addressRepository.saveAndFlush(address));
+    } catch (DataIntegrityViolationException e) {
+      log.info("Address created by a concurrent request, reading it");
+      saved = insertTransaction.execute(status -> query(address)).orElseThrow(() -> e);
+    }
+    addressByKey.put(key, copy(saved));
+    return saved;
+  }
+
+  private Optional<Address> query(Address address) {
+    return addressRepository.findByStateAndCityAndStreetAndZipAndCountry(address.getState(),
+        address.getCity(), address.getStreet(), address.getZip(), address.getCountry());
+  }
+
+  private static Address normalize(AddressDto addressDto) {
+    return Address.builder().street(normalize(addressDto.street()))
+        .zip(addressDto.zip()).city(normalize(addressDto.city()))
+        .country(normalize(addressDto.country())).state(normalize(addressDto.state())).build();
+  }
+
+  private static String normalize(String value) {
+    return WHITESPACE.matcher(value.strip()).replaceAll(" ");
+  }
+
+  /**
+   * FNV-1a hash over the fields of a normalized address
+   */
+  static long key(Address address) {
+    long hash = FNV_OFFSET_BASIS;
+    for (String field : new String[]{address.getStreet(), address.getCity(), address.getState(),
+        String.valueOf(address.getZip()), address.getCountry()}) {
+      for (int i = 0; i < field.length(); i++) {
+        hash = (hash ^ field.charAt(i)) * FNV_PRIME;
+      }
+      // Separator, so that moving characters between fields changes the hash
+      hash = (hash ^ 0xffff) * FNV_PRIME;
+    }
+    return hash;
+  }
+
+  /**
+   * Guards against hash collisions, ignores case like the collation of the unique key
+   */
+  private static boolean isSameAddress(Address indexed, Address address) {
+    return indexed.getStreet().equalsIgnoreCase(address.getStreet())
+        && indexed.getCity().equalsIgnoreCase(address.getCity())
+        && indexed.getState().equalsIgnoreCase(address.getState())
+        && indexed.getZip().equals(address.getZip())
+        && indexed.getCountry().equalsIgnoreCase(address.getCountry());
+  }
+
+  /**
+   * Detached copy, the index must not share instances with the persistence contexts
+   */
+  private static Address copy(Address address) {
+    return Address.builder().id(address.getId()).street(address.getStreet()).zip(address.getZip())
+        .city(address.getCity()).country(address.getCountry()).state(address.getState()).build();
+  }
+}
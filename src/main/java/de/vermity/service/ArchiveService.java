@@ -0,0 +1,169 @@
+package de.vermity.service;
+
+import de.vermity.model.dto.GetInvoiceDto;
+import de.vermity.model.dto.MeterReadingRangeDto;
+import de.vermity.persistence.ArchiveRepository;
+import de.vermity.persistence.UpdateRepository;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Archival tier of invoices and readings. Only the current billing year and the
+ * {@code vermity.archive.hot-years - 1} years before it stay in {@code invoice} and
+ * {@code update_tbl}, older invoices and readings are moved into the compressed archive tables
+ * every night ({@code vermity.archive.cron}), in batches of {@code vermity.archive.batch-size}
+ * invoices or meters per transaction.
+ * <p>
+ * The download endpoints read archived invoices like hot ones, archived invoices can no longer be
+ * changed. Reading ranges reaching before the horizon are combined from both tiers.
+ *
+ * @author Cedric Stumpf
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ArchiveService {
+
+  // Invoices are created for the previous year, their readings go back up to 12 months
+  private static final int MIN_HOT_YEARS = 2;
+
+  private final ArchiveRepository archiveRepository;
+  private final UpdateRepository updateRepository;
+  private final TransactionTemplate transactionTemplate;
+
+  @Value("${vermity.archive.hot-years:2}")
+  private int hotYears;
+  @Value("${vermity.archive.batch-size:500}")
+  private int batchSize;
+
+  /**
+   * Move invoices and readings before the horizon into the archive
+   *
+   * @author Cedric Stumpf
+   */
+  @Scheduled(cron = "${vermity.archive.cron:0 30 3 * * *}")
+  public void archive() {
+    int firstHotYear = firstHotYear();
+    int invoices = archiveInBatches(
+        () -> archiveRepository.findInvoiceIdsToArchive(firstHotYear, batchSize),
+        archiveRepository::archiveInvoices);
+    LocalDateTime horizon = LocalDate.of(firstHotYear, 1, 1).atStartOfDay();
+    int readings = archiveInBatches(
+        () -> archiveRepository.findMeterIdsToArchive(horizon, batchSize),
+        meterIds -> archiveRepository.archiveReadings(meterIds, horizon));
+    log.info("Archived {} invoices and {} readings before {}", invoices, readings, firstHotYear);
+  }
+
+  /**
+   * @param buildingId Id of the building
+   * @param year       Billing year
+   * @return Ids of the archived invoices of the building for the year, empty for hot years
+   * @author Cedric Stumpf
+   */
+  public List<Integer> findInvoiceIds(int buildingId, int year) {
+    if (year >= firstHotYear()) {
+      return List.of();
+    }
+    return archiveRepository.findInvoiceIds(buildingId, year);
+  }
+
+  /**
+   * @param invoiceId Id of the archived invoice
+   * @return PDF of the invoice, empty if it is not archived or has no PDF
+   * @author Cedric Stumpf
+   */
+  public Optional<byte[]> findInvoicePdf(int invoiceId) {
+    return archiveRepository.findInvoicePdf(invoiceId);
+  }
+
+  /**
+   * @param flatIds Ids of the flats
+   * @return Archived invoices of the flats
+   * @author Cedric Stumpf
+   */
+  public List<GetInvoiceDto> findInvoicesOfFlats(Collection<Integer> flatIds) {
+    return archiveRepository.findInvoicesByFlatIds(flatIds);
+  }
+
+  /**
+   * @param flatIds Ids of the flats
+   * @return Newest archived invoice of each flat
+   * @author Cedric Stumpf
+   */
+  public List<GetInvoiceDto> findLatestInvoicesOfFlats(Collection<Integer> flatIds) {
+    return archiveRepository.findLatestInvoicesByFlatIds(flatIds);
+  }
+
+  /**
+   * First and last reading of each meter within a period, from the archive as well when the
+   * period starts before the horizon. Archived readings are older than the hot ones of their meter.
+   *
+   * @param meterIds Ids of the meters
+   * @param start    Start of the period
+   * @param end      End of the period
+   * @return List of the reading ranges, meters without readings in the period are missing
+   * @author Cedric Stumpf
+   */
+  public List<MeterReadingRangeDto> findReadingRanges(Collection<Integer> meterIds,
+      LocalDateTime start, LocalDateTime end) {
+    List<MeterReadingRangeDto> hot = updateRepository.findReadingRanges(meterIds, start, end);
+    if (start.getYear() >= firstHotYear()) {
+      return hot;
+    }
+    Map<Integer, MeterReadingRangeDto> ranges = new LinkedHashMap<>();
+    for (MeterReadingRangeDto range : hot) {
+      ranges.put(range.meterId(), range);
+    }
+    for (MeterReadingRangeDto archived : archiveRepository.findReadingRanges(meterIds, start,
+        end)) {
+      ranges.merge(archived.meterId(), archived, (hotRange, archivedRange) ->
+          new MeterReadingRangeDto(hotRange.meterId(), archivedRange.firstReading(),
+              hotRange.lastReading()));
+    }
+    return new ArrayList<>(ranges.values());
+  }
+
+  private int firstHotYear() {
+    return LocalDate.now().getYear() - Math.max(hotYears, MIN_HOT_YEARS) + 1;
+  }
+
+  /**
+   * Archive batches until nothing is left, each batch in its own transaction. A failed batch
+   * stays in the hot tables until the next run.
+   */
+  private int archiveInBatches(Supplier<List<Integer>> nextBatch,
+      Function<List<Integer>, Integer> archiveBatch) {
+    int archived = 0;
+    while (true) {
+      try {
+        Integer count = transactionTemplate.execute(status -> {
+          List<Integer> ids = nextBatch.get();
+          return ids.isEmpty() ? 0 : archiveBatch.apply(ids);
+        });
+        // Nothing left, or archived concurrently by another instance
+        if (count == null || count == 0) {
+          return archived;
+        }
+        archived += count;
+      } catch (DataAccessException e) {
+        log.warn("Archiving failed, retrying on the next run", e);
+        return archived;
+      }
+    }
+  }
+}
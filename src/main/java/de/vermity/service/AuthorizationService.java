@@ -0,0 +1,83 @@
+package de.vermity.service;
+
+import de.vermity.persistence.FlatRepository;
+import de.vermity.persistence.InvoiceRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+/**
+ * Checks whether a meter, invoice or flat belongs to a flat, building or person. Every check is a
+ * single existence query on indexed columns or a lookup in the {@link BuildingStructureCache}, no
+ * collections are loaded.
+ *
+ * @author Cedric Stumpf
+ */
+@Service
+@RequiredArgsConstructor
+public class AuthorizationService {
+
+  private final FlatRepository flatRepository;
+  private final InvoiceRepository invoiceRepository;
+  private final BuildingStructureCache buildingStructureCache;
+
+  /**
+   * Check if a person is the landlord of a building
+   *
+   * @param personId   Id of the person
+   * @param buildingId Id of the building
+   * @return true if the building exists and belongs to the person
+   * @author Cedric Stumpf
+   */
+  public boolean isLandlordOfBuilding(int personId, int buildingId) {
+    return buildingStructureCache.findLandlordIdByBuildingId(buildingId)
+        .filter(landlordId -> landlordId == personId).isPresent();
+  }
+
+  /**
+   * Check if a person is the tenant of a flat
+   *
+   * @param personId Id of the person
+   * @param flatId   Id of the flat
+   * @return true if the flat exists and is rented by the person
+   * @author Cedric Stumpf
+   */
+  public boolean isTenantOfFlat(int personId, int flatId) {
+    return flatRepository.existsByIdAndTenant_Id(flatId, personId);
+  }
+
+  /**
+   * Check if a flat belongs to a building
+   *
+   * @param flatId     Id of the flat
+   * @param buildingId Id of the building
+   * @return true if the flat exists and is part of the building
+   * @author Cedric Stumpf
+   */
+  public boolean isFlatOfBuilding(int flatId, int buildingId) {
+    return flatRepository.existsByIdAndBuilding_Id(flatId, buildingId);
+  }
+
+  /**
+   * Check if a meter belongs to a flat
+   *
+   * @param meterId Id of the meter
+   * @param flatId  Id of the flat
+   * @return true if the flat exists and the meter is one of its meters
+   * @author Cedric Stumpf
+   */
+  public boolean isMeterOfFlat(int meterId, int flatId) {
+    return flatRepository.existsByIdAndMeterList_Id(flatId, meterId);
+  }
+
+  /**
+   * Check if an invoice belongs to a flat of a building
+   *
+   * @param invoiceId  Id of the invoice
+   * @param buildingId Id of the building
+   * @return true if the invoice exists and was issued for a flat of the building
+   * @author Cedric Stumpf
+   */
+  public boolean isInvoiceOfBuilding(int invoiceId, int buildingId) {
+    return invoiceRepository.existsByIdAndFlat_Building_Id(invoiceId, buildingId);
+  }
+}
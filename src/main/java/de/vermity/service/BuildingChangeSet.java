@@ -0,0 +1,161 @@
+package de.vermity.service;
+
+import de.vermity.model.dto.FlatDto;
+import de.vermity.model.dto.MeterDto;
+import de.vermity.model.dto.ModifyBuildingDto;
+import de.vermity.model.entity.AdditionalCost;
+import de.vermity.model.entity.Building;
+import de.vermity.model.entity.Flat;
+import de.vermity.model.entity.Meter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Changes a {@link ModifyBuildingDto} makes to a saved building. The saved flats are indexed by id
+ * and the meters of the building by meter number, every flat and meter of the request is looked
+ * up once instead of being compared with every saved one.
+ * <p>
+ * Flats of the request with an unknown id are new, meters with an unknown number are new meters
+ * of their flat. Additions of a flat are identified by name, additions missing in the request are
+ * removed from the flat. Flats and meters missing in the request are kept, their readings and
+ * invoices stay valid.
+ *
+ * @param changedFlats  Saved flats whose attributes or additions changed
+ * @param newFlats      Flats of the request that are not saved yet
+ * @param newMeters     Meters of the request that are not saved yet, of saved flats
+ * @param changedMeters Saved meters whose type or costs changed
+ * @param readings      Saved meters with a reading in the request that differs from theirs
+ * @author Cedric Stumpf
+ */
+record BuildingChangeSet(List<FlatChange> changedFlats, List<FlatDto> newFlats,
+                         List<NewMeter> newMeters, List<MeterChange> changedMeters,
+                         List<ReadingChange> readings) {
+
+  /**
+   * Compare a request with the saved building
+   *
+   * @param building          Saved building with its flats and meters
+   * @param modifyBuildingDto Requested state of the building
+   * @return Changes to apply
+   */
+  static BuildingChangeSet of(Building building, ModifyBuildingDto modifyBuildingDto) {
+    Map<Integer, Flat> flatsById = new HashMap<>();
+    Map<String, Meter> metersByNumber = new HashMap<>();
+    for (Flat flat : building.getFlatList()) {
+      flatsById.put(flat.getId(), flat);
+      flat.getMeterList().forEach(meter -> metersByNumber.put(meter.getMeterNr(), meter));
+    }
+
+    List<FlatChange> changedFlats = new ArrayList<>();
+    List<FlatDto> newFlats = new ArrayList<>();
+    List<NewMeter> newMeters = new ArrayList<>();
+    List<MeterChange> changedMeters = new ArrayList<>();
+    List<ReadingChange> readings = new ArrayList<>();
+    for (FlatDto flatDto : modifyBuildingDto.flatList()) {
+      Flat flat = flatsById.get(flatDto.flatId());
+      if (flat == null) {
+        newFlats.add(flatDto);
+        continue;
+      }
+      FlatChange flatChange = FlatChange.of(flat, flatDto);
+      if (flatChange.isChange()) {
+        changedFlats.add(flatChange);
+      }
+      for (MeterDto meterDto : flatDto.meterList()) {
+        Meter meter = metersByNumber.get(meterDto.meterNr());
+        if (meter == null) {
+          newMeters.add(new NewMeter(flat, meterDto));
+          continue;
+        }
+        if (meter.getType() != meterDto.type()
+            || Double.compare(meter.getCostPerUnit(), meterDto.costPerUnit()) != 0
+            || Double.compare(meter.getBaseCost(), meterDto.baseCost()) != 0) {
+          changedMeters.add(new MeterChange(meter, meterDto));
+        }
+        if (meter.getReading() != meterDto.reading()) {
+          readings.add(new ReadingChange(meter, meterDto.reading()));
+        }
+      }
+    }
+    return new BuildingChangeSet(changedFlats, newFlats, newMeters, changedMeters, readings);
+  }
+
+  /**
+   * @return Numbers of all meters to insert, of saved and of new flats
+   */
+  List<String> newMeterNumbers() {
+    return Stream.concat(newMeters.stream().map(newMeter -> newMeter.meterDto().meterNr()),
+            newFlats.stream().flatMap(flat -> flat.meterList().stream()).map(MeterDto::meterNr))
+        .toList();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%d changed flats, %d new flats, %d new meters, %d changed meters,"
+            + " %d readings", changedFlats.size(), newFlats.size(), newMeters.size(),
+        changedMeters.size(), readings.size());
+  }
+
+  /**
+   * Changes of a saved flat
+   *
+   * @param flat              Saved flat
+   * @param flatDto           Requested state of the flat
+   * @param attributesChanged Whether location, size, residents or rent changed
+   * @param addedAdditions    Additions of the request the flat does not have yet
+   * @param removedAdditions  Additions of the flat missing in the request
+   */
+  record FlatChange(Flat flat, FlatDto flatDto, boolean attributesChanged,
+                    List<AdditionalCost> addedAdditions, List<AdditionalCost> removedAdditions) {
+
+    static FlatChange of(Flat flat, FlatDto flatDto) {
+      boolean attributesChanged = !Objects.equals(flat.getLocation(), flatDto.location())
+          || flat.getRooms() != flatDto.rooms()
+          || flat.getSquareMeter() != flatDto.squareMeter()
+          || flat.getResidents() != flatDto.residents()
+          || Double.compare(flat.getColdRent(), flatDto.coldRent()) != 0
+          || Double.compare(flat.getWarmRent(), flatDto.warmRent()) != 0;
+
+      Set<String> savedNames = new HashSet<>();
+      flat.getAdditionList().forEach(addition -> savedNames.add(addition.getName()));
+      Set<String> requestedNames = new HashSet<>();
+      flatDto.additionList().forEach(addition -> requestedNames.add(addition.getName()));
+      List<AdditionalCost> addedAdditions = flatDto.additionList().stream()
+          .filter(addition -> !savedNames.contains(addition.getName())).toList();
+      List<AdditionalCost> removedAdditions = flat.getAdditionList().stream()
+          .filter(addition -> !requestedNames.contains(addition.getName())).toList();
+      return new FlatChange(flat, flatDto, attributesChanged, addedAdditions, removedAdditions);
+    }
+
+    boolean isChange() {
+      return attributesChanged || !addedAdditions.isEmpty() || !removedAdditions.isEmpty();
+    }
+  }
+
+  /**
+   * Meter of the request to add to a saved flat
+   */
+  record NewMeter(Flat flat, MeterDto meterDto) {
+
+  }
+
+  /**
+   * Saved meter whose type or costs changed
+   */
+  record MeterChange(Meter meter, MeterDto meterDto) {
+
+  }
+
+  /**
+   * Reading of the request for a saved meter
+   */
+  record ReadingChange(Meter meter, int reading) {
+
+  }
+}
@@ -10,30 +10,38 @@ import de.vermity.model.dto.LandlordViewPersonDto;
 import de.vermity.model.dto.MeterDto;
 import de.vermity.model.dto.ModifyBuildingDto;
 import de.vermity.model.entity.AdditionalCost;
-import de.vermity.model.entity.Address;
 import de.vermity.model.entity.Building;
 import de.vermity.model.entity.Flat;
+import de.vermity.model.entity.Invoice;
 import de.vermity.model.entity.Meter;
 import de.vermity.model.entity.Person;
 import de.vermity.model.entity.Update;
 import de.vermity.persistence.AdditionalCostRepository;
-import de.vermity.persistence.AddressRepository;
 import de.vermity.persistence.BuildingRepository;
 import de.vermity.persistence.FlatRepository;
+import de.vermity.persistence.InvoiceRepository;
 import de.vermity.persistence.MeterRepository;
 import de.vermity.persistence.PersonRepository;
+import de.vermity.persistence.SecondLevelCache;
 import de.vermity.persistence.UpdateRepository;
 import de.vermity.security.JWTGenerator;
+import de.vermity.service.BuildingChangeSet.FlatChange;
 import de.vermity.util.UserUtil;
 import de.vermity.util.enums.Role;
 import io.jsonwebtoken.JwtException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -50,27 +58,33 @@ import org.springframework.transaction.annotation.Transactional;
 @Service
 @Slf4j
 @RequiredArgsConstructor
-@Transactional
+@Transactional(readOnly = true)
 public class BuildingService {
 
   private final BuildingRepository buildingRepository;
   private final JWTGenerator jwtGenerator;
   private final FlatRepository flatRepository;
   private final MeterRepository meterRepository;
-  private final AddressRepository addressRepository;
+  private final AddressResolver addressResolver;
   private final UserUtil userUtil;
   private final PersonRepository personRepository;
   private final AdditionalCostRepository additionalCostRepository;
   private final UpdateRepository updateRepository;
+  private final BuildingStructureCache buildingStructureCache;
+  private final SecondLevelCache secondLevelCache;
+  private final DeletionService deletionService;
+  private final InvoiceRepository invoiceRepository;
 
   /**
    * Get all buildings build into BuildingDto
    *
    * @param buildingList List of buildings
+   * @param invoicePdfs  PDFs of the invoices by id
    * @return List of BuildingDto
    * @author Cedric Stumpf
    */
-  private static List<BuildingDto> getBuildingDtoList(List<Building> buildingList) {
+  private static List<BuildingDto> getBuildingDtoList(List<Building> buildingList,
+      Map<Integer, String> invoicePdfs) {
     return buildingList.stream().map(building -> new BuildingDto(building.getId(),
         building.getFlatList().stream().map(flat -> new FlatDto(flat.getId(),
             flat.getMeterList().stream().map(
@@ -78,35 +92,39 @@ public class BuildingService {
                     meter.getType(), meter.getCostPerUnit(), meter.getBaseCost())).toList(),
             flat.getLocation(), flat.getRooms(), flat.getSquareMeter(), flat.getResidents(),
             flat.getAdditionList(), flat.getColdRent(), flat.getWarmRent(),
-            flat.getInvoiceList().stream()
-                .map(invoice -> new InvoiceDto(invoice.getId(), invoice.isPaid(), invoice.getPdf()))
-                .toList())).toList(), building.getOperatingCosts(),
+            flat.getInvoiceList().stream().map(invoice -> new InvoiceDto(invoice.getId(),
+                invoice.isPaid(), invoicePdfs.get(invoice.getId()))).toList(),
+            flat.getVersion())).toList(),
+        building.getOperatingCosts(),
         new AddressDto(building.getAddress().getStreet(), building.getAddress().getZip(),
             building.getAddress().getCity(), building.getAddress().getCountry(),
-            building.getAddress().getState()))).toList();
+            building.getAddress().getState()), building.getVersion())).toList();
   }
 
   /**
    * Build BuildingDto from Building
    *
    * @param savedBuilding Building to build
+   * @param invoicePdfs   PDFs of the invoices by id
    * @return BuildingDto from Building
    * @author Cedric Stumpf
    */
-  private static BuildingDto buildBuildingDto(Optional<Building> savedBuilding) {
+  private static BuildingDto buildBuildingDto(Optional<Building> savedBuilding,
+      Map<Integer, String> invoicePdfs) {
     return new BuildingDto(savedBuilding.get().getId(), savedBuilding.get().getFlatList().stream()
         .map(flat -> new FlatDto(flat.getId(), flat.getMeterList().stream().map(
             meter -> new MeterDto(meter.getId(), meter.getReading(), meter.getMeterNr(),
                 meter.getType(), meter.getCostPerUnit(), meter.getBaseCost())).toList(),
             flat.getLocation(), flat.getRooms(), flat.getSquareMeter(), flat.getResidents(),
             flat.getAdditionList(), flat.getColdRent(), flat.getWarmRent(),
-            flat.getInvoiceList().stream()
-                .map(invoice -> new InvoiceDto(invoice.getId(), invoice.isPaid(), invoice.getPdf()))
-                .toList())).toList(), savedBuilding.get().getOperatingCosts(),
+            flat.getInvoiceList().stream().map(invoice -> new InvoiceDto(invoice.getId(),
+                invoice.isPaid(), invoicePdfs.get(invoice.getId()))).toList(),
+            flat.getVersion())).toList(),
+        savedBuilding.get().getOperatingCosts(),
         new AddressDto(savedBuilding.get().getAddress().getStreet(),
             savedBuilding.get().getAddress().getZip(), savedBuilding.get().getAddress().getCity(),
             savedBuilding.get().getAddress().getCountry(),
-            savedBuilding.get().getAddress().getState()));
+            savedBuilding.get().getAddress().getState()), savedBuilding.get().getVersion());
   }
 
   /**
@@ -114,6 +132,7 @@ public class BuildingService {
    * @return Status code
    * @author Jan Tiedt, Cedric Stumpf
    */
+  @Transactional
   public ResponseEntity<String> createBuilding(BuildingDto buildingDto, String bearerToken) {
     Optional<Person> user;
     try {
@@ -182,27 +201,20 @@ public class BuildingService {
                     .frequency(operatingCost.getFrequency()).build()).toList()))
         .flatList(persistedFlats).build();
 
-    var address = addressRepository.findByStateAndCityAndStreetAndZipAndCountry(
-        buildingDto.address().state(), buildingDto.address().city(), buildingDto.address().street(),
-        buildingDto.address().zip(), buildingDto.address().country());
-
-    if (address.isPresent()) {
-      building.setAddress(address.get());
-    } else {
-      building.setAddress(addressRepository.saveAndFlush(
-          Address.builder().street(buildingDto.address().street()).zip(buildingDto.address().zip())
-              .city(buildingDto.address().city()).country(buildingDto.address().country())
-              .state(buildingDto.address().state()).build()));
-    }
+    building.setAddress(addressResolver.resolve(buildingDto.address()));
 
     log.info("Saving building");
     buildingRepository.saveAndFlush(building);
+    persistedFlats.forEach(flat -> flat.setBuilding(building));
+    flatRepository.saveAllAndFlush(persistedFlats);
+    buildingStructureCache.evictBuilding(building.getId());
 
     if (!user.get().getRoleList().contains(Role.LANDLORD)) {
       List<Role> mutableRoleList = new ArrayList<>(user.get().getRoleList());
       mutableRoleList.add(Role.LANDLORD);
       user.get().setRoleList(mutableRoleList);
       personRepository.saveAndFlush(user.get());
+      secondLevelCache.evict(Person.class, user.get().getId());
       return ResponseEntity.ok("Gebäude erstellt und dir die Rolle 'Vermieter zugewiesen.");
     }
     return ResponseEntity.ok("Gebäude erstellt.");
@@ -229,7 +241,7 @@ public class BuildingService {
     }
     List<Building> buildingList = buildingRepository.findAll();
 
-    var buildingDtoList = getBuildingDtoList(buildingList);
+    var buildingDtoList = getBuildingDtoList(buildingList, findInvoicePdfs(buildingList));
 
     return ResponseEntity.ok().body(buildingDtoList);
   }
@@ -239,6 +251,7 @@ public class BuildingService {
    * @return Status code
    * @author Jan Tiedt
    */
+  @Transactional
   public ResponseEntity<String> deleteBuilding(BuildingDto buildingDto, String bearerToken) {
     Optional<Person> user;
     try {
@@ -264,8 +277,7 @@ public class BuildingService {
       log.info("User '{}' is not the landlord of the building", user.get().getId());
       return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Dies ist nicht dein Gebäude!");
     }
-    deleteBuilding.ifPresent(building -> flatRepository.deleteAll(building.getFlatList()));
-    buildingRepository.delete(deleteBuilding.get());
+    deletionService.deleteBuilding(deleteBuilding.get().getId());
     log.info("Building deleted");
     return ResponseEntity.status(HttpStatus.OK).body("Gebäude gelöscht.");
   }
@@ -279,6 +291,7 @@ public class BuildingService {
    * @author Jan Tiedt
    */
 
+  @Transactional
   public ResponseEntity<?> modifyBuilding(ModifyBuildingDto modifyBuildingDto, String bearerToken) {
     Optional<Person> user;
     // verify Token
@@ -305,185 +318,151 @@ public class BuildingService {
       log.info("User '{}' is not the landlord of the building", user.get().getId());
       return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Dies ist nicht dein Gebäude!");
     }
+    // The request was built from an older state, it would overwrite the changes made since
+    if (modifyBuildingDto.version() != savedBuilding.get().getVersion()) {
+      throw new ObjectOptimisticLockingFailureException(Building.class,
+          savedBuilding.get().getId());
+    }
 
-    var address = addressRepository.findByStateAndCityAndStreetAndZipAndCountry(
-        modifyBuildingDto.address().state(), modifyBuildingDto.address().city(),
-        modifyBuildingDto.address().street(), modifyBuildingDto.address().zip(),
-        modifyBuildingDto.address().country());
+    var address = addressResolver.find(modifyBuildingDto.address());
 
     if (address.isPresent() && !address.get().equals(savedBuilding.get().getAddress())) {
       return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("An dieser Adresse existiert bereits ein Gebäude!");
     }
 
-    modifyFlats(modifyBuildingDto, savedBuilding);
-    savedBuilding = buildingRepository.findById(savedBuilding.get().getId());
-    savedBuilding = addNewFlatToBuilding(modifyBuildingDto, savedBuilding);
-    try {
-      savedBuilding = addNewMeterToFlat(modifyBuildingDto, savedBuilding);
-    } catch (RuntimeException e) {
+    BuildingChangeSet changes = BuildingChangeSet.of(savedBuilding.get(), modifyBuildingDto);
+    for (FlatChange flatChange : changes.changedFlats()) {
+      if (flatChange.flatDto().version() != flatChange.flat().getVersion()) {
+        throw new ObjectOptimisticLockingFailureException(Flat.class, flatChange.flat().getId());
+      }
+    }
+    log.info("Modifying building: {}", changes);
+    List<String> newMeterNumbers = changes.newMeterNumbers();
+    if (!newMeterNumbers.isEmpty()
+        && !meterRepository.findByMeterNrIn(newMeterNumbers).isEmpty()) {
+      log.warn("Meter number already exists!");
       return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Zählernummer existiert bereits!");
     }
+    // Costs removed from flats or the building, deleted below unless an invoice refers to them
+    List<Integer> detachedCostIds = new ArrayList<>();
+    changes.changedFlats().forEach(flatChange -> flatChange.removedAdditions()
+        .forEach(addition -> detachedCostIds.add(addition.getId())));
+    savedBuilding.get().getOperatingCosts().forEach(cost -> detachedCostIds.add(cost.getId()));
+    applyChanges(changes, savedBuilding.get());
 
     if (address.isEmpty()) {
-      savedBuilding.get().setAddress(addressRepository.saveAndFlush(
-          Address.builder().street(modifyBuildingDto.address().street())
-              .zip(modifyBuildingDto.address().zip()).city(modifyBuildingDto.address().city())
-              .country(modifyBuildingDto.address().country())
-              .state(modifyBuildingDto.address().state()).build()));
+      savedBuilding.get().setAddress(addressResolver.resolve(modifyBuildingDto.address()));
     }
 
+    // Flushes the changes of flats and meters at once
     var newOperationCosts = additionalCostRepository.saveAllAndFlush(
         modifyBuildingDto.operatingCosts());
     savedBuilding.get().setOperatingCosts(newOperationCosts);
+    additionalCostRepository.flush();
+    deletionService.deleteDetachedCosts(detachedCostIds);
+    buildingStructureCache.evictBuilding(savedBuilding.get().getId());
+    secondLevelCache.evict(Building.class, savedBuilding.get().getId());
+    // The costs of the request may overwrite any saved cost by id
+    secondLevelCache.evictAll(AdditionalCost.class);
 
-    BuildingDto modifiedBuilding = buildBuildingDto(savedBuilding);
+    BuildingDto modifiedBuilding = buildBuildingDto(savedBuilding,
+        findInvoicePdfs(List.of(savedBuilding.get())));
 
     return ResponseEntity.status(HttpStatus.OK).body(modifiedBuilding);
   }
 
   /**
-   * Add new meter to flat
+   * Apply the changes of a modification to the building. New rows are inserted per table, changed
+   * rows are only written on the next flush, in JDBC batches, and the readings are appended in one
+   * batch.
    *
-   * @param modifyBuildingDto ModifyBuildingDto
-   * @param savedBuilding     Building
-   * @return Optional of Building with new meter or savedBuilding if no new meter is added
+   * @param changes  Changes of the request
+   * @param building Saved building
    * @author Cedric Stumpf
    */
-  private Optional<Building> addNewMeterToFlat(ModifyBuildingDto modifyBuildingDto,
-      Optional<Building> savedBuilding) throws RuntimeException {
-
-    // Extract meter numbers from ModifyBuildingDto
-    List<String> newMeterNumbers = modifyBuildingDto.flatList().stream()
-        .flatMap(flat -> flat.meterList().stream())
-        .map(MeterDto::meterNr)
-        .filter(s -> savedBuilding.get().getFlatList().stream()
-            .flatMap(f -> f.getMeterList().stream())
-            .noneMatch(savedMeter -> s.equals(savedMeter.getMeterNr())))
-        .toList();
-
-    if (!meterRepository.findByMeterNrIn(newMeterNumbers).isEmpty()) {
-      log.warn("Meter number already exists!");
-      throw new RuntimeException("Meter number already exists!");
+  private void applyChanges(BuildingChangeSet changes, Building building) {
+    // Additions of changed and new flats
+    Map<FlatChange, List<AdditionalCost>> addedAdditions = new IdentityHashMap<>();
+    changes.changedFlats().forEach(flatChange -> addedAdditions.put(flatChange,
+        flatChange.addedAdditions().stream().map(BuildingService::copyAdditionalCost).toList()));
+    Map<FlatDto, List<AdditionalCost>> newFlatAdditions = new IdentityHashMap<>();
+    changes.newFlats().forEach(flatDto -> newFlatAdditions.put(flatDto,
+        flatDto.additionList().stream().map(BuildingService::copyAdditionalCost).toList()));
+    additionalCostRepository.saveAll(Stream.concat(addedAdditions.values().stream(),
+        newFlatAdditions.values().stream()).flatMap(List::stream).toList());
+
+    for (FlatChange flatChange : changes.changedFlats()) {
+      Flat flat = flatChange.flat();
+      if (flatChange.attributesChanged()) {
+        FlatDto flatDto = flatChange.flatDto();
+        flat.setSquareMeter(flatDto.squareMeter());
+        flat.setLocation(flatDto.location());
+        flat.setRooms(flatDto.rooms());
+        flat.setResidents(flatDto.residents());
+        flat.setColdRent(flatDto.coldRent());
+        flat.setWarmRent(flatDto.warmRent());
+      }
+      // Removed additions are detached here and deleted after the flush unless invoiced
+      if (!flatChange.removedAdditions().isEmpty()) {
+        flat.getAdditionList().removeAll(flatChange.removedAdditions());
+      }
+      if (!addedAdditions.get(flatChange).isEmpty()) {
+        flat.getAdditionList().addAll(addedAdditions.get(flatChange));
+      }
+      flat.setUpdatedAt();
     }
 
-    modifyBuildingDto.flatList().forEach(flat -> flat.meterList().stream().filter(
-            modifyMeter -> savedBuilding.get().getFlatList().stream()
-                .flatMap(f -> f.getMeterList().stream())
-                .noneMatch(savedMeter -> modifyMeter.meterNr().equals(savedMeter.getMeterNr())))
-        .forEach(modifyMeter -> {
-          Meter newMeter = Meter.builder().meterNr(modifyMeter.meterNr())
-              .reading(modifyMeter.reading()).type(modifyMeter.type())
-              .costPerUnit(modifyMeter.costPerUnit()).baseCost(modifyMeter.baseCost())
-              .costPerUnit(modifyMeter.costPerUnit()).build();
-          Meter meter = meterRepository.saveAndFlush(newMeter);
-          Update update = Update.builder().meter(meter).reading(meter.getReading()).build();
-          meter.getUpdateList().add(update);
-          updateRepository.saveAndFlush(update);
-          meter = meterRepository.saveAndFlush(meter);
-          savedBuilding.get().getFlatList().stream().filter(f -> f.getId().equals(flat.flatId()))
-              .findFirst().get().getMeterList().add(meter);
-        }));
-    return savedBuilding;
+    // Meters of saved and new flats
+    List<Update> readings = new ArrayList<>();
+    Map<Flat, List<Meter>> metersByFlat = new LinkedHashMap<>();
+    changes.newMeters().forEach(newMeter -> metersByFlat
+        .computeIfAbsent(newMeter.flat(), flat -> new ArrayList<>())
+        .add(buildMeter(newMeter.meterDto())));
+    Map<FlatDto, List<Meter>> newFlatMeters = new IdentityHashMap<>();
+    changes.newFlats().forEach(flatDto -> newFlatMeters.put(flatDto,
+        flatDto.meterList().stream().map(BuildingService::buildMeter).toList()));
+    List<Meter> newMeters = Stream.concat(metersByFlat.values().stream(),
+        newFlatMeters.values().stream()).flatMap(List::stream).toList();
+    meterRepository.saveAll(newMeters);
+    metersByFlat.forEach((flat, meters) -> flat.getMeterList().addAll(meters));
+    newMeters.forEach(meter -> readings.add(
+        Update.builder().meter(meter).reading(meter.getReading()).build()));
+
+    if (!changes.newFlats().isEmpty()) {
+      log.info("Adding {} new flats", changes.newFlats().size());
+      List<Flat> newFlats = changes.newFlats().stream().map(flatDto -> Flat.builder()
+          .rooms(flatDto.rooms()).squareMeter(flatDto.squareMeter())
+          .location(flatDto.location()).residents(flatDto.residents())
+          .warmRent(flatDto.warmRent()).coldRent(flatDto.coldRent()).building(building)
+          .additionList(new ArrayList<>(newFlatAdditions.get(flatDto)))
+          .meterList(new ArrayList<>(newFlatMeters.get(flatDto))).build()).toList();
+      flatRepository.saveAll(newFlats);
+      var mutableFlatList = new ArrayList<>(building.getFlatList());
+      mutableFlatList.addAll(newFlats);
+      building.setFlatList(mutableFlatList);
+    }
+
+    changes.changedMeters().forEach(meterChange -> {
+      meterChange.meter().setType(meterChange.meterDto().type());
+      meterChange.meter().setCostPerUnit(meterChange.meterDto().costPerUnit());
+      meterChange.meter().setBaseCost(meterChange.meterDto().baseCost());
+    });
+    // Readings entered by the landlord are logged unchecked, a lower one corrects the meter
+    changes.readings().forEach(reading -> readings.add(Update.builder().meter(reading.meter())
+        .reading(reading.reading()).person(building.getLandlord()).build()));
+    updateRepository.insertAll(readings);
   }
 
-  /**
-   * Add new flat to building
-   *
-   * @param modifyBuildingDto ModifyBuildingDto
-   * @param savedBuilding     Building
-   * @return Optional of Building with new flat or savedBuilding if no new flat is added
-   * @author Cedric Stumpf
-   */
-  private Optional<Building> addNewFlatToBuilding(ModifyBuildingDto modifyBuildingDto,
-      Optional<Building> savedBuilding) {
-    if (modifyBuildingDto.flatList().size() == savedBuilding.get().getFlatList().size()) {
-      log.info("No new flats to add");
-      return savedBuilding;
-    }
-    log.info("Add of a new flat is requested");
-
-    // Identify new flats
-    Building finalSavedBuilding = savedBuilding.get();
-    var mutableFlatList = new ArrayList<>(finalSavedBuilding.getFlatList());
-    List<FlatDto> newFlats = modifyBuildingDto.flatList().stream().filter(
-        modifyFlat -> mutableFlatList.stream()
-            .noneMatch(savedFlat -> savedFlat.getId().equals(modifyFlat.flatId()))).toList();
-
-    // Add new flats to savedBuilding
-    for (FlatDto newFlatDto : newFlats) {
-      Flat newFlat = Flat.builder().rooms(newFlatDto.rooms()).squareMeter(newFlatDto.squareMeter())
-          .location(newFlatDto.location()).warmRent(newFlatDto.warmRent())
-          .coldRent(newFlatDto.coldRent())
-          .additionList(newFlatDto.additionList().stream().map(addition -> {
-            var addCost = AdditionalCost.builder().name(addition.getName())
-                .description(addition.getDescription()).amount(addition.getAmount())
-                .distribution(addition.getDistribution()).frequency(addition.getFrequency())
-                .build();
-            return additionalCostRepository.saveAndFlush(addCost);
-          }).toList()).meterList(newFlatDto.meterList().stream().map(meter -> {
-            var newMeter = Meter.builder().meterNr(meter.meterNr()).reading(meter.reading())
-                .type(meter.type()).costPerUnit(meter.costPerUnit()).baseCost(meter.baseCost())
-                .build();
-            return meterRepository.saveAndFlush(newMeter);
-          }).toList()).build();
-      Flat flat = flatRepository.saveAndFlush(newFlat);
-      mutableFlatList.add(flat);
-    }
-    finalSavedBuilding.setFlatList(mutableFlatList);
-    // Save the updated building
-    return Optional.of(finalSavedBuilding);
+  private static AdditionalCost copyAdditionalCost(AdditionalCost addition) {
+    return AdditionalCost.builder().name(addition.getName())
+        .description(addition.getDescription()).amount(addition.getAmount())
+        .distribution(addition.getDistribution()).frequency(addition.getFrequency()).build();
   }
 
-  /**
-   * Modify flats
-   *
-   * @param modifyBuildingDto ModifyBuildingDto
-   * @param savedBuilding     Building
-   * @author Cedric Stumpf
-   */
-  private void modifyFlats(ModifyBuildingDto modifyBuildingDto, Optional<Building> savedBuilding) {
-    savedBuilding.get().getFlatList()
-        .forEach(flat -> modifyBuildingDto.flatList().forEach(modifyFlat -> {
-          // Check if any meter matches
-          boolean meterMatch = modifyFlat.meterList().stream().anyMatch(
-              modifyMeter -> flat.getMeterList().stream()
-                  .anyMatch(meter -> modifyMeter.meterNr().equals(meter.getMeterNr())));
-
-          // find all new additions in modifyFlat for the flat
-          List<AdditionalCost> newAdditions = modifyFlat.additionList().stream().filter(
-                  addition -> flat.getAdditionList().stream()
-                      .noneMatch(additionalCost -> additionalCost.getName().equals(addition.getName())))
-              .map(addition -> AdditionalCost.builder().name(addition.getName())
-                  .description(addition.getDescription()).amount(addition.getAmount())
-                  .distribution(addition.getDistribution()).frequency(addition.getFrequency())
-                  .build()).toList();
-
-          var mutableAdditionList = new ArrayList<>(flat.getAdditionList());
-          mutableAdditionList.addAll(newAdditions);
-
-          // If a match is found, update the flat properties
-          if (meterMatch) {
-            modifyFlat.meterList().forEach(modifyMeter -> flat.getMeterList().forEach(meter -> {
-              if (modifyMeter.meterNr().equals(meter.getMeterNr())) {
-                Update update = Update.builder().meter(meter).reading(modifyMeter.reading())
-                    .person(savedBuilding.get().getLandlord()).build();
-                meter.getUpdateList().add(updateRepository.saveAndFlush(update));
-                meter.setReading(modifyMeter.reading());
-                meterRepository.saveAndFlush(meter);
-              }
-            }));
-
-            flat.setSquareMeter(modifyFlat.squareMeter());
-            flat.setLocation(modifyFlat.location());
-            flat.setRooms(modifyFlat.rooms());
-            flat.setResidents(modifyFlat.residents());
-            flat.setColdRent(modifyFlat.coldRent());
-            flat.setWarmRent(modifyFlat.warmRent());
-            flat.setAdditionList(mutableAdditionList);
-            flat.setUpdatedAt();
-            flatRepository.saveAndFlush(flat);
-          }
-        }));
+  private static Meter buildMeter(MeterDto meterDto) {
+    return Meter.builder().meterNr(meterDto.meterNr()).reading(meterDto.reading())
+        .type(meterDto.type()).costPerUnit(meterDto.costPerUnit()).baseCost(meterDto.baseCost())
+        .build();
   }
 
   /**
@@ -510,6 +489,7 @@ public class BuildingService {
     }
 
     List<Building> buildingList = buildingRepository.findByLandlord(user.get());
+    Map<Integer, String> invoicePdfs = findInvoicePdfs(buildingList);
 
     var buildingDtoList = buildingList.stream().map(
         building -> new LandlordViewDto(building.getId(),
@@ -532,12 +512,24 @@ public class BuildingService {
                   flat.getAdditionList(), flat.getColdRent(), flat.getWarmRent(),
                   flat.getInvoiceList().stream().map(
                       invoice -> new InvoiceDto(invoice.getId(), invoice.isPaid(),
-                          invoice.getPdf())).toList());
+                          invoicePdfs.get(invoice.getId()))).toList(), flat.getVersion());
             }).toList(), building.getOperatingCosts(),
             new AddressDto(building.getAddress().getStreet(), building.getAddress().getZip(),
                 building.getAddress().getCity(), building.getAddress().getCountry(),
-                building.getAddress().getState()))).toList();
+                building.getAddress().getState()), building.getVersion())).toList();
 
     return ResponseEntity.ok().body(buildingDtoList);
   }
+
+  /**
+   * PDFs of the invoices of all flats of the buildings in one query
+   *
+   * @param buildings Buildings with their flats
+   * @return PDF by invoice id
+   */
+  private Map<Integer, String> findInvoicePdfs(Collection<Building> buildings) {
+    return invoiceRepository.findPdfsByIds(buildings.stream()
+        .flatMap(building -> building.getFlatList().stream())
+        .flatMap(flat -> flat.getInvoiceList().stream()).map(Invoice::getId).toList());
+  }
 }
@@ -0,0 +1,197 @@
+package de.vermity.service;
+
+import de.vermity.model.entity.Building;
+import de.vermity.model.entity.Flat;
+import de.vermity.persistence.BuildingRepository;
+import de.vermity.persistence.SecondLevelCache;
+import de.vermity.util.CacheInvalidationBus;
+import de.vermity.util.CacheInvalidationEvent;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Read-through cache of the building structure. Keeps the flat to building and building to
+ * landlord ids in memory, a cached id is returned without querying the database. Filled on demand
+ * or on startup ({@code vermity.cache.building-structure.warm-up}) and evicted by the building
+ * service whenever a building is created, modified or deleted. Evictions are broadcast to the
+ * other instances through the {@link CacheInvalidationBus}.
+ *
+ * @author Cedric Stumpf
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BuildingStructureCache {
+
+  static final String CACHE_NAME = "building-structure";
+
+  private final BuildingRepository buildingRepository;
+  private final CacheInvalidationBus invalidationBus;
+  private final SecondLevelCache secondLevelCache;
+  private final Map<Integer, Integer> buildingIdByFlatId = new ConcurrentHashMap<>();
+  private final Map<Integer, Integer> landlordIdByBuildingId = new ConcurrentHashMap<>();
+
+  @Value("${vermity.cache.building-structure.warm-up:false}")
+  private boolean warmUp;
+
+  /**
+   * Index all buildings on startup, when enabled
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  @Transactional(readOnly = true)
+  public void warmUp() {
+    if (!warmUp) {
+      return;
+    }
+    buildingRepository.findAll().forEach(this::index);
+    log.info("Building structure cache filled with {} buildings and {} flats",
+        landlordIdByBuildingId.size(), buildingIdByFlatId.size());
+  }
+
+  /**
+   * Find the id of the building of a flat
+   *
+   * @param flatId Id of the flat
+   * @return Optional of the id of the building, empty if the flat does not exist or has no building
+   * @author Cedric Stumpf
+   */
+  @Transactional(readOnly = true)
+  public Optional<Integer> findBuildingIdByFlatId(int flatId) {
+    Integer buildingId = buildingIdByFlatId.get(flatId);
+    if (buildingId != null) {
+      return Optional.of(buildingId);
+    }
+    log.debug("Building of flat {} not cached", flatId);
+    var building = buildingRepository.findByFlatId(flatId);
+    building.ifPresent(this::index);
+    return building.map(Building::getId);
+  }
+
+  /**
+   * Find the building of a flat. On a hit the building is loaded by its id, which the second-level
+   * cache usually answers.
+   *
+   * @param flat Flat to find the building for
+   * @return Optional of the building of the flat
+   * @author Cedric Stumpf
+   */
+  @Transactional(readOnly = true)
+  public Optional<Building> findBuildingByFlat(Flat flat) {
+    Integer buildingId = buildingIdByFlatId.get(flat.getId());
+    if (buildingId != null) {
+      var building = buildingRepository.findById(buildingId);
+      if (building.isPresent()) {
+        return building;
+      }
+      evictLocally(buildingId);
+    }
+    log.debug("Building of flat {} not cached", flat.getId());
+    var building = buildingRepository.findByFlatId(flat.getId());
+    building.ifPresent(this::index);
+    return building;
+  }
+
+  /**
+   * Find the id of the landlord of a building
+   *
+   * @param buildingId Id of the building
+   * @return Optional of the id of the landlord, empty if the building does not exist
+   * @author Cedric Stumpf
+   */
+  @Transactional(readOnly = true)
+  public Optional<Integer> findLandlordIdByBuildingId(int buildingId) {
+    Integer landlordId = landlordIdByBuildingId.get(buildingId);
+    if (landlordId != null) {
+      return Optional.of(landlordId);
+    }
+    log.debug("Landlord of building {} not cached", buildingId);
+    var building = buildingRepository.findById(buildingId);
+    building.ifPresent(this::index);
+    return Optional.ofNullable(landlordIdByBuildingId.get(buildingId));
+  }
+
+  /**
+   * Remove a building and its flats from the cache of every instance. Inside a transaction the
+   * eviction is published with it and applied locally after the commit, a lookup in between
+   * cannot index the building as it was before the change.
+   *
+   * @param buildingId Id of the building, nothing is removed for unsaved buildings
+   * @author Cedric Stumpf
+   */
+  public void evictBuilding(Integer buildingId) {
+    if (buildingId == null) {
+      return;
+    }
+    invalidationBus.publish(CACHE_NAME, buildingId);
+    afterCommit(() -> evictLocally(buildingId));
+  }
+
+  /**
+   * Remove everything from the cache of every instance, locally after the commit of the current
+   * transaction
+   *
+   * @author Cedric Stumpf
+   */
+  public void evictAll() {
+    invalidationBus.publish(CACHE_NAME, null);
+    afterCommit(this::evictAllLocally);
+  }
+
+  /**
+   * Apply an eviction of another instance
+   */
+  @EventListener
+  public void onInvalidation(CacheInvalidationEvent event) {
+    if (!CACHE_NAME.equals(event.cache())) {
+      return;
+    }
+    if (event.key() == null) {
+      evictAllLocally();
+    } else {
+      evictLocally(Integer.valueOf(event.key()));
+    }
+  }
+
+  private static void afterCommit(Runnable eviction) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      eviction.run();
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        eviction.run();
+      }
+    });
+  }
+
+  private void evictLocally(Integer buildingId) {
+    landlordIdByBuildingId.remove(buildingId);
+    buildingIdByFlatId.values().removeIf(buildingId::equals);
+    // The index is read from the building, which may be held by the second-level cache
+    secondLevelCache.evictLocally(Building.class, buildingId);
+  }
+
+  private void evictAllLocally() {
+    landlordIdByBuildingId.clear();
+    buildingIdByFlatId.clear();
+    secondLevelCache.evictAllLocally(Building.class);
+  }
+
+  private void index(Building building) {
+    if (building.getLandlord() != null) {
+      landlordIdByBuildingId.put(building.getId(), building.getLandlord().getId());
+    }
+    building.getFlatList().forEach(flat -> buildingIdByFlatId.put(flat.getId(), building.getId()));
+  }
+}
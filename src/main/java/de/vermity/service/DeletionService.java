@@ -0,0 +1,142 @@
+package de.vermity.service;
+
+import de.vermity.model.entity.Building;
+import de.vermity.model.entity.Person;
+import de.vermity.persistence.BulkDeletion;
+import de.vermity.persistence.SecondLevelCache;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Deletes buildings and persons through {@link BulkDeletion}. With
+ * {@code vermity.deletion.soft=true} a deletion only marks the rows, the request does not wait for
+ * the readings and invoices to be deleted. Marked buildings and persons are purged every
+ * {@code vermity.deletion.purge-interval} milliseconds, each in its own transaction, a failed purge
+ * is repeated on the next run. Every instance purges, a building or person is locked first and
+ * skipped when another instance holds the lock.
+ *
+ * @author Cedric Stumpf
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DeletionService {
+
+  private final BulkDeletion bulkDeletion;
+  private final TransactionTemplate transactionTemplate;
+  private final BuildingStructureCache buildingStructureCache;
+  private final SecondLevelCache secondLevelCache;
+
+  @Value("${vermity.deletion.soft:true}")
+  private boolean soft;
+  @Value("${vermity.deletion.purge-batch-size:20}")
+  private int purgeBatchSize;
+
+  /**
+   * Delete a building with its flats, meters, readings, costs and invoices
+   *
+   * @param buildingId Id of the building
+   * @author Cedric Stumpf
+   */
+  @Transactional
+  public void deleteBuilding(Integer buildingId) {
+    if (soft) {
+      bulkDeletion.softDeleteBuildings(List.of(buildingId), LocalDateTime.now());
+    } else {
+      bulkDeletion.deleteBuildings(List.of(buildingId));
+    }
+    evictBuildings(List.of(buildingId));
+  }
+
+  /**
+   * Delete a person and the buildings of the person
+   *
+   * @param personId Id of the person
+   * @author Cedric Stumpf
+   */
+  @Transactional
+  public void deletePerson(Integer personId) {
+    if (personId == null) {
+      return;
+    }
+    List<Integer> buildingIds = soft
+        ? bulkDeletion.softDeletePerson(personId, LocalDateTime.now())
+        : bulkDeletion.deletePerson(personId);
+    evictBuildings(buildingIds);
+    secondLevelCache.evictLocally(Person.class, personId);
+    secondLevelCache.evict(Person.class, personId);
+  }
+
+  /**
+   * Delete additional costs removed from flats or buildings, costs that an invoice refers to are
+   * kept until the invoice is deleted
+   *
+   * @param costIds Ids of the removed costs
+   * @author Cedric Stumpf
+   */
+  @Transactional
+  public void deleteDetachedCosts(Collection<Integer> costIds) {
+    // Nothing cached refers to the deleted costs anymore, their own entries are never read again
+    int deleted = bulkDeletion.deleteUnreferencedCosts(costIds);
+    log.debug("Deleted {} of {} detached costs", deleted, costIds.size());
+  }
+
+  /**
+   * Delete the rows of soft deleted buildings and persons
+   *
+   * @author Cedric Stumpf
+   */
+  @Scheduled(fixedDelayString = "${vermity.deletion.purge-interval:60000}",
+      initialDelayString = "${vermity.deletion.purge-interval:60000}")
+  public void purge() {
+    List<Integer> buildingIds = transactionTemplate.execute(status ->
+        bulkDeletion.findDeletedBuildingIds(purgeBatchSize));
+    for (Integer buildingId : buildingIds) {
+      purge("building", buildingId, () -> bulkDeletion.claimDeletedBuilding(buildingId),
+          () -> bulkDeletion.deleteBuildings(List.of(buildingId)));
+    }
+    // Buildings of soft deleted persons are already marked themselves
+    List<Integer> personIds = transactionTemplate.execute(status ->
+        bulkDeletion.findDeletedPersonIds(purgeBatchSize));
+    for (Integer personId : personIds) {
+      purge("person", personId, () -> bulkDeletion.claimDeletedPerson(personId),
+          () -> bulkDeletion.deletePerson(personId));
+    }
+  }
+
+  /**
+   * Purge a row if it can be claimed, the claim and the deletion share one transaction
+   */
+  private void purge(String type, Integer id, BooleanSupplier claim, Runnable deletion) {
+    try {
+      transactionTemplate.executeWithoutResult(status -> {
+        if (!claim.getAsBoolean()) {
+          log.debug("Skipping {} {}, purged by another instance", type, id);
+          return;
+        }
+        deletion.run();
+        log.debug("Purged {} {}", type, id);
+      });
+    } catch (DataAccessException e) {
+      log.warn("Purging {} {} failed, retrying on the next run", type, id, e);
+    }
+  }
+
+  private void evictBuildings(Collection<Integer> buildingIds) {
+    for (Integer buildingId : buildingIds) {
+      buildingStructureCache.evictBuilding(buildingId);
+      secondLevelCache.evictLocally(Building.class, buildingId);
+      secondLevelCache.evict(Building.class, buildingId);
+    }
+  }
+}
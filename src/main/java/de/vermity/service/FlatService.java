@@ -7,22 +7,27 @@ import de.vermity.model.dto.LandlordViewPersonDto;
 import de.vermity.model.dto.MeterDto;
 import de.vermity.model.dto.ModifyFlatDto;
 import de.vermity.model.dto.UpdateMeterReadingDto;
+import de.vermity.model.entity.Flat;
+import de.vermity.model.entity.Invoice;
 import de.vermity.model.entity.Person;
-import de.vermity.model.entity.Update;
 import de.vermity.persistence.BuildingRepository;
 import de.vermity.persistence.FlatRepository;
+import de.vermity.persistence.InvoiceRepository;
 import de.vermity.persistence.MeterRepository;
 import de.vermity.persistence.PersonRepository;
 import de.vermity.persistence.UpdateRepository;
 import de.vermity.security.JWTGenerator;
 import de.vermity.util.UserUtil;
 import io.jsonwebtoken.JwtException;
+import java.util.Map;
 import java.util.Optional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 /**
  * Service handles:
@@ -44,6 +49,9 @@ public class FlatService {
   private final FlatRepository flatRepository;
   private final MeterRepository meterRepository;
   private final UserUtil userUtil;
+  private final BuildingStructureCache buildingStructureCache;
+  private final AuthorizationService authorizationService;
+  private final InvoiceRepository invoiceRepository;
 
   /**
    * Landlord can update the tenant of a flat.
@@ -53,6 +61,7 @@ public class FlatService {
    * @return ResponseEntity with message if successful or not
    * @author Cedric Stumpf
    */
+  @Transactional
   public ResponseEntity<String> updateTenant(ModifyFlatDto modifyFlatDto, String bearerToken) {
     // Get user from token
     Optional<Person> user;
@@ -104,17 +113,21 @@ public class FlatService {
       return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Keinen neuen Mieter angegeben");
     }
 
-    // Get flatList from modifyFlatDto
-    var flatList = building.get().getFlatList().stream()
-        .filter(f -> f.getId().equals(modifyFlatDto.flatId())).toList();
-    if (flatList.isEmpty()) {
+    // Get flat of the building from modifyFlatDto
+    var flat = flatRepository.findByIdAndBuilding_Id(modifyFlatDto.flatId(),
+        modifyFlatDto.buildingId());
+    if (flat.isEmpty()) {
       log.warn("Flat with id '{}' not found", modifyFlatDto.flatId());
       return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Wohnung nicht gefunden");
     }
+    // The tenant was changed since the landlord read the flat, a new tenant is rolled back
+    if (modifyFlatDto.version() != flat.get().getVersion()) {
+      throw new ObjectOptimisticLockingFailureException(Flat.class, flat.get().getId());
+    }
     // Set new tenant and save to repository
-    flatList.getFirst().setTenant(newTenant.get());
-    flatList.getFirst().setResidents(modifyFlatDto.residents());
-    flatRepository.saveAndFlush(flatList.getFirst());
+    flat.get().setTenant(newTenant.get());
+    flat.get().setResidents(modifyFlatDto.residents());
+    flatRepository.saveAndFlush(flat.get());
     log.info("Tenant of flat with id '{}' updated", modifyFlatDto.flatId());
     return ResponseEntity.ok("Mieter aktualisiert");
   }
@@ -126,6 +139,7 @@ public class FlatService {
    * @return ResponseEntity with flatDto if successful or message if not
    * @author Cedric Stumpf
    */
+  @Transactional(readOnly = true)
   public ResponseEntity<?> getFlat(String bearerToken) {
     // Get user from token
     Optional<Person> user;
@@ -146,6 +160,9 @@ public class FlatService {
       log.warn("Flat with tenant '{}' not found", user.get().getEmail());
       return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Wohnung nicht gefunden");
     }
+    // Invoice.pdf is lazy, the PDFs of all invoices are selected at once
+    Map<Integer, String> invoicePdfs = invoiceRepository.findPdfsByIds(flat.stream()
+        .flatMap(f -> f.getInvoiceList().stream()).map(Invoice::getId).toList());
     return ResponseEntity.ok(flat.stream().map(f -> new FlatDto(f.getId(), f.getMeterList().stream().map(
         meter -> new MeterDto(meter.getId(), meter.getReading(), meter.getMeterNr(),
             meter.getType(), meter.getCostPerUnit(), meter.getBaseCost())).toList(),
@@ -153,8 +170,10 @@ public class FlatService {
         f.getRooms(), f.getSquareMeter(), f.getResidents(),
         f.getAdditionList(), f.getColdRent(), f.getWarmRent(),
         f.getInvoiceList().stream()
-            .map(invoice -> new InvoiceDto(invoice.getId(), invoice.isPaid(), invoice.getPdf()))
-            .toList())).toList());
+            .map(invoice -> new InvoiceDto(invoice.getId(), invoice.isPaid(),
+                invoicePdfs.get(invoice.getId())))
+            .toList(),
+        f.getVersion())).toList());
   }
 
   /**
@@ -163,6 +182,7 @@ public class FlatService {
    * @return ResponseEntity with message if successful or not
    * @author Cedric Stumpf
    */
+  @Transactional
   public ResponseEntity<?> updateMeterReading(UpdateMeterReadingDto updateMeterReadingDto,
       String bearerToken) {
     // Get user from token
@@ -179,13 +199,12 @@ public class FlatService {
       return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
           .body("Bitte melde dich zuerst an!");
     }
-    var flat = flatRepository.findById(updateMeterReadingDto.flatId());
-    if (flat.isEmpty()) {
+    if (!flatRepository.existsById(updateMeterReadingDto.flatId())) {
       log.warn("Flat with id '{}' not found", updateMeterReadingDto.flatId());
       return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Wohnung nicht gefunden");
     }
 
-    if (!flat.get().getTenant().getId().equals(user.get().getId())) {
+    if (!authorizationService.isTenantOfFlat(user.get().getId(), updateMeterReadingDto.flatId())) {
       log.warn("User '{}' is not the tenant of flat with id '{}'", user.get().getEmail(),
           updateMeterReadingDto.flatId());
       return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
@@ -197,23 +216,21 @@ public class FlatService {
       log.warn("Meter with id '{}' not found", updateMeterReadingDto.meterId());
       return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Zähler nicht gefunden");
     }
-    if (!flat.get().getMeterList().contains(meter.get())) {
+    if (!authorizationService.isMeterOfFlat(updateMeterReadingDto.meterId(),
+        updateMeterReadingDto.flatId())) {
       log.warn("Meter with id '{}' not found in flat with id '{}'",
           updateMeterReadingDto.meterId(), updateMeterReadingDto.flatId());
       return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Zähler nicht in Wohnung gefunden");
     }
-    if (meter.get().getReading() > updateMeterReadingDto.newReading()) {
-      log.warn("New reading '{}' is lower than current reading '{}'",
-          updateMeterReadingDto.newReading(), meter.get().getReading());
+    // Checked while the meter is locked, the loaded reading may already be overtaken
+    if (updateRepository.appendReading(meter.get().getId(), user.get().getId(),
+        updateMeterReadingDto.newReading()) == 0) {
+      log.warn("New reading '{}' is lower than current reading of meter '{}'",
+          updateMeterReadingDto.newReading(), updateMeterReadingDto.meterId());
       return ResponseEntity.status(HttpStatus.BAD_REQUEST)
           .body("Neuer Zählerstand ist niedriger als der aktuelle Zählerstand");
     }
 
-    Update update = Update.builder().meter(meter.get()).reading(updateMeterReadingDto.newReading())
-        .person(user.get()).build();
-    meter.get().getUpdateList().add(updateRepository.saveAndFlush(update));
-    meter.get().setReading(updateMeterReadingDto.newReading());
-    meterRepository.saveAndFlush(meter.get());
     log.info("Meter reading of meter with id '{}' updated", updateMeterReadingDto.meterId());
     return ResponseEntity.ok("Zählerstand aktualisiert");
   }
@@ -226,6 +243,7 @@ public class FlatService {
    * @return ResponseEntity with landlordDto if successful or message if not
    * @author Cedric Stumpf
    */
+  @Transactional(readOnly = true)
   public ResponseEntity<?> getLandlordByFlat(int flatId, String bearerToken) {
     // Get user from token
     Optional<Person> user;
@@ -254,25 +272,28 @@ public class FlatService {
           .body("Du bist nicht der Mieter dieser Wohnung");
     }
 
-    var building = buildingRepository.findByFlatListContaining(flat.get());
-    if (building.isEmpty()) {
+    // Both ids come from the cache, the landlord from the second-level cache
+    var landlord = buildingStructureCache.findBuildingIdByFlatId(flatId)
+        .flatMap(buildingStructureCache::findLandlordIdByBuildingId)
+        .flatMap(personRepository::findById);
+    if (landlord.isEmpty()) {
       log.warn("Building with flat {} not found", flatId);
       return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Gebäude nicht gefunden");
     }
 
     return ResponseEntity.status(HttpStatus.OK).body(
         new LandlordViewPersonDto(
-            building.get().getLandlord().getFirstName(),
-            building.get().getLandlord().getLastName(),
-            building.get().getLandlord().getGender(),
-            building.get().getLandlord().getPhoneNumber(),
-            building.get().getLandlord().getEmail(),
+            landlord.get().getFirstName(),
+            landlord.get().getLastName(),
+            landlord.get().getGender(),
+            landlord.get().getPhoneNumber(),
+            landlord.get().getEmail(),
             new AddressDto(
-                building.get().getLandlord().getAddress().getStreet(),
-                building.get().getLandlord().getAddress().getZip(),
-                building.get().getLandlord().getAddress().getCity(),
-                building.get().getLandlord().getAddress().getCountry(),
-                building.get().getLandlord().getAddress().getState())
+                landlord.get().getAddress().getStreet(),
+                landlord.get().getAddress().getZip(),
+                landlord.get().getAddress().getCity(),
+                landlord.get().getAddress().getCountry(),
+                landlord.get().getAddress().getState())
         ));
   }
 
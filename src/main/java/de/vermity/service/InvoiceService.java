@@ -1,41 +1,50 @@
 package de.vermity.service;
 
 import de.vermity.model.dto.GetInvoiceDto;
+import de.vermity.model.dto.MeterReadingRangeDto;
 import de.vermity.model.entity.AdditionalCost;
-import de.vermity.model.entity.BaseEntity;
 import de.vermity.model.entity.Building;
 import de.vermity.model.entity.Flat;
 import de.vermity.model.entity.Invoice;
 import de.vermity.model.entity.Meter;
 import de.vermity.model.entity.Person;
-import de.vermity.model.entity.Update;
 import de.vermity.persistence.BuildingRepository;
 import de.vermity.persistence.FlatRepository;
 import de.vermity.persistence.InvoiceRepository;
 import de.vermity.security.JWTGenerator;
+import de.vermity.util.InvoiceRenderer;
 import de.vermity.util.UserUtil;
 import de.vermity.util.enums.MeterType;
 import io.jsonwebtoken.JwtException;
-import java.io.ByteArrayOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Base64;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.thymeleaf.context.Context;
-import org.thymeleaf.spring6.SpringTemplateEngine;
-import org.xhtmlrenderer.pdf.ITextRenderer;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /**
  * Util class for creating invoices
@@ -53,7 +62,11 @@ public class InvoiceService {
   private final JWTGenerator jwtGenerator;
   private final InvoiceRepository invoiceRepository;
   private final FlatRepository flatRepository;
-  private final SpringTemplateEngine templateEngine;
+  // Created on first use, the PDF renderer is rarely needed
+  private final ObjectProvider<InvoiceRenderer> invoiceRenderer;
+  private final BuildingStructureCache buildingStructureCache;
+  private final ArchiveService archiveService;
+  private final AuthorizationService authorizationService;
 
 
   /**
@@ -119,20 +132,21 @@ public class InvoiceService {
    * @return Map with the meter and the difference
    * @author Cedric Stumpf
    */
-  private static Map<Meter, Integer> calculateMeterDifference(List<Meter> meterList) {
+  private Map<Meter, Integer> calculateMeterDifference(List<Meter> meterList) {
     Map<Meter, Integer> meterDifferenceMap = new HashMap<>();
+    if (meterList.isEmpty()) {
+      return meterDifferenceMap;
+    }
     LocalDateTime startDate = LocalDateTime.now().minusMonths(12);
     LocalDateTime endDate = LocalDateTime.now();
 
+    // Aggregated by the database, the readings themselves are not loaded
+    Map<Integer, Integer> differenceByMeterId = archiveService.findReadingRanges(
+            meterList.stream().map(Meter::getId).toList(), startDate, endDate).stream()
+        .collect(Collectors.toMap(MeterReadingRangeDto::meterId, MeterReadingRangeDto::difference));
     for (Meter meter : meterList) {
-      List<Update> updatesInRange = meter.getUpdateList().stream().filter(
-          update -> !update.getCreatedAt().isBefore(startDate) && !update.getCreatedAt()
-              .isAfter(endDate)).sorted(Comparator.comparing(BaseEntity::getCreatedAt)).toList();
-
-      if (!updatesInRange.isEmpty()) {
-        int startReading = updatesInRange.getFirst().getReading();
-        int endReading = updatesInRange.getLast().getReading();
-        int difference = endReading - startReading;
+      Integer difference = differenceByMeterId.get(meter.getId());
+      if (difference != null) {
         meterDifferenceMap.put(meter, difference);
       }
     }
@@ -141,16 +155,18 @@ public class InvoiceService {
   }
 
   /**
-   * Get a list of GetInvoiceDto from a list of invoices
+   * Get a list of GetInvoiceDto from a list of invoices, the lazy PDFs are selected in one query
    *
    * @param invoiceList List of invoices
    * @return List of GetInvoiceDto from the invoices list
    * @author Cedric Stumpf
    */
-  private static ArrayList<GetInvoiceDto> getGetInvoiceDtos(List<Invoice> invoiceList) {
+  private ArrayList<GetInvoiceDto> getGetInvoiceDtos(List<Invoice> invoiceList) {
+    Map<Integer, String> pdfs = invoiceRepository.findPdfsByIds(
+        invoiceList.stream().map(Invoice::getId).toList());
     var invoiceListDto = new ArrayList<GetInvoiceDto>();
     for (Invoice invoice : invoiceList) {
-      invoiceListDto.add(new GetInvoiceDto(invoice.getId(), invoice.getPdf(),
+      invoiceListDto.add(new GetInvoiceDto(invoice.getId(), pdfs.get(invoice.getId()),
           invoice.getBuilding().getId(), invoice.getFlat().getId(), invoice.isPaid()));
     }
     return invoiceListDto;
@@ -191,34 +207,11 @@ public class InvoiceService {
     flatRepository.saveAndFlush(flat);
     log.info("Invoice {} created", savedInvoice.getId());
 
-    savedInvoice.setPdf(
-        Base64.getEncoder().encodeToString(renderInvoiceToHtmlToPDF(savedInvoice).toByteArray()));
+    savedInvoice.setPdf(invoiceRenderer.getObject().renderToBase64Pdf(savedInvoice));
     invoiceRepository.saveAndFlush(savedInvoice);
     log.debug("Invoice {} PDF created", savedInvoice.getId());
   }
 
-  /**
-   * Render the invoice to HTML and then to PDF
-   *
-   * @param savedInvoice Invoice to render
-   * @return ByteArrayOutputStream with the PDF of the invoice
-   * @author Cedric Stumpf
-   */
-  private ByteArrayOutputStream renderInvoiceToHtmlToPDF(Invoice savedInvoice) {
-    Context context = new Context();
-    context.setVariable("invoice", savedInvoice);
-    context.setLocale(java.util.Locale.GERMANY);
-
-    String htmlContent = templateEngine.process("invoice", context);
-
-    ByteArrayOutputStream pdfOutputStream = new ByteArrayOutputStream();
-    ITextRenderer renderer = new ITextRenderer();
-    renderer.setDocumentFromString(htmlContent);
-    renderer.layout();
-    renderer.createPDF(pdfOutputStream);
-    return pdfOutputStream;
-  }
-
   /**
    * Calculate the total cost of the meters
    *
@@ -272,7 +265,7 @@ public class InvoiceService {
       log.warn("No tenant found for flat '{}'....Skipping", flatId);
       return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Keinen Mieter gefunden");
     }
-    var building = buildingRepository.findByFlatListContaining(flat.get());
+    var building = buildingStructureCache.findBuildingByFlat(flat.get());
     if (building.isEmpty()) {
       log.warn("No building found for flat '{}'", flatId);
       return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Gebäude nicht gefunden");
@@ -284,12 +277,14 @@ public class InvoiceService {
   }
 
   /**
-   * Get all invoices per building
+   * Get the newest invoice of every flat of the landlord, from the archive if all invoices of the
+   * flat are archived
    *
    * @param bearerToken Token of the Landlord
    * @return ResponseEntity with the invoices for the buildings of the landlord
    * @author Cedric Stumpf
    */
+  @Transactional(readOnly = true)
   public ResponseEntity<?> getAllInvoicesForAllBuildings(String bearerToken) {
     Optional<Person> user;
     // verify Token
@@ -311,21 +306,26 @@ public class InvoiceService {
       return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Gebäude nicht gefunden");
     }
     List<Invoice> invoiceList = new ArrayList<>();
+    List<Integer> archivedFlatIds = new ArrayList<>();
     for (Building building : buildingList) {
       log.info("Getting invoices for building: '{}'", building.getId());
       for (Flat flat : building.getFlatList()) {
         if (flat.getInvoiceList().isEmpty()) {
+          // The invoices of the flat may all be archived
+          archivedFlatIds.add(flat.getId());
           continue;
         }
         invoiceRepository.findById(flat.getInvoiceList().getLast().getId())
             .ifPresent(invoiceList::add);
       }
     }
-    if (invoiceList.isEmpty()) {
+    var invoiceDtos = getGetInvoiceDtos(invoiceList);
+    invoiceDtos.addAll(archiveService.findLatestInvoicesOfFlats(archivedFlatIds));
+    if (invoiceDtos.isEmpty()) {
       log.warn("No invoices found for landlord '{}'", user.get().getEmail());
       return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Keine Rechnungen gefunden");
     }
-    return ResponseEntity.status(HttpStatus.OK).body(getGetInvoiceDtos(invoiceList));
+    return ResponseEntity.status(HttpStatus.OK).body(invoiceDtos);
   }
 
   /**
@@ -337,6 +337,7 @@ public class InvoiceService {
    * @return ResponseEntity with the status of the invoice
    * @author Cedric Stumpf
    */
+  @Transactional
   public ResponseEntity<?> updateInvoicePaidStatus(int invoiceId, int buildingId,
       String bearerToken) {
     Optional<Person> user;
@@ -353,11 +354,16 @@ public class InvoiceService {
       return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
           .body("Bitte melde dich zuerst an!");
     }
-    var building = buildingRepository.findById(buildingId);
-    if (building.isEmpty()) {
+    if (!buildingRepository.existsById(buildingId)) {
       log.warn("Building not found for landlord '{}'", user.get().getEmail());
       return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Gebäude nicht gefunden");
     }
+    if (!authorizationService.isLandlordOfBuilding(user.get().getId(), buildingId)) {
+      log.warn("User '{}' is not the landlord of building '{}'", user.get().getEmail(),
+          buildingId);
+      return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+          .body("Du bist nicht der Vermieter dieses Gebäudes");
+    }
 
     var invoice = invoiceRepository.findById(invoiceId);
     if (invoice.isEmpty()) {
@@ -365,9 +371,7 @@ public class InvoiceService {
       return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Rechnung nicht gefunden");
     }
 
-    var flat = building.get().getFlatList().stream()
-        .filter(f -> f.getInvoiceList().contains(invoice.get())).findFirst();
-    if (flat.isEmpty()) {
+    if (!authorizationService.isInvoiceOfBuilding(invoiceId, buildingId)) {
       log.warn("Invoice not found in buildings flat list");
       return ResponseEntity.status(HttpStatus.BAD_REQUEST)
           .body("Angegebene Rechnung nicht gefunden");
@@ -387,6 +391,7 @@ public class InvoiceService {
    * @return ResponseEntity with the invoices for the flat of the tenant
    * @author Cedric Stumpf
    */
+  @Transactional(readOnly = true)
   public ResponseEntity<?> getAllInvoicesForFlat(String bearerToken) {
     Optional<Person> user;
     // verify Token
@@ -407,7 +412,118 @@ public class InvoiceService {
       log.warn("No flat found for tenant '{}'", user.get().getEmail());
       return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Wohnung nicht gefunden");
     }
+    var invoiceDtos = getGetInvoiceDtos(
+        flat.stream().flatMap(f -> f.getInvoiceList().stream()).toList());
+    invoiceDtos.addAll(archiveService.findInvoicesOfFlats(flat.stream().map(Flat::getId).toList()));
+    return ResponseEntity.status(HttpStatus.OK).body(invoiceDtos);
+  }
+
+  /**
+   * Export the PDFs of all invoices of a building for a year as ZIP. The invoices are read and
+   * written one by one, so the memory used does not grow with the number of invoices.
+   *
+   * @param buildingId  Id of the building
+   * @param year        Year the invoices were created for
+   * @param bearerToken Token of the Landlord
+   * @return ResponseEntity streaming the ZIP or with the error message
+   * @author Cedric Stumpf
+   */
+  @Transactional(readOnly = true)
+  public ResponseEntity<StreamingResponseBody> exportInvoices(int buildingId, int year,
+      String bearerToken) {
+    Optional<Person> user;
+    // verify Token
+    try {
+      user = userUtil.verifyUser(bearerToken);
+      if (user.isEmpty()) {
+        log.warn("User with token '{}' not found", jwtGenerator.extractToken(bearerToken));
+        return messageResponse(HttpStatus.UNAUTHORIZED, "Bitte melde dich zuerst an!");
+      }
+    } catch (IllegalArgumentException | JwtException e) {
+      log.warn("User '{}' not found", jwtGenerator.extractToken(bearerToken));
+      return messageResponse(HttpStatus.UNAUTHORIZED, "Bitte melde dich zuerst an!");
+    }
+    var landlordId = buildingStructureCache.findLandlordIdByBuildingId(buildingId);
+    if (landlordId.isEmpty()) {
+      log.warn("Building with id '{}' not found", buildingId);
+      return messageResponse(HttpStatus.BAD_REQUEST, "Gebäude nicht gefunden");
+    }
+    if (!landlordId.get().equals(user.get().getId())) {
+      log.warn("User '{}' is not the landlord of building '{}'", user.get().getEmail(),
+          buildingId);
+      return messageResponse(HttpStatus.UNAUTHORIZED,
+          "Du bist nicht der Vermieter dieses Gebäudes");
+    }
+    var invoiceIds = invoiceRepository.findIdsByBuildingIdAndInvoiceForYear(buildingId, year);
+    var archivedInvoiceIds = archiveService.findInvoiceIds(buildingId, year);
+    if (invoiceIds.isEmpty() && archivedInvoiceIds.isEmpty()) {
+      log.warn("No invoices found for building '{}' and year '{}'", buildingId, year);
+      return messageResponse(HttpStatus.BAD_REQUEST, "Keine Rechnungen gefunden");
+    }
+
+    log.info("Exporting {} invoices of building '{}' for year '{}'",
+        invoiceIds.size() + archivedInvoiceIds.size(), buildingId, year);
     return ResponseEntity.status(HttpStatus.OK)
-        .body(getGetInvoiceDtos(flat.stream().flatMap(f -> f.getInvoiceList().stream()).toList()));
+        .contentType(MediaType.parseMediaType("application/zip"))
+        .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+            .filename("Rechnungen_" + buildingId + "_" + year + ".zip").build().toString())
+        .body(outputStream -> writeInvoicesToZip(invoiceIds, archivedInvoiceIds, year,
+            outputStream));
+  }
+
+  /**
+   * Write the decoded PDFs of the invoices into a ZIP
+   *
+   * @param invoiceIds         Ids of the invoices to write
+   * @param archivedInvoiceIds Ids of the archived invoices to write
+   * @param year               Year the invoices were created for
+   * @param outputStream       Stream to write the ZIP to
+   * @throws IOException if writing to the stream fails
+   * @author Cedric Stumpf
+   */
+  private void writeInvoicesToZip(List<Integer> invoiceIds, List<Integer> archivedInvoiceIds,
+      int year, OutputStream outputStream) throws IOException {
+    try (ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream)) {
+      // PDFs are compressed already
+      zipOutputStream.setLevel(Deflater.BEST_SPEED);
+      for (Integer invoiceId : invoiceIds) {
+        var pdf = invoiceRepository.findPdfById(invoiceId);
+        if (pdf.isEmpty()) {
+          log.warn("Invoice {} has no PDF....Skipping", invoiceId);
+          continue;
+        }
+        zipOutputStream.putNextEntry(new ZipEntry("Rechnung_" + year + "_" + invoiceId + ".pdf"));
+        try (InputStream pdfInputStream = Base64.getDecoder().wrap(
+            new ByteArrayInputStream(pdf.get().getBytes(StandardCharsets.US_ASCII)))) {
+          pdfInputStream.transferTo(zipOutputStream);
+        }
+        zipOutputStream.closeEntry();
+      }
+      for (Integer invoiceId : archivedInvoiceIds) {
+        var pdf = archiveService.findInvoicePdf(invoiceId);
+        if (pdf.isEmpty()) {
+          log.warn("Archived invoice {} has no PDF....Skipping", invoiceId);
+          continue;
+        }
+        zipOutputStream.putNextEntry(new ZipEntry("Rechnung_" + year + "_" + invoiceId + ".pdf"));
+        zipOutputStream.write(pdf.get());
+        zipOutputStream.closeEntry();
+      }
+    }
+  }
+
+  /**
+   * Build a plain text response for the streaming endpoints
+   *
+   * @param status  Status of the response
+   * @param message Message to write
+   * @return ResponseEntity with the message as body
+   * @author Cedric Stumpf
+   */
+  private static ResponseEntity<StreamingResponseBody> messageResponse(HttpStatus status,
+      String message) {
+    return ResponseEntity.status(status)
+        .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+        .body(outputStream -> outputStream.write(message.getBytes(StandardCharsets.UTF_8)));
   }
 }
\ No newline at end of file
@@ -5,13 +5,18 @@ import de.vermity.model.dto.AuthPersonDto;
 import de.vermity.model.dto.LoginDto;
 import de.vermity.model.dto.PasswordChangeDto;
 import de.vermity.model.dto.PersonDto;
+import de.vermity.model.dto.RefreshTokenDto;
 import de.vermity.model.dto.RegisterDto;
+import de.vermity.model.dto.TokenDto;
 import de.vermity.model.entity.Address;
 import de.vermity.model.entity.Person;
-import de.vermity.persistence.AddressRepository;
 import de.vermity.persistence.PersonRepository;
+import de.vermity.persistence.SecondLevelCache;
+import de.vermity.security.AdmissionControl;
 import de.vermity.security.JWTGenerator;
+import de.vermity.security.PersonPrincipal;
 import de.vermity.util.UserUtil;
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
 import io.jsonwebtoken.security.InvalidKeyException;
 import java.net.URI;
@@ -19,15 +24,16 @@ import java.time.LocalDate;
 import java.util.Optional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 
 @Service
@@ -40,7 +46,10 @@ public class PersonService {
   private final AuthenticationManager authenticationManager;
   private final JWTGenerator jwtGenerator;
   private final UserUtil userUtil;
-  private final AddressRepository addressRepository;
+  private final AddressResolver addressResolver;
+  private final AdmissionControl admissionControl;
+  private final SecondLevelCache secondLevelCache;
+  private final DeletionService deletionService;
 
   /**
    * @param registerDto User data
@@ -61,18 +70,7 @@ public class PersonService {
       return ResponseEntity.badRequest().body("Du musst mindestens 16 Jahre alt sein, um dich zu registrieren.");
     }
 
-    Address address;
-    if (addressRepository.findByStateAndCityAndStreetAndZipAndCountry("", "", "", 0, "").isPresent()) {
-      address = addressRepository.findByStateAndCityAndStreetAndZipAndCountry("", "", "", 0, "").get();
-    } else {
-      address = addressRepository.saveAndFlush(Address.builder()
-          .zip(0)
-          .city("")
-          .state("")
-          .country("")
-          .street("")
-          .build());
-    }
+    Address address = addressResolver.emptyAddress();
 
     var person =
         Person.builder()
@@ -96,6 +94,7 @@ public class PersonService {
    * @return Status code
    * @author Jan Tiedt
    */
+  @Transactional
   public ResponseEntity<String> deleteUser(AuthPersonDto authPersonDto, String bearerToken) {
     // Check for email, if unknown return BadRequest
     log.info("Delete an user");
@@ -112,7 +111,7 @@ public class PersonService {
       return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
           .body("Bitte melde dich zuerst an!");
     }
-    personRepository.delete(user.get());
+    deletionService.deletePerson(user.get().getId());
     log.info("User deleted");
     return ResponseEntity.status(HttpStatus.OK).body("Benutzer gelöscht");
   }
@@ -125,6 +124,13 @@ public class PersonService {
    */
   public ResponseEntity<?> loginUser(LoginDto loginDto) {
     log.info("User requested login");
+    var retryAfter = admissionControl.tryLoginForAccount(loginDto.email());
+    if (retryAfter.isPresent()) {
+      log.warn("Too many login attempts");
+      return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+          .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter.getAsLong()))
+          .body(AdmissionControl.TOO_MANY_REQUESTS);
+    }
     Authentication authentication;
     try {
       authentication =
@@ -135,42 +141,98 @@ public class PersonService {
       return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
           .body("Invalide Anmeldeinformationen.");
     }
-    SecurityContextHolder.getContext().setAuthentication(authentication);
     String token;
     if (!authentication.isAuthenticated()) {
       log.warn("Authentication failed. Invalid credentials");
       return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Invalide Anmeldeinformationen");
     }
 
+    String refreshToken;
     try {
       token = jwtGenerator.generateToken(authentication);
+      refreshToken = jwtGenerator.generateRefreshToken(authentication.getName());
     } catch (InvalidKeyException e) {
       log.warn("JWT generation failed", e);
       return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("JWT erstellung fehlgeschlagen");
     }
 
-    var person = personRepository.findByEmail(loginDto.email());
-    if (person.isEmpty()
-        || !passwordEncoder.matches(loginDto.password(), person.get().getPassword())) {
+    // The password was verified by the authentication manager, use the person it loaded
+    var person = authentication.getPrincipal() instanceof PersonPrincipal principal
+        ? Optional.of(principal.getPerson())
+        : personRepository.findByEmail(authentication.getName());
+    if (person.isEmpty()) {
       return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Invalide Anmeldeinformationen");
     }
-    var personDto =
-        new PersonDto(
-            person.get().getFirstName(),
-            person.get().getLastName(),
-            person.get().getGender(),
-            person.get().getPhoneNumber(),
-            person.get().getEmail(),
-            person.get().getBirthDate(),
-            new AddressDto(
-                person.get().getAddress().getStreet(),
-                person.get().getAddress().getZip(),
-                person.get().getAddress().getCity(),
-                person.get().getAddress().getCountry(),
-                person.get().getAddress().getState()),
-            person.get().getRoleList(),
-            "Bearer " + token);
-    return ResponseEntity.ok(personDto);
+    return ResponseEntity.ok(buildPersonDTO(person.get(), "Bearer " + token, refreshToken));
+  }
+
+  /**
+   * Issue new tokens for a refresh token. The refresh token is revoked, every refresh token can be
+   * used once.
+   *
+   * @param refreshTokenDto Refresh token
+   * @return warn message or on success new access and refresh token
+   * @author Cedric Stumpf
+   */
+  public ResponseEntity<?> refreshToken(RefreshTokenDto refreshTokenDto) {
+    log.info("User requested token refresh");
+    Claims claims;
+    try {
+      claims = jwtGenerator.parseRefreshToken(refreshTokenDto.refreshToken());
+    } catch (IllegalArgumentException | JwtException e) {
+      log.warn("Invalid refresh token", e);
+      return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Bitte melde dich zuerst an!");
+    }
+    if (personRepository.findByEmail(claims.getSubject()).isEmpty()) {
+      log.warn("User of refresh token not found");
+      return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Invalide Anmeldeinformationen");
+    }
+    // A replayed refresh token loses the race for the revocation and gets no new tokens
+    if (!jwtGenerator.revoke(claims)) {
+      log.warn("Refresh token was already used");
+      return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Bitte melde dich zuerst an!");
+    }
+    try {
+      return ResponseEntity.ok(
+          new TokenDto("Bearer " + jwtGenerator.generateAccessToken(claims.getSubject()),
+              jwtGenerator.generateRefreshToken(claims.getSubject())));
+    } catch (InvalidKeyException e) {
+      log.warn("JWT generation failed", e);
+      return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("JWT erstellung fehlgeschlagen");
+    }
+  }
+
+  /**
+   * Revoke the access token and, if given, the refresh token of the user
+   *
+   * @param refreshTokenDto Refresh token, may be null
+   * @param bearerToken     JWT
+   * @return Error or success message
+   * @author Cedric Stumpf
+   */
+  public ResponseEntity<String> logoutUser(RefreshTokenDto refreshTokenDto, String bearerToken) {
+    log.info("User requested logout");
+    Claims accessClaims;
+    Claims refreshClaims = null;
+    try {
+      accessClaims = jwtGenerator.parseAccessToken(jwtGenerator.extractToken(bearerToken));
+      if (refreshTokenDto != null) {
+        refreshClaims = jwtGenerator.parseRefreshToken(refreshTokenDto.refreshToken());
+      }
+    } catch (IllegalArgumentException | JwtException e) {
+      log.warn("User '{}' not found", jwtGenerator.extractToken(bearerToken));
+      return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+          .body("Bitte melde dich zuerst an!");
+    }
+    if (refreshClaims != null && !refreshClaims.getSubject().equals(accessClaims.getSubject())) {
+      return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Invalide Anmeldeinformationen");
+    }
+    jwtGenerator.revoke(accessClaims);
+    if (refreshClaims != null) {
+      jwtGenerator.revoke(refreshClaims);
+    }
+    log.info("User logged out");
+    return ResponseEntity.ok("Abgemeldet");
   }
 
   /**
@@ -205,6 +267,7 @@ public class PersonService {
     user.get().setPassword(passwordEncoder.encode(passwordChangeDto.newPassword()));
     user.get().setUpdatedAt();
     personRepository.saveAndFlush(user.get());
+    secondLevelCache.evict(Person.class, user.get().getId());
     log.info("Password changed");
     return ResponseEntity.ok("Passwort geändert");
   }
@@ -231,34 +294,19 @@ public class PersonService {
       return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
           .body("Bitte melde dich zuerst an!");
     }
-    Optional<Address> address =
-        addressRepository.findByStateAndCityAndStreetAndZipAndCountry(
-            authPersonDto.address().state(),
-            authPersonDto.address().city(),
-            authPersonDto.address().street(),
-            authPersonDto.address().zip(),
-            authPersonDto.address().country());
-    if (address.isEmpty()) {
-      log.warn("Address not found, creating new one");
-      address = Optional.of(addressRepository.saveAndFlush(Address.builder()
-          .zip(authPersonDto.address().zip())
-          .city(authPersonDto.address().city())
-          .state(authPersonDto.address().state())
-          .country(authPersonDto.address().country())
-          .street(authPersonDto.address().street())
-          .build()));
-    }
+    Address address = addressResolver.resolve(authPersonDto.address());
 
     user.get().setFirstName(authPersonDto.firstName());
-    user.get().setAddress(address.get());
+    user.get().setAddress(address);
     user.get().setEmail(authPersonDto.email());
     user.get().setLastName(authPersonDto.lastName());
     user.get().setGender(authPersonDto.gender());
     user.get().setPhoneNumber(authPersonDto.phoneNumber());
     user.get().setRoleList(authPersonDto.roleList());
     var savedUser = personRepository.saveAndFlush(user.get());
+    secondLevelCache.evict(Person.class, savedUser.getId());
 
-    PersonDto modifiedPerson = buildPersonDTO(savedUser, bearerToken);
+    PersonDto modifiedPerson = buildPersonDTO(savedUser, bearerToken, null);
     log.info("User modified");
     return ResponseEntity.status(HttpStatus.OK).body(modifiedPerson);
   }
@@ -270,6 +318,7 @@ public class PersonService {
    * @return PersonDto
    * @author Cedric Stumpf
    */
+  @Transactional(readOnly = true)
   public ResponseEntity<?> getUser(String bearerToken) {
     Optional<Person> user;
     // verify Token
@@ -284,16 +333,17 @@ public class PersonService {
       return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
           .body("Bitte melde dich zuerst an!");
     }
-    return ResponseEntity.status(HttpStatus.OK).body(buildPersonDTO(user.get(), bearerToken));
+    return ResponseEntity.status(HttpStatus.OK).body(buildPersonDTO(user.get(), bearerToken, null));
   }
 
   /**
-   * @param person      Person
-   * @param bearerToken JWT
+   * @param person       Person
+   * @param bearerToken  JWT
+   * @param refreshToken Refresh token, null if none was issued
    * @return PersonDto
    * @author Cedric Stumpf
    */
-  private PersonDto buildPersonDTO(Person person, String bearerToken) {
+  private PersonDto buildPersonDTO(Person person, String bearerToken, String refreshToken) {
     return new PersonDto(
         person.getFirstName(),
         person.getLastName(),
@@ -308,6 +358,7 @@ public class PersonService {
             person.getAddress().getCountry(),
             person.getAddress().getState()),
         person.getRoleList(),
-        bearerToken);
+        bearerToken,
+        refreshToken);
   }
 }
@@ -0,0 +1,88 @@
+package de.vermity.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter for strings. Answers whether a value might have been added, without false
+ * negatives and with a configurable probability of false positives. Safe for concurrent use.
+ *
+ * @author Cedric Stumpf
+ */
+public class BloomFilter {
+
+  private final AtomicLongArray bits;
+  private final long numBits;
+  private final int numHashes;
+
+  /**
+   * @param expectedInsertions       Number of values the filter is sized for
+   * @param falsePositiveProbability Probability of false positives when the expected number of
+   *                                 values was added
+   */
+  public BloomFilter(int expectedInsertions, double falsePositiveProbability) {
+    int insertions = Math.max(1, expectedInsertions);
+    long optimalBits = (long) Math.ceil(
+        -insertions * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+    this.bits = new AtomicLongArray((int) Math.max(1, (optimalBits + 63) / 64));
+    this.numBits = bits.length() * 64L;
+    this.numHashes = Math.max(1, (int) Math.round((double) numBits / insertions * Math.log(2)));
+  }
+
+  /**
+   * Add a value
+   *
+   * @param value Value to add
+   * @author Cedric Stumpf
+   */
+  public void put(String value) {
+    long hash = hash(value);
+    long step = step(hash);
+    for (int i = 0; i < numHashes; i++) {
+      long bit = Math.floorMod(hash + i * step, numBits);
+      int index = (int) (bit >>> 6);
+      long mask = 1L << bit;
+      bits.getAndUpdate(index, word -> word | mask);
+    }
+  }
+
+  /**
+   * @param value Value to look up
+   * @return false if the value was never added, true if it might have been added
+   * @author Cedric Stumpf
+   */
+  public boolean mightContain(String value) {
+    long hash = hash(value);
+    long step = step(hash);
+    for (int i = 0; i < numHashes; i++) {
+      long bit = Math.floorMod(hash + i * step, numBits);
+      if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * 64 bit FNV-1a of the UTF-8 bytes
+   */
+  private static long hash(String value) {
+    long hash = 0xcbf29ce484222325L;
+    for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+      hash ^= b & 0xff;
+      hash *= 0x100000001b3L;
+    }
+    return hash;
+  }
+
+  /**
+   * Second hash for double hashing, derived from the first by a finalizer mix, always odd
+   */
+  private static long step(long hash) {
+    long step = hash;
+    step ^= step >>> 33;
+    step *= 0xff51afd7ed558ccdL;
+    step ^= step >>> 33;
+    return step | 1;
+  }
+}
@@ -0,0 +1,105 @@
+package de.vermity.util;
+
+import de.vermity.model.entity.CacheInvalidation;
+import de.vermity.persistence.CacheInvalidationRepository;
+import jakarta.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Broadcasts invalidations of in-memory caches to the other instances through the shared
+ * database, without an additional service. Published invalidations are stored in
+ * {@code cache_invalidation}, every instance polls the table and publishes the invalidations of
+ * other instances as {@link CacheInvalidationEvent}.
+ * <p>
+ * Invalidations published inside a transaction become visible with its commit, so other instances
+ * never evict before the change is readable. Rows are read again for
+ * {@code vermity.cache.invalidation.lookback} milliseconds, late commits are not missed.
+ *
+ * @author Cedric Stumpf
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CacheInvalidationBus {
+
+  private final CacheInvalidationRepository cacheInvalidationRepository;
+  private final ApplicationEventPublisher eventPublisher;
+
+  @Getter
+  private final String nodeId = UUID.randomUUID().toString();
+  // Ids of the rows inside the lookback that were already handled, with their creation time
+  private final Map<Long, LocalDateTime> handled = new ConcurrentHashMap<>();
+
+  @Value("${vermity.cache.invalidation.lookback:30000}")
+  private long lookback;
+  @Value("${vermity.cache.invalidation.retention:3600000}")
+  private long retention;
+
+  /**
+   * Skip the invalidations published before this instance started, its caches are empty
+   */
+  @PostConstruct
+  void init() {
+    cacheInvalidationRepository.findByCreatedAtAfterOrderById(lookbackStart())
+        .forEach(invalidation -> handled.put(invalidation.getId(), invalidation.getCreatedAt()));
+  }
+
+  /**
+   * Invalidate a key of a cache on all other instances, evicting it locally is up to the caller
+   *
+   * @param cache Name of the cache
+   * @param key   Key to invalidate, null for the whole cache
+   * @author Cedric Stumpf
+   */
+  public void publish(String cache, Object key) {
+    cacheInvalidationRepository.save(
+        new CacheInvalidation(cache, key == null ? null : key.toString(), nodeId));
+  }
+
+  /**
+   * Publish the invalidations of other instances as events
+   *
+   * @author Cedric Stumpf
+   */
+  @Scheduled(fixedDelayString = "${vermity.cache.invalidation.poll-interval:1000}")
+  public synchronized void poll() {
+    LocalDateTime since = lookbackStart();
+    handled.values().removeIf(createdAt -> createdAt.isBefore(since));
+    for (CacheInvalidation invalidation :
+        cacheInvalidationRepository.findByCreatedAtAfterOrderById(since)) {
+      if (handled.putIfAbsent(invalidation.getId(), invalidation.getCreatedAt()) != null
+          || nodeId.equals(invalidation.getOrigin())) {
+        continue;
+      }
+      log.debug("Cache {} invalidated by {}", invalidation.getCacheName(), invalidation.getOrigin());
+      eventPublisher.publishEvent(
+          new CacheInvalidationEvent(invalidation.getCacheName(), invalidation.getCacheKey()));
+    }
+  }
+
+  /**
+   * Delete invalidations every instance has seen
+   *
+   * @author Cedric Stumpf
+   */
+  @Scheduled(fixedDelayString = "${vermity.cache.invalidation.retention:3600000}")
+  public void purge() {
+    int purged = cacheInvalidationRepository.deleteCreatedBefore(
+        LocalDateTime.now().minusNanos(retention * 1_000_000));
+    log.debug("Purged {} cache invalidations", purged);
+  }
+
+  private LocalDateTime lookbackStart() {
+    return LocalDateTime.now().minusNanos(lookback * 1_000_000);
+  }
+}
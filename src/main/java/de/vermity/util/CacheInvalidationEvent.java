@@ -0,0 +1,13 @@
+package de.vermity.util;
+
+/**
+ * Invalidation of an in-memory cache published by another instance
+ *
+ * @param cache Name of the cache
+ * @param key   Invalidated key, null for the whole cache
+ * @author Cedric Stumpf
+ * @see CacheInvalidationBus
+ */
+public record CacheInvalidationEvent(String cache, String key) {
+
+}
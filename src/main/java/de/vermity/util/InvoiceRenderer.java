@@ -0,0 +1,93 @@
+package de.vermity.util;
+
+import de.vermity.model.entity.Invoice;
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Locale;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FastByteArrayOutputStream;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templateresolver.AbstractConfigurableTemplateResolver;
+import org.w3c.dom.Document;
+import org.xhtmlrenderer.pdf.ITextRenderer;
+import org.xhtmlrenderer.resource.XMLResource;
+
+/**
+ * Renders invoices to PDF. The invoice template and its static head fragment stay resident in the
+ * Thymeleaf template cache, the rendered XHTML is handed to Flying Saucer as a DOM and the PDF is
+ * Base64 encoded while it is written. Created lazily on the first invoice, so startup does not load
+ * the PDF libraries.
+ *
+ * @author Cedric Stumpf
+ */
+@Slf4j
+@Lazy
+@Component
+@RequiredArgsConstructor
+public class InvoiceRenderer {
+
+  private static final String INVOICE_TEMPLATE = "invoice";
+
+  private final SpringTemplateEngine templateEngine;
+
+  @Value("${vermity.invoice.template-cache-ttl:0}")
+  private long templateCacheTtl;
+
+  /**
+   * Apply the configured time to live to the template cache. Without a TTL cached templates stay
+   * resident until the cache evicts them.
+   */
+  @PostConstruct
+  void configureTemplateCache() {
+    if (templateCacheTtl <= 0) {
+      return;
+    }
+    templateEngine.getTemplateResolvers().stream()
+        .filter(AbstractConfigurableTemplateResolver.class::isInstance)
+        .map(AbstractConfigurableTemplateResolver.class::cast)
+        .forEach(resolver -> resolver.setCacheTTLMs(templateCacheTtl));
+    log.info("Invoice template cache TTL set to {} ms", templateCacheTtl);
+  }
+
+  /**
+   * Render the invoice to HTML and then to PDF
+   *
+   * @param invoice Invoice to render
+   * @return Base64 encoded PDF of the invoice
+   * @author Cedric Stumpf
+   */
+  public String renderToBase64Pdf(Invoice invoice) {
+    Context context = new Context(Locale.GERMANY);
+    context.setVariable("invoice", invoice);
+
+    FastByteArrayOutputStream htmlOutputStream = new FastByteArrayOutputStream();
+    try (Writer writer = new OutputStreamWriter(htmlOutputStream, StandardCharsets.UTF_8)) {
+      templateEngine.process(INVOICE_TEMPLATE, context, writer);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Rendering invoice " + invoice.getId() + " failed", e);
+    }
+    Document document = XMLResource.load(htmlOutputStream.getInputStream()).getDocument();
+
+    FastByteArrayOutputStream pdfOutputStream = new FastByteArrayOutputStream();
+    try (OutputStream base64OutputStream = Base64.getEncoder().wrap(pdfOutputStream)) {
+      ITextRenderer renderer = new ITextRenderer();
+      renderer.setDocument(document, null);
+      renderer.layout();
+      renderer.createPDF(base64OutputStream);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Writing PDF of invoice " + invoice.getId() + " failed", e);
+    }
+    return new String(pdfOutputStream.toByteArrayUnsafe(), StandardCharsets.US_ASCII);
+  }
+}
@@ -0,0 +1,54 @@
+package de.vermity.util;
+
+import java.util.List;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Marks the beans of rarely used libraries as lazy, so they are created on first use instead of
+ * on every startup. Controllers among them are still mapped, they are created on the first
+ * request. Runs during AOT processing as well, the lazy flag ends up in the generated bean
+ * definitions.
+ *
+ * @author Cedric Stumpf
+ */
+@Component
+public class LazyInitializationPostProcessor implements BeanFactoryPostProcessor {
+
+  // OpenAPI documentation, only requested by developers
+  private static final List<String> LAZY_PACKAGES = List.of("org.springdoc.");
+
+  @Override
+  public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory)
+      throws BeansException {
+    for (String beanName : beanFactory.getBeanDefinitionNames()) {
+      BeanDefinition definition = beanFactory.getBeanDefinition(beanName);
+      if (definition.getRole() != BeanDefinition.ROLE_INFRASTRUCTURE
+          && isLazyPackage(declaringClassName(beanFactory, definition))) {
+        definition.setLazyInit(true);
+      }
+    }
+  }
+
+  /**
+   * Class of the bean, or of the configuration declaring it for {@code @Bean} methods
+   */
+  private static String declaringClassName(ConfigurableListableBeanFactory beanFactory,
+      BeanDefinition definition) {
+    if (definition.getBeanClassName() != null) {
+      return definition.getBeanClassName();
+    }
+    String factoryBeanName = definition.getFactoryBeanName();
+    if (factoryBeanName == null || !beanFactory.containsBeanDefinition(factoryBeanName)) {
+      return null;
+    }
+    return beanFactory.getBeanDefinition(factoryBeanName).getBeanClassName();
+  }
+
+  private static boolean isLazyPackage(String className) {
+    return className != null && LAZY_PACKAGES.stream().anyMatch(className::startsWith);
+  }
+}
@@ -0,0 +1,57 @@
+package de.vermity.util;
+
+/**
+ * Token bucket: holds up to {@code capacity} tokens and refills them continuously at a fixed
+ * rate. Every admitted request takes one token.
+ *
+ * @author Cedric Stumpf
+ */
+public class TokenBucket {
+
+  private final long capacity;
+  private final double tokensPerNano;
+  private double tokens;
+  private long lastRefill;
+
+  /**
+   * @param capacity        Maximum number of tokens, the allowed burst
+   * @param refillPerMinute Tokens added per minute
+   * @param now             Current time in nanoseconds
+   */
+  public TokenBucket(long capacity, long refillPerMinute, long now) {
+    this.capacity = capacity;
+    this.tokensPerNano = refillPerMinute / 60_000_000_000d;
+    this.tokens = capacity;
+    this.lastRefill = now;
+  }
+
+  /**
+   * Take one token
+   *
+   * @param now Current time in nanoseconds
+   * @return 0 if a token was taken, otherwise the nanoseconds until the next token is available
+   * @author Cedric Stumpf
+   */
+  public synchronized long tryConsume(long now) {
+    refill(now);
+    if (tokens >= 1) {
+      tokens--;
+      return 0;
+    }
+    return (long) Math.ceil((1 - tokens) / tokensPerNano);
+  }
+
+  /**
+   * @param now Current time in nanoseconds
+   * @return Whether the bucket is full again, a full bucket carries no state and can be dropped
+   */
+  public synchronized boolean isFull(long now) {
+    refill(now);
+    return tokens >= capacity;
+  }
+
+  private void refill(long now) {
+    tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+    lastRefill = now;
+  }
+}
@@ -0,0 +1,34 @@
+-- Invoices and readings of billing years before vermity.archive.hot-years, moved out of the hot
+-- tables by ArchiveService. Without foreign keys, BulkDeletion deletes the rows of deleted
+-- buildings.
+create table invoice_archive (
+  id                   integer not null,
+  archived_at          datetime(6) not null,
+  created_at           datetime(6),
+  flat_id              integer,
+  building_id          integer,
+  paid                 boolean not null,
+  total_warm_rent_paid double not null,
+  total_cold_rent      double not null,
+  total_cost           double not null,
+  total_square_meters  integer not null,
+  invoice_for_year     integer not null,
+  -- gzip, one line per entry of the element collections: <collection> <key> <value>
+  details              blob,
+  -- gzip of the PDF itself, not of its Base64 encoding
+  pdf                  longblob,
+  primary key (id)
+);
+
+create index idx_invoice_archive_building_year on invoice_archive (building_id, invoice_for_year);
+create index idx_invoice_archive_flat on invoice_archive (flat_id);
+
+-- Readings of one meter in one year, delta encoded and gzip compressed
+create table reading_archive (
+  meter_id      integer not null,
+  reading_year  integer not null,
+  archived_at   datetime(6) not null,
+  reading_count integer not null,
+  segment       blob not null,
+  primary key (meter_id, reading_year)
+);
@@ -0,0 +1,2 @@
+-- The current reading of a meter is its newest reading, the one with the highest id
+create index idx_update_meter_newest on update_tbl (meter_id, id);
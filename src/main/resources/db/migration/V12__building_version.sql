@@ -0,0 +1,2 @@
+-- Version column for optimistic locking of buildings
+alter table building add column version bigint not null default 0;
@@ -0,0 +1,197 @@
+-- Baseline of the schema previously created by hibernate ddl-auto=update.
+-- Existing databases are baselined at this version (spring.flyway.baseline-on-migrate).
+
+create table address (
+  id         integer not null auto_increment,
+  created_at datetime(6),
+  updated_at datetime(6),
+  street     varchar(255),
+  city       varchar(100),
+  state      varchar(100),
+  zip        integer,
+  country    varchar(100),
+  primary key (id),
+  constraint unique_address unique (street, city, state, zip, country)
+);
+
+create table person (
+  id           integer not null auto_increment,
+  created_at   datetime(6),
+  updated_at   datetime(6),
+  first_name   varchar(255),
+  last_name    varchar(255),
+  gender       tinyint,
+  phone_number varchar(255),
+  email        varchar(255),
+  birth_date   date,
+  password     varchar(60),
+  enabled      boolean not null,
+  address_id   integer,
+  primary key (id)
+);
+
+create table person_role_list (
+  person_id integer not null,
+  role_list varchar(255)
+);
+
+create table additional_cost (
+  id           integer not null auto_increment,
+  created_at   datetime(6),
+  updated_at   datetime(6),
+  name         varchar(255),
+  description  varchar(255),
+  amount       double not null,
+  distribution varchar(255),
+  frequency    varchar(255),
+  primary key (id)
+);
+
+create table building (
+  id          integer not null auto_increment,
+  created_at  datetime(6),
+  updated_at  datetime(6),
+  landlord_id integer,
+  address_id  integer,
+  primary key (id),
+  constraint uk_building_address unique (address_id)
+);
+
+create table building_operating_costs (
+  building_id        integer not null,
+  operating_costs_id integer not null,
+  constraint uk_building_operating_costs unique (operating_costs_id)
+);
+
+create table meter (
+  id            integer not null auto_increment,
+  created_at    datetime(6),
+  updated_at    datetime(6),
+  reading       integer not null,
+  meter_nr      varchar(255) not null,
+  type          tinyint,
+  cost_per_unit double not null,
+  base_cost     double not null,
+  primary key (id),
+  constraint uk_meter_meter_nr unique (meter_nr)
+);
+
+create table flat (
+  id          integer not null auto_increment,
+  created_at  datetime(6),
+  updated_at  datetime(6),
+  tenant_id   integer,
+  building_id integer,
+  location    varchar(255),
+  square_meter integer not null,
+  rooms       integer not null,
+  residents   integer not null,
+  cold_rent   double not null,
+  warm_rent   double not null,
+  primary key (id)
+);
+
+create table flat_meter_list (
+  flat_id       integer not null,
+  meter_list_id integer not null,
+  constraint uk_flat_meter_list unique (meter_list_id)
+);
+
+create table flat_addition_list (
+  flat_id          integer not null,
+  addition_list_id integer not null,
+  constraint uk_flat_addition_list unique (addition_list_id)
+);
+
+create table invoice (
+  id                   integer not null auto_increment,
+  created_at           datetime(6),
+  updated_at           datetime(6),
+  flat_id              integer,
+  building_id          integer,
+  paid                 boolean not null,
+  total_warm_rent_paid double not null,
+  total_cold_rent      double not null,
+  total_cost           double not null,
+  total_square_meters  integer not null,
+  invoice_for_year     integer not null,
+  pdf                  longtext,
+  primary key (id)
+);
+
+create table flat_invoice_list (
+  flat_id         integer not null,
+  invoice_list_id integer not null,
+  constraint uk_flat_invoice_list unique (invoice_list_id)
+);
+
+create table invoice_meter_difference (
+  invoice_id           integer not null,
+  meter_difference_key integer not null,
+  meter_difference     integer,
+  primary key (invoice_id, meter_difference_key)
+);
+
+create table invoice_meter_total_cost (
+  invoice_id           integer not null,
+  meter_total_cost_key integer not null,
+  meter_total_cost     double,
+  primary key (invoice_id, meter_total_cost_key)
+);
+
+create table invoice_operating_cost_per_distribution_key (
+  invoice_id                              integer not null,
+  operating_cost_per_distribution_key_key integer not null,
+  operating_cost_per_distribution_key     double,
+  primary key (invoice_id, operating_cost_per_distribution_key_key)
+);
+
+create table update_tbl (
+  id         integer not null auto_increment,
+  created_at datetime(6),
+  updated_at datetime(6),
+  meter_id   integer,
+  reading    integer not null,
+  person_id  integer,
+  primary key (id)
+);
+
+-- Foreign key columns, named so that the constraints below reuse them
+create index idx_person_address on person (address_id);
+create index idx_person_role_list_person on person_role_list (person_id);
+create index idx_building_landlord on building (landlord_id);
+create index idx_building_operating_costs_building on building_operating_costs (building_id);
+create index idx_flat_tenant on flat (tenant_id);
+create index idx_flat_building on flat (building_id);
+create index idx_flat_meter_list_flat on flat_meter_list (flat_id);
+create index idx_flat_addition_list_flat on flat_addition_list (flat_id);
+create index idx_flat_invoice_list_flat on flat_invoice_list (flat_id);
+create index idx_invoice_flat on invoice (flat_id);
+create index idx_invoice_building on invoice (building_id);
+create index idx_update_meter on update_tbl (meter_id);
+create index idx_update_person on update_tbl (person_id);
+
+alter table person add constraint fk_person_address foreign key (address_id) references address (id);
+alter table person_role_list add constraint fk_person_role_list_person foreign key (person_id) references person (id);
+alter table building add constraint fk_building_landlord foreign key (landlord_id) references person (id);
+alter table building add constraint fk_building_address foreign key (address_id) references address (id);
+alter table building_operating_costs add constraint fk_building_operating_costs_building foreign key (building_id) references building (id);
+alter table building_operating_costs add constraint fk_building_operating_costs_cost foreign key (operating_costs_id) references additional_cost (id);
+alter table flat add constraint fk_flat_tenant foreign key (tenant_id) references person (id);
+alter table flat add constraint fk_flat_building foreign key (building_id) references building (id);
+alter table flat_meter_list add constraint fk_flat_meter_list_flat foreign key (flat_id) references flat (id);
+alter table flat_meter_list add constraint fk_flat_meter_list_meter foreign key (meter_list_id) references meter (id);
+alter table flat_addition_list add constraint fk_flat_addition_list_flat foreign key (flat_id) references flat (id);
+alter table flat_addition_list add constraint fk_flat_addition_list_cost foreign key (addition_list_id) references additional_cost (id);
+alter table flat_invoice_list add constraint fk_flat_invoice_list_flat foreign key (flat_id) references flat (id);
+alter table flat_invoice_list add constraint fk_flat_invoice_list_invoice foreign key (invoice_list_id) references invoice (id);
+alter table invoice add constraint fk_invoice_flat foreign key (flat_id) references flat (id);
+alter table invoice add constraint fk_invoice_building foreign key (building_id) references building (id);
+alter table invoice_meter_difference add constraint fk_invoice_meter_difference_invoice foreign key (invoice_id) references invoice (id);
+alter table invoice_meter_difference add constraint fk_invoice_meter_difference_meter foreign key (meter_difference_key) references meter (id);
+alter table invoice_meter_total_cost add constraint fk_invoice_meter_total_cost_invoice foreign key (invoice_id) references invoice (id);
+alter table invoice_meter_total_cost add constraint fk_invoice_meter_total_cost_meter foreign key (meter_total_cost_key) references meter (id);
+alter table invoice_operating_cost_per_distribution_key add constraint fk_invoice_operating_cost_invoice foreign key (invoice_id) references invoice (id);
+alter table invoice_operating_cost_per_distribution_key add constraint fk_invoice_operating_cost_cost foreign key (operating_cost_per_distribution_key_key) references additional_cost (id);
+alter table update_tbl add constraint fk_update_meter foreign key (meter_id) references meter (id);
+alter table update_tbl add constraint fk_update_person foreign key (person_id) references person (id);
@@ -0,0 +1,8 @@
+-- Person.email is looked up on every authenticated request
+create unique index uk_person_email on person (email);
+
+-- Readings of a meter ordered by creation date
+create index idx_update_meter_created on update_tbl (meter_id, created_at);
+
+-- Invoice export per building and year
+create index idx_invoice_building_year on invoice (building_id, invoice_for_year);
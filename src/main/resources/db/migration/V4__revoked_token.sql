@@ -0,0 +1,11 @@
+-- Ids of access and refresh tokens revoked before their expiration
+create table revoked_token (
+  id         varchar(36) not null,
+  created_at datetime(6),
+  updated_at datetime(6),
+  expires_at datetime(6) not null,
+  primary key (id)
+);
+
+-- Expired entries are purged and skipped when the revocation filter is loaded
+create index idx_revoked_token_expires on revoked_token (expires_at);
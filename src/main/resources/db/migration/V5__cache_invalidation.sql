@@ -0,0 +1,12 @@
+-- Invalidations of in-memory caches, polled by every instance
+create table cache_invalidation (
+  id         bigint not null auto_increment,
+  created_at datetime(6),
+  updated_at datetime(6),
+  cache_name varchar(50) not null,
+  cache_key  varchar(100),
+  origin     varchar(36) not null,
+  primary key (id)
+);
+
+create index idx_cache_invalidation_created on cache_invalidation (created_at);
@@ -0,0 +1,4 @@
+-- Version columns for optimistic locking of meters, flats and invoices
+alter table meter add column version bigint not null default 0;
+alter table flat add column version bigint not null default 0;
+alter table invoice add column version bigint not null default 0;
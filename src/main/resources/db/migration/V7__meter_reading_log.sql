@@ -0,0 +1,9 @@
+-- The current reading of a meter is derived from its log in update_tbl
+insert into update_tbl (created_at, updated_at, reading, meter_id)
+select current_timestamp, current_timestamp, m.reading, m.id from meter m
+where not exists (select 1 from update_tbl u where u.meter_id = m.id and u.reading >= m.reading);
+
+alter table meter drop column reading;
+
+-- Highest reading per meter
+create index idx_update_meter_reading on update_tbl (meter_id, reading);
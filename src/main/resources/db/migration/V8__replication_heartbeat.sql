@@ -0,0 +1,8 @@
+-- Written on the primary by every instance, the age of the replicated row is the lag of a replica
+create table replication_heartbeat (
+  id   int not null,
+  beat datetime(6) not null,
+  primary key (id)
+);
+
+insert into replication_heartbeat (id, beat) values (1, current_timestamp(6));
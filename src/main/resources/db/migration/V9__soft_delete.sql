@@ -0,0 +1,6 @@
+-- Soft deleted buildings and persons, their rows are removed by the purge of DeletionService
+alter table building add column deleted_at datetime(6);
+alter table person add column deleted_at datetime(6);
+
+create index idx_building_deleted on building (deleted_at);
+create index idx_person_deleted on person (deleted_at);
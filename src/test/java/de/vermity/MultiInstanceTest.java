@@ -0,0 +1,235 @@
+package de.vermity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.vermity.loadtest.PortfolioGenerator;
+import de.vermity.loadtest.PortfolioGenerator.Portfolio;
+import de.vermity.loadtest.PortfolioGenerator.PortfolioSize;
+import de.vermity.persistence.AdditionalCostRepository;
+import de.vermity.persistence.AddressRepository;
+import de.vermity.persistence.BuildingRepository;
+import de.vermity.persistence.FlatRepository;
+import de.vermity.persistence.InvoiceRepository;
+import de.vermity.persistence.MeterRepository;
+import de.vermity.persistence.PersonRepository;
+import de.vermity.service.BuildingStructureCache;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Encoders;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Starts two instances of the application on random ports against the same database and checks
+ * that tokens, revocations and cache evictions of one instance are honored by the other.
+ *
+ * @author Cedric Stumpf
+ */
+@TestInstance(Lifecycle.PER_CLASS)
+// Starts the application itself, the test image has no AOT initializer for VermityApplication
+@DisabledInNativeImage
+class MultiInstanceTest {
+
+  private static final Duration PROPAGATION_TIMEOUT = Duration.ofSeconds(10);
+  private static final int REPLAYS = 8;
+
+  private final HttpClient httpClient = HttpClient.newBuilder()
+      .connectTimeout(Duration.ofSeconds(5)).build();
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private ConfigurableApplicationContext nodeA;
+  private ConfigurableApplicationContext nodeB;
+  private Portfolio portfolio;
+
+  @BeforeAll
+  void startInstances() {
+    String signingKey = Encoders.BASE64.encode(Jwts.SIG.HS512.key().build().getEncoded());
+    nodeA = start(signingKey);
+    nodeB = start(signingKey);
+    portfolio = new PortfolioGenerator(nodeA.getBean(PersonRepository.class),
+        nodeA.getBean(AddressRepository.class), nodeA.getBean(BuildingRepository.class),
+        nodeA.getBean(FlatRepository.class), nodeA.getBean(MeterRepository.class),
+        nodeA.getBean(AdditionalCostRepository.class), nodeA.getBean(InvoiceRepository.class),
+        nodeA.getBean(JdbcTemplate.class), nodeA.getBean(PasswordEncoder.class),
+        nodeA.getBean(TransactionTemplate.class))
+        .generate(new PortfolioSize(2, 1, 2, 1, 1, false, 42L));
+  }
+
+  @AfterAll
+  void stopInstances() {
+    if (nodeA != null) {
+      nodeA.close();
+    }
+    if (nodeB != null) {
+      nodeB.close();
+    }
+  }
+
+  @Test
+  void token_issuedByOneInstance_isAcceptedByTheOther() throws Exception {
+    JsonNode login = login(nodeA, portfolio.landlordEmails().get(0));
+
+    HttpResponse<String> user = get(nodeB, "/auth/getUser", login.get("token").asText());
+    assertEquals(200, user.statusCode());
+
+    String refreshBody = objectMapper.createObjectNode()
+        .put("refreshToken", login.get("refreshToken").asText()).toString();
+    assertEquals(200, post(nodeB, "/refresh", null, refreshBody).statusCode());
+    // Refresh tokens can be used once, on any instance
+    assertEquals(401, post(nodeA, "/refresh", null, refreshBody).statusCode());
+  }
+
+  @Test
+  void refreshToken_replayedConcurrently_issuesTokensOnce() throws Exception {
+    String refreshBody = objectMapper.createObjectNode().put("refreshToken",
+        login(nodeA, portfolio.landlordEmails().get(0)).get("refreshToken").asText()).toString();
+    ExecutorService executor = Executors.newFixedThreadPool(REPLAYS);
+    try {
+      List<Future<Integer>> statusCodes = new ArrayList<>();
+      for (int i = 0; i < REPLAYS; i++) {
+        ConfigurableApplicationContext node = i % 2 == 0 ? nodeA : nodeB;
+        statusCodes.add(executor.submit(
+            () -> post(node, "/refresh", null, refreshBody).statusCode()));
+      }
+      int issued = 0;
+      for (Future<Integer> statusCode : statusCodes) {
+        if (statusCode.get() == 200) {
+          issued++;
+        } else {
+          assertEquals(401, statusCode.get());
+        }
+      }
+      assertEquals(1, issued);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void logout_onOneInstance_revokesTokenOnTheOther() throws Exception {
+    String token = login(nodeA, portfolio.landlordEmails().get(1)).get("token").asText();
+    assertEquals(200, get(nodeB, "/auth/getUser", token).statusCode());
+
+    assertEquals(200, post(nodeA, "/auth/logout", token, null).statusCode());
+
+    assertEquals(401, get(nodeA, "/auth/getUser", token).statusCode());
+    assertTrue(eventually(() -> get(nodeB, "/auth/getUser", token).statusCode() == 401),
+        "Revocation did not reach the other instance");
+  }
+
+  @Test
+  void cacheEviction_onOneInstance_reachesTheOther() {
+    JdbcTemplate jdbcTemplate = nodeA.getBean(JdbcTemplate.class);
+    int buildingId = jdbcTemplate.queryForObject("select min(id) from building", Integer.class);
+    int tenantId = jdbcTemplate.queryForObject(
+        "select min(tenant_id) from flat where building_id = ?", Integer.class, buildingId);
+    BuildingStructureCache cacheA = nodeA.getBean(BuildingStructureCache.class);
+    BuildingStructureCache cacheB = nodeB.getBean(BuildingStructureCache.class);
+    Optional<Integer> landlordId = cacheB.findLandlordIdByBuildingId(buildingId);
+
+    jdbcTemplate.update("update building set landlord_id = ? where id = ?", tenantId, buildingId);
+    assertEquals(landlordId, cacheB.findLandlordIdByBuildingId(buildingId));
+    cacheA.evictBuilding(buildingId);
+
+    assertTrue(eventually(
+            () -> cacheB.findLandlordIdByBuildingId(buildingId).equals(Optional.of(tenantId))),
+        "Eviction did not reach the other instance");
+  }
+
+  private static ConfigurableApplicationContext start(String signingKey) {
+    return new SpringApplicationBuilder(VermityApplication.class).run(
+        "--server.port=0",
+        "--spring.main.banner-mode=off",
+        "--spring.datasource.url=jdbc:h2:mem:multi-instance;MODE=MariaDB;DB_CLOSE_DELAY=-1",
+        "--spring.datasource.driver-class-name=org.h2.Driver",
+        "--spring.datasource.username=sa",
+        "--spring.datasource.password=",
+        "--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "--vermity.token.signing-keys=" + signingKey,
+        "--vermity.cache.invalidation.poll-interval=100",
+        "--vermity.admission.enabled=false");
+  }
+
+  private JsonNode login(ConfigurableApplicationContext node, String email) throws Exception {
+    String body = objectMapper.createObjectNode().put("email", email)
+        .put("password", portfolio.password()).toString();
+    HttpResponse<String> response = post(node, "/login", null, body);
+    assertEquals(200, response.statusCode(), response.body());
+    return objectMapper.readTree(response.body());
+  }
+
+  private HttpResponse<String> get(ConfigurableApplicationContext node, String path,
+      String token) {
+    return send(HttpRequest.newBuilder(uri(node, path)).header("Authorization", token).GET());
+  }
+
+  private HttpResponse<String> post(ConfigurableApplicationContext node, String path,
+      String token, String body) {
+    HttpRequest.Builder request = HttpRequest.newBuilder(uri(node, path))
+        .header("Content-Type", "application/json")
+        .POST(body == null ? HttpRequest.BodyPublishers.noBody()
+            : HttpRequest.BodyPublishers.ofString(body));
+    if (token != null) {
+      request.header("Authorization", token);
+    }
+    return send(request);
+  }
+
+  private HttpResponse<String> send(HttpRequest.Builder request) {
+    try {
+      return httpClient.send(request.timeout(Duration.ofSeconds(30)).build(),
+          HttpResponse.BodyHandlers.ofString());
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static URI uri(ConfigurableApplicationContext node, String path) {
+    int port = ((WebServerApplicationContext) node).getWebServer().getPort();
+    return URI.create("http://localhost:" + port + path);
+  }
+
+  private static boolean eventually(BooleanSupplier condition) {
+    long end = System.nanoTime() + PROPAGATION_TIMEOUT.toNanos();
+    while (System.nanoTime() < end) {
+      if (condition.getAsBoolean()) {
+        return true;
+      }
+      try {
+        Thread.sleep(50);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,128 @@
+package de.vermity.loadtest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import de.vermity.loadtest.PortfolioGenerator.Portfolio;
+import de.vermity.loadtest.PortfolioGenerator.PortfolioSize;
+import de.vermity.persistence.AdditionalCostRepository;
+import de.vermity.persistence.AddressRepository;
+import de.vermity.persistence.BuildingRepository;
+import de.vermity.persistence.FlatRepository;
+import de.vermity.persistence.InvoiceRepository;
+import de.vermity.persistence.MeterRepository;
+import de.vermity.persistence.PersonRepository;
+import de.vermity.security.JWTGenerator;
+import de.vermity.service.BuildingService;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Cost of the landlord dashboard ({@link BuildingService#getAllBuildingsLandlordView(String)}) in
+ * its read-only transaction compared to the same call inside a write transaction, as it ran
+ * before. Measures time and bytes allocated per call, the write transaction keeps a snapshot of
+ * every loaded entity and flushes on commit. The result is written to
+ * {@code build/reports/load/dashboard-read-benchmark.txt}.
+ * <p>
+ * Only runs with {@code gradle loadTest}.
+ *
+ * @author Cedric Stumpf
+ */
+@Slf4j
+@Tag("load")
+@TestPropertySource(locations = "classpath:application-test.properties",
+    properties = "spring.datasource.url=jdbc:h2:mem:dashboard;MODE=MariaDB")
+@SpringBootTest
+class DashboardReadBenchmark {
+
+  private static final int ROUNDS = 50;
+
+  @Autowired
+  private BuildingService buildingService;
+  @Autowired
+  private JWTGenerator jwtGenerator;
+  @Autowired
+  private PersonRepository personRepository;
+  @Autowired
+  private AddressRepository addressRepository;
+  @Autowired
+  private BuildingRepository buildingRepository;
+  @Autowired
+  private FlatRepository flatRepository;
+  @Autowired
+  private MeterRepository meterRepository;
+  @Autowired
+  private AdditionalCostRepository additionalCostRepository;
+  @Autowired
+  private InvoiceRepository invoiceRepository;
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+  @Autowired
+  private PasswordEncoder passwordEncoder;
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
+  @Test
+  void landlordViewReadOnlyAndWriteTransaction() throws Exception {
+    Portfolio portfolio = new PortfolioGenerator(personRepository, addressRepository,
+        buildingRepository, flatRepository, meterRepository, additionalCostRepository,
+        invoiceRepository, jdbcTemplate, passwordEncoder, transactionTemplate)
+        .generate(new PortfolioSize(5, 2, 20, 2, 2, true, 42L));
+    List<String> tokens = portfolio.landlordEmails().stream()
+        .map(email -> "Bearer " + jwtGenerator.generateAccessToken(email)).toList();
+
+    Consumer<String> dashboard = token -> assertEquals(HttpStatus.OK,
+        buildingService.getAllBuildingsLandlordView(token).getStatusCode());
+    // The read-only transaction joins the write transaction and does not change the session
+    Consumer<String> inWriteTransaction = token -> transactionTemplate.executeWithoutResult(
+        status -> dashboard.accept(token));
+
+    measure(tokens, dashboard);
+    measure(tokens, inWriteTransaction);
+    Cost readOnly = measure(tokens, dashboard);
+    Cost write = measure(tokens, inWriteTransaction);
+
+    String report = String.format("""
+            transaction   ms/call   KiB allocated/call
+            read-only     %7.2f   %18.1f
+            write         %7.2f   %18.1f
+            """, readOnly.millis(), readOnly.kibibytes(), write.millis(), write.kibibytes());
+    log.info("Dashboard read benchmark\n{}", report);
+    Path reportFile = Path.of("build", "reports", "load", "dashboard-read-benchmark.txt");
+    Files.createDirectories(reportFile.getParent());
+    Files.writeString(reportFile, report);
+  }
+
+  /**
+   * Call the dashboard of every landlord {@link #ROUNDS} times on the current thread
+   *
+   * @return Time and allocated bytes per call
+   */
+  private static Cost measure(List<String> tokens, Consumer<String> call) {
+    var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long bytesBefore = threads.getCurrentThreadAllocatedBytes();
+    long start = System.nanoTime();
+    for (int round = 0; round < ROUNDS; round++) {
+      tokens.forEach(call);
+    }
+    long calls = (long) ROUNDS * tokens.size();
+    return new Cost((System.nanoTime() - start) / 1e6 / calls,
+        (threads.getCurrentThreadAllocatedBytes() - bytesBefore) / 1024.0 / calls);
+  }
+
+  private record Cost(double millis, double kibibytes) {
+
+  }
+}
@@ -0,0 +1,94 @@
+package de.vermity.loadtest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import de.vermity.model.entity.AdditionalCost;
+import de.vermity.util.enums.Distribution;
+import de.vermity.util.enums.Frequency;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Lookup cost of the operating cost map of an invoice for buildings with hundreds of cost items.
+ * Compares saved entities as keys with keys hashed by their class only, as the entities were
+ * before, which puts every key into the same bucket. The result is written to
+ * {@code build/reports/load/entity-hash-benchmark.txt}.
+ * <p>
+ * Only runs with {@code gradle loadTest}.
+ *
+ * @author Cedric Stumpf
+ */
+@Slf4j
+@Tag("load")
+class EntityHashBenchmark {
+
+  private static final List<Integer> COST_ITEMS = List.of(100, 500, 1000);
+  private static final int ROUNDS = 200;
+
+  @Test
+  void lookupCostPerCostItem() throws Exception {
+    StringBuilder report = new StringBuilder(
+        "cost items   entity ns/lookup   class hash ns/lookup\n");
+    for (int items : COST_ITEMS) {
+      List<AdditionalCost> costs = IntStream.rangeClosed(1, items)
+          .mapToObj(id -> AdditionalCost.builder().id(id).name("Kosten " + id).amount(id)
+              .distribution(Distribution.FLAT).frequency(Frequency.YEARLY).build())
+          .toList();
+      double entityNanos = measure(costs, Function.identity());
+      double classHashNanos = measure(costs, ClassHashedKey::new);
+      report.append(String.format("%10d   %16.1f   %20.1f%n", items, entityNanos,
+          classHashNanos));
+    }
+
+    log.info("Entity hash benchmark\n{}", report);
+    Path reportFile = Path.of("build", "reports", "load", "entity-hash-benchmark.txt");
+    Files.createDirectories(reportFile.getParent());
+    Files.writeString(reportFile, report);
+  }
+
+  /**
+   * Fill a map with one entry per cost item and look every item up
+   *
+   * @return Nanoseconds per lookup, measured after a warm up
+   */
+  private static <K> double measure(List<AdditionalCost> costs,
+      Function<AdditionalCost, K> key) {
+    Map<K, Double> costPerItem = new HashMap<>();
+    costs.forEach(cost -> costPerItem.put(key.apply(cost), cost.getAmount()));
+    List<K> keys = costs.stream().map(key).toList();
+
+    double sum = 0;
+    long start = 0;
+    for (int round = 0; round < 2 * ROUNDS; round++) {
+      if (round == ROUNDS) {
+        start = System.nanoTime();
+        sum = 0;
+      }
+      for (K k : keys) {
+        sum += costPerItem.get(k);
+      }
+    }
+    long elapsed = System.nanoTime() - start;
+    assertEquals(costs.stream().mapToDouble(AdditionalCost::getAmount).sum() * ROUNDS, sum);
+    return (double) elapsed / ROUNDS / keys.size();
+  }
+
+  /**
+   * Key with the hash of the previous entity implementation
+   */
+  private record ClassHashedKey(AdditionalCost cost) {
+
+    @Override
+    public int hashCode() {
+      return AdditionalCost.class.hashCode();
+    }
+  }
+}
@@ -0,0 +1,243 @@
+package de.vermity.loadtest;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.vermity.loadtest.PortfolioGenerator.Portfolio;
+import de.vermity.loadtest.PortfolioGenerator.PortfolioSize;
+import de.vermity.persistence.AdditionalCostRepository;
+import de.vermity.persistence.AddressRepository;
+import de.vermity.persistence.BuildingRepository;
+import de.vermity.persistence.FlatRepository;
+import de.vermity.persistence.InvoiceRepository;
+import de.vermity.persistence.MeterRepository;
+import de.vermity.persistence.PersonRepository;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * HTTP load scenario against a generated portfolio. Every virtual user logs in as a random tenant
+ * or landlord and then calls the read endpoints of its role. Throughput and latency percentiles
+ * per endpoint are logged and written to {@code build/reports/load/report.txt}.
+ * <p>
+ * Only runs with {@code gradle loadTest}, sizes are configured with {@code -Dvermity.load.*}, see
+ * {@link PortfolioSize} and the fields below.
+ *
+ * @author Cedric Stumpf
+ */
+@Slf4j
+@Tag("load")
+// Every virtual user logs in from the same address, the login rate limit would reject most of them
+@TestPropertySource(locations = "classpath:application-test.properties",
+    properties = "vermity.admission.enabled=false")
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+class LoadTest {
+
+  private static final int USERS = Integer.getInteger("vermity.load.users", 20);
+  private static final Duration WARMUP = Duration.ofSeconds(
+      Long.getLong("vermity.load.warmupSeconds", 5L));
+  private static final Duration DURATION = Duration.ofSeconds(
+      Long.getLong("vermity.load.durationSeconds", 30L));
+
+  private final HttpClient httpClient = HttpClient.newBuilder()
+      .connectTimeout(Duration.ofSeconds(5)).build();
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  @LocalServerPort
+  private int port;
+  @Autowired
+  private PersonRepository personRepository;
+  @Autowired
+  private AddressRepository addressRepository;
+  @Autowired
+  private BuildingRepository buildingRepository;
+  @Autowired
+  private FlatRepository flatRepository;
+  @Autowired
+  private MeterRepository meterRepository;
+  @Autowired
+  private AdditionalCostRepository additionalCostRepository;
+  @Autowired
+  private InvoiceRepository invoiceRepository;
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+  @Autowired
+  private PasswordEncoder passwordEncoder;
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
+  private Portfolio portfolio;
+
+  @BeforeEach
+  void setUp() {
+    portfolio = new PortfolioGenerator(personRepository, addressRepository, buildingRepository,
+        flatRepository, meterRepository, additionalCostRepository, invoiceRepository, jdbcTemplate,
+        passwordEncoder, transactionTemplate).generate(PortfolioSize.fromSystemProperties());
+  }
+
+  @Test
+  void authEndpointsUnderLoad() throws Exception {
+    log.info("Warm up with {} users for {}", USERS, WARMUP);
+    run(WARMUP, new LatencyRecorder());
+
+    log.info("Measuring with {} users for {}", USERS, DURATION);
+    LatencyRecorder recorder = new LatencyRecorder();
+    run(DURATION, recorder);
+
+    String report = recorder.report(DURATION);
+    log.info("Load test report\n{}", report);
+    Path reportFile = Path.of("build", "reports", "load", "report.txt");
+    Files.createDirectories(reportFile.getParent());
+    Files.writeString(reportFile, report);
+
+    assertTrue(recorder.total() > 0, "No request completed");
+  }
+
+  private void run(Duration duration, LatencyRecorder recorder) {
+    long end = System.nanoTime() + duration.toNanos();
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (int i = 0; i < USERS; i++) {
+        executor.submit(() -> {
+          while (System.nanoTime() < end) {
+            virtualUser(recorder);
+          }
+        });
+      }
+    }
+  }
+
+  private void virtualUser(LatencyRecorder recorder) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    boolean landlord = random.nextInt(10) == 0 || portfolio.tenantEmails().isEmpty();
+    List<String> emails = landlord ? portfolio.landlordEmails() : portfolio.tenantEmails();
+    String email = emails.get(random.nextInt(emails.size()));
+
+    String loginBody = "{\"email\":\"" + email + "\",\"password\":\"" + portfolio.password()
+        + "\"}";
+    HttpResponse<String> login = send(recorder, "POST /login", HttpRequest.newBuilder()
+        .uri(uri("/login")).header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofString(loginBody)));
+    if (login == null || login.statusCode() != 200) {
+      return;
+    }
+    String token;
+    try {
+      token = objectMapper.readTree(login.body()).get("token").asText();
+    } catch (IOException e) {
+      recorder.error("POST /login");
+      return;
+    }
+
+    send(recorder, "GET /auth/getUser", authorized("/auth/getUser", token));
+    if (landlord) {
+      send(recorder, "GET /auth/getAllBuildingsLandlordView",
+          authorized("/auth/getAllBuildingsLandlordView", token));
+      send(recorder, "GET /auth/getAllInvoicesForAllBuildings",
+          authorized("/auth/getAllInvoicesForAllBuildings", token));
+    } else {
+      send(recorder, "GET /auth/getFlat", authorized("/auth/getFlat", token));
+      send(recorder, "GET /auth/getAllInvoicesForFlat",
+          authorized("/auth/getAllInvoicesForFlat", token));
+    }
+  }
+
+  private HttpRequest.Builder authorized(String path, String token) {
+    return HttpRequest.newBuilder().uri(uri(path)).header("Authorization", token).GET();
+  }
+
+  private URI uri(String path) {
+    return URI.create("http://localhost:" + port + path);
+  }
+
+  private HttpResponse<String> send(LatencyRecorder recorder, String name,
+      HttpRequest.Builder request) {
+    long start = System.nanoTime();
+    try {
+      HttpResponse<String> response = httpClient.send(request.timeout(Duration.ofSeconds(30))
+          .build(), HttpResponse.BodyHandlers.ofString());
+      if (response.statusCode() >= 400) {
+        recorder.error(name);
+      } else {
+        recorder.record(name, System.nanoTime() - start);
+      }
+      return response;
+    } catch (IOException e) {
+      recorder.error(name);
+      return null;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    }
+  }
+
+  /**
+   * Collects the latencies of successful requests and the number of failed requests per endpoint
+   */
+  private static class LatencyRecorder {
+
+    private final Map<String, List<Long>> latencies = new TreeMap<>();
+    private final Map<String, AtomicLong> errors = new TreeMap<>();
+
+    synchronized void record(String endpoint, long nanos) {
+      latencies.computeIfAbsent(endpoint, k -> new ArrayList<>()).add(nanos);
+    }
+
+    synchronized void error(String endpoint) {
+      errors.computeIfAbsent(endpoint, k -> new AtomicLong()).incrementAndGet();
+    }
+
+    synchronized long total() {
+      return latencies.values().stream().mapToLong(List::size).sum();
+    }
+
+    synchronized String report(Duration duration) {
+      StringBuilder report = new StringBuilder(String.format(
+          "%-42s %8s %8s %9s %9s %9s %9s %9s%n", "endpoint", "ok", "errors", "req/s", "p50 ms",
+          "p90 ms", "p99 ms", "max ms"));
+      latencies.forEach((endpoint, values) -> {
+        long[] sorted = values.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(sorted);
+        report.append(String.format("%-42s %8d %8d %9.1f %9.1f %9.1f %9.1f %9.1f%n", endpoint,
+            sorted.length, errors.getOrDefault(endpoint, new AtomicLong()).get(),
+            sorted.length / (double) duration.toSeconds(), percentile(sorted, 50),
+            percentile(sorted, 90), percentile(sorted, 99), sorted[sorted.length - 1] / 1e6));
+      });
+      errors.keySet().stream().filter(endpoint -> !latencies.containsKey(endpoint))
+          .forEach(endpoint -> report.append(String.format("%-42s %8d %8d%n", endpoint, 0,
+              errors.get(endpoint).get())));
+      return report.toString();
+    }
+
+    private static double percentile(long[] sorted, int percentile) {
+      int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+      return sorted[Math.max(0, index)] / 1e6;
+    }
+  }
+}
@@ -0,0 +1,159 @@
+package de.vermity.loadtest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.vermity.loadtest.PortfolioGenerator.Portfolio;
+import de.vermity.loadtest.PortfolioGenerator.PortfolioSize;
+import de.vermity.model.dto.LoginDto;
+import de.vermity.persistence.AdditionalCostRepository;
+import de.vermity.persistence.AddressRepository;
+import de.vermity.persistence.BuildingRepository;
+import de.vermity.persistence.FlatRepository;
+import de.vermity.persistence.InvoiceRepository;
+import de.vermity.persistence.MeterRepository;
+import de.vermity.persistence.PersonRepository;
+import de.vermity.service.PersonService;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Login throughput per core. Calls {@link PersonService#loginUser(LoginDto)} with one thread per
+ * core and compares it to the throughput of a bare BCrypt match, a login that verifies the
+ * password once costs about one match. The result is written to
+ * {@code build/reports/load/login-benchmark.txt}.
+ * <p>
+ * Only runs with {@code gradle loadTest}, the duration is configured with
+ * {@code -Dvermity.load.loginSeconds}.
+ *
+ * @author Cedric Stumpf
+ */
+@Slf4j
+@Tag("load")
+@TestPropertySource(locations = "classpath:application-test.properties",
+    properties = "vermity.admission.enabled=false")
+@SpringBootTest
+class LoginBenchmark {
+
+  private static final int CORES = Runtime.getRuntime().availableProcessors();
+  private static final Duration WARMUP = Duration.ofSeconds(
+      Long.getLong("vermity.load.warmupSeconds", 5L));
+  private static final Duration DURATION = Duration.ofSeconds(
+      Long.getLong("vermity.load.loginSeconds", 10L));
+
+  @Autowired
+  private PersonService personService;
+  @Autowired
+  private PersonRepository personRepository;
+  @Autowired
+  private AddressRepository addressRepository;
+  @Autowired
+  private BuildingRepository buildingRepository;
+  @Autowired
+  private FlatRepository flatRepository;
+  @Autowired
+  private MeterRepository meterRepository;
+  @Autowired
+  private AdditionalCostRepository additionalCostRepository;
+  @Autowired
+  private InvoiceRepository invoiceRepository;
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+  @Autowired
+  private PasswordEncoder passwordEncoder;
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
+  @Value("${vermity.security.bcrypt-strength:10}")
+  private int bcryptStrength;
+
+  @Test
+  void loginThroughputPerCore() throws Exception {
+    Portfolio portfolio = new PortfolioGenerator(personRepository, addressRepository,
+        buildingRepository, flatRepository, meterRepository, additionalCostRepository,
+        invoiceRepository, jdbcTemplate, passwordEncoder, transactionTemplate)
+        .generate(new PortfolioSize(10, 1, 5, 1, 1, false, 42L));
+    List<String> emails = new ArrayList<>(portfolio.landlordEmails());
+    emails.addAll(portfolio.tenantEmails());
+    String hash = passwordEncoder.encode(portfolio.password());
+    AtomicLong failedLogins = new AtomicLong();
+
+    Runnable match = () -> passwordEncoder.matches(portfolio.password(), hash);
+    Runnable login = () -> {
+      String email = emails.get(ThreadLocalRandom.current().nextInt(emails.size()));
+      var response = personService.loginUser(new LoginDto(email, portfolio.password()));
+      if (response.getStatusCode() != HttpStatus.OK) {
+        failedLogins.incrementAndGet();
+      }
+    };
+
+    log.info("Warm up on {} cores for {}", CORES, WARMUP);
+    run(WARMUP, match);
+    run(WARMUP, login);
+    failedLogins.set(0);
+
+    log.info("Measuring on {} cores for {}", CORES, DURATION);
+    double matchesPerSecond = run(DURATION, match);
+    double loginsPerSecond = run(DURATION, login);
+
+    String report = String.format("""
+            cores                      %d
+            bcrypt strength            %d
+            bcrypt matches/s           %.1f
+            bcrypt matches/s per core  %.1f
+            logins/s                   %.1f
+            logins/s per core          %.1f
+            bcrypt matches per login   %.2f
+            failed logins              %d
+            """, CORES, bcryptStrength, matchesPerSecond, matchesPerSecond / CORES,
+        loginsPerSecond, loginsPerSecond / CORES, matchesPerSecond / loginsPerSecond,
+        failedLogins.get());
+    log.info("Login benchmark\n{}", report);
+    Path reportFile = Path.of("build", "reports", "load", "login-benchmark.txt");
+    Files.createDirectories(reportFile.getParent());
+    Files.writeString(reportFile, report);
+
+    assertEquals(0, failedLogins.get(), "Logins failed");
+    assertTrue(loginsPerSecond > 0, "No login completed");
+  }
+
+  /**
+   * Run the operation in a loop on one thread per core
+   *
+   * @return Completed operations per second
+   */
+  private static double run(Duration duration, Runnable operation) {
+    AtomicLong completed = new AtomicLong();
+    long start = System.nanoTime();
+    long end = start + duration.toNanos();
+    try (ExecutorService executor = Executors.newFixedThreadPool(CORES)) {
+      for (int i = 0; i < CORES; i++) {
+        executor.submit(() -> {
+          while (System.nanoTime() < end) {
+            operation.run();
+            completed.incrementAndGet();
+          }
+        });
+      }
+    }
+    return completed.get() / ((System.nanoTime() - start) / 1e9);
+  }
+}
@@ -0,0 +1,152 @@
+package de.vermity.loadtest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import de.vermity.loadtest.PortfolioGenerator.Portfolio;
+import de.vermity.loadtest.PortfolioGenerator.PortfolioSize;
+import de.vermity.model.dto.AddressDto;
+import de.vermity.model.dto.FlatDto;
+import de.vermity.model.dto.MeterDto;
+import de.vermity.model.dto.ModifyBuildingDto;
+import de.vermity.model.entity.AdditionalCost;
+import de.vermity.model.entity.Building;
+import de.vermity.persistence.AdditionalCostRepository;
+import de.vermity.persistence.AddressRepository;
+import de.vermity.persistence.BuildingRepository;
+import de.vermity.persistence.FlatRepository;
+import de.vermity.persistence.InvoiceRepository;
+import de.vermity.persistence.MeterRepository;
+import de.vermity.persistence.PersonRepository;
+import de.vermity.security.JWTGenerator;
+import de.vermity.service.BuildingService;
+import jakarta.persistence.EntityManagerFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Time and JDBC statements of {@link BuildingService#modifyBuilding(ModifyBuildingDto, String)}
+ * for a building with {@link #FLATS} flats, each request enters a new reading for every meter and
+ * changes the rent of every flat. The result is written to
+ * {@code build/reports/load/modify-building-benchmark.txt}.
+ * <p>
+ * Only runs with {@code gradle loadTest}.
+ *
+ * @author Cedric Stumpf
+ */
+@Slf4j
+@Tag("load")
+@TestPropertySource(locations = "classpath:application-test.properties",
+    properties = "spring.datasource.url=jdbc:h2:mem:modify-building;MODE=MariaDB")
+@SpringBootTest
+class ModifyBuildingBenchmark {
+
+  private static final int FLATS = 300;
+  private static final int ROUNDS = 10;
+
+  @Autowired
+  private BuildingService buildingService;
+  @Autowired
+  private JWTGenerator jwtGenerator;
+  @Autowired
+  private EntityManagerFactory entityManagerFactory;
+  @Autowired
+  private PersonRepository personRepository;
+  @Autowired
+  private AddressRepository addressRepository;
+  @Autowired
+  private BuildingRepository buildingRepository;
+  @Autowired
+  private FlatRepository flatRepository;
+  @Autowired
+  private MeterRepository meterRepository;
+  @Autowired
+  private AdditionalCostRepository additionalCostRepository;
+  @Autowired
+  private InvoiceRepository invoiceRepository;
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+  @Autowired
+  private PasswordEncoder passwordEncoder;
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
+  @Test
+  void modifyLargeBuilding() throws Exception {
+    Portfolio portfolio = new PortfolioGenerator(personRepository, addressRepository,
+        buildingRepository, flatRepository, meterRepository, additionalCostRepository,
+        invoiceRepository, jdbcTemplate, passwordEncoder, transactionTemplate)
+        .generate(new PortfolioSize(1, 1, FLATS, 2, 1, false, 42L));
+    String token = "Bearer " + jwtGenerator.generateAccessToken(
+        portfolio.landlordEmails().getFirst());
+    Integer buildingId = jdbcTemplate.queryForObject("select min(id) from building",
+        Integer.class);
+    Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    long readingsBefore = countReadings();
+
+    List<Double> millis = new ArrayList<>();
+    List<Long> statements = new ArrayList<>();
+    for (int round = 1; round <= ROUNDS; round++) {
+      ModifyBuildingDto request = request(buildingId, round);
+      long statementsBefore = statistics.getPrepareStatementCount();
+      long start = System.nanoTime();
+      assertEquals(HttpStatus.OK, buildingService.modifyBuilding(request, token).getStatusCode());
+      millis.add((System.nanoTime() - start) / 1e6);
+      statements.add(statistics.getPrepareStatementCount() - statementsBefore);
+    }
+    assertEquals((long) ROUNDS * FLATS * 2, countReadings() - readingsBefore);
+
+    // The first round warms up the JIT and the caches
+    double averageMillis = millis.stream().skip(1).mapToDouble(Double::doubleValue).average()
+        .orElseThrow();
+    double averageStatements = statements.stream().skip(1).mapToLong(Long::longValue).average()
+        .orElseThrow();
+    String report = String.format("""
+            flats   meters   ms/request   prepared statements/request
+            %5d   %6d   %10.1f   %27.0f
+            """, FLATS, FLATS * 2, averageMillis, averageStatements);
+    log.info("Modify building benchmark\n{}", report);
+    Path reportFile = Path.of("build", "reports", "load", "modify-building-benchmark.txt");
+    Files.createDirectories(reportFile.getParent());
+    Files.writeString(reportFile, report);
+  }
+
+  private long countReadings() {
+    return jdbcTemplate.queryForObject("select count(*) from update_tbl", Long.class);
+  }
+
+  /**
+   * Request with the saved state of the building, a higher reading for every meter and another
+   * rent for every flat
+   */
+  private ModifyBuildingDto request(Integer buildingId, int round) {
+    return transactionTemplate.execute(status -> {
+      Building building = buildingRepository.findById(buildingId).orElseThrow();
+      List<FlatDto> flats = building.getFlatList().stream().map(flat -> new FlatDto(flat.getId(),
+          flat.getMeterList().stream().map(meter -> new MeterDto(meter.getId(),
+              meter.getReading() + 10, meter.getMeterNr(), meter.getType(),
+              meter.getCostPerUnit(), meter.getBaseCost())).toList(),
+          flat.getLocation(), flat.getRooms(), flat.getSquareMeter(), flat.getResidents(),
+          List.copyOf(flat.getAdditionList()), flat.getColdRent() + round,
+          flat.getWarmRent() + round, List.of(), flat.getVersion())).toList();
+      List<AdditionalCost> operatingCosts = List.copyOf(building.getOperatingCosts());
+      return new ModifyBuildingDto(buildingId, flats, operatingCosts,
+          new AddressDto(building.getAddress().getStreet(), building.getAddress().getZip(),
+              building.getAddress().getCity(), building.getAddress().getCountry(),
+              building.getAddress().getState()), building.getVersion());
+    });
+  }
+}
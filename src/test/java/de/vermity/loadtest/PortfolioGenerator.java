@@ -0,0 +1,213 @@
+package de.vermity.loadtest;
+
+import de.vermity.model.entity.AdditionalCost;
+import de.vermity.model.entity.Address;
+import de.vermity.model.entity.Building;
+import de.vermity.model.entity.Flat;
+import de.vermity.model.entity.Invoice;
+import de.vermity.model.entity.Meter;
+import de.vermity.model.entity.Person;
+import de.vermity.persistence.AdditionalCostRepository;
+import de.vermity.persistence.AddressRepository;
+import de.vermity.persistence.BuildingRepository;
+import de.vermity.persistence.FlatRepository;
+import de.vermity.persistence.InvoiceRepository;
+import de.vermity.persistence.MeterRepository;
+import de.vermity.persistence.PersonRepository;
+import de.vermity.util.enums.Distribution;
+import de.vermity.util.enums.Frequency;
+import de.vermity.util.enums.Gender;
+import de.vermity.util.enums.MeterType;
+import de.vermity.util.enums.Role;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Fills the configured database with a synthetic portfolio of landlords, buildings, flats, meters,
+ * monthly meter readings and invoices. Readings are inserted with JDBC batches, because they need
+ * a creation date in the past.
+ *
+ * @author Cedric Stumpf
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class PortfolioGenerator {
+
+  public static final String PASSWORD = "LoadTestPassword123!";
+  private static final String PDF_PLACEHOLDER = Base64.getEncoder()
+      .encodeToString("%PDF-1.4 load test placeholder".getBytes());
+
+  private final PersonRepository personRepository;
+  private final AddressRepository addressRepository;
+  private final BuildingRepository buildingRepository;
+  private final FlatRepository flatRepository;
+  private final MeterRepository meterRepository;
+  private final AdditionalCostRepository additionalCostRepository;
+  private final InvoiceRepository invoiceRepository;
+  private final JdbcTemplate jdbcTemplate;
+  private final PasswordEncoder passwordEncoder;
+  private final TransactionTemplate transactionTemplate;
+
+  /**
+   * Generate a portfolio
+   *
+   * @param size Size of the portfolio
+   * @return Generated logins
+   */
+  public Portfolio generate(PortfolioSize size) {
+    log.info("Generating portfolio {}", size);
+    long start = System.nanoTime();
+    // BCrypt is expensive, every generated person shares the same hash
+    String passwordHash = passwordEncoder.encode(PASSWORD);
+    Random random = new Random(size.seed());
+    Address emptyAddress = addressRepository.findByStateAndCityAndStreetAndZipAndCountry("", "",
+            "", 0, "")
+        .orElseGet(() -> addressRepository.saveAndFlush(Address.builder().build()));
+
+    List<String> landlordEmails = new ArrayList<>();
+    List<String> tenantEmails = new ArrayList<>();
+    for (int l = 0; l < size.landlords(); l++) {
+      int landlordNr = l;
+      transactionTemplate.executeWithoutResult(status -> {
+        Person landlord = personRepository.save(
+            person("landlord" + landlordNr + "@load.test", Role.LANDLORD, passwordHash,
+                emptyAddress));
+        landlordEmails.add(landlord.getEmail());
+        for (int b = 0; b < size.buildingsPerLandlord(); b++) {
+          generateBuilding(size, landlord, landlordNr, b, passwordHash, emptyAddress, random,
+              tenantEmails);
+        }
+      });
+    }
+    log.info("Portfolio generated in {} ms", (System.nanoTime() - start) / 1_000_000);
+    return new Portfolio(landlordEmails, tenantEmails, PASSWORD);
+  }
+
+  private void generateBuilding(PortfolioSize size, Person landlord, int landlordNr,
+      int buildingNr, String passwordHash, Address emptyAddress, Random random,
+      List<String> tenantEmails) {
+    String prefix = landlordNr + "-" + buildingNr;
+    List<Flat> flats = new ArrayList<>();
+    for (int f = 0; f < size.flatsPerBuilding(); f++) {
+      Person tenant = personRepository.save(
+          person("tenant" + prefix + "-" + f + "@load.test", Role.TENANT, passwordHash,
+              emptyAddress));
+      tenantEmails.add(tenant.getEmail());
+
+      List<Meter> meters = new ArrayList<>();
+      for (int m = 0; m < size.metersPerFlat(); m++) {
+        MeterType type = MeterType.values()[m % MeterType.values().length];
+        meters.add(Meter.builder().meterNr("LT" + prefix + "-" + f + "-" + m).type(type)
+            .costPerUnit(0.1 + random.nextDouble()).baseCost(5 + random.nextInt(20)).build());
+      }
+      meters = meterRepository.saveAll(meters);
+      meters.forEach(meter -> generateReadings(size, meter, tenant, random));
+
+      flats.add(flatRepository.save(Flat.builder().tenant(tenant).location(f + ". OG")
+          .rooms(1 + random.nextInt(5)).squareMeter(30 + random.nextInt(120))
+          .residents(1 + random.nextInt(4)).coldRent(400 + random.nextInt(800))
+          .warmRent(600 + random.nextInt(1000)).meterList(meters)
+          .additionList(additionalCostRepository.saveAll(List.of(
+              AdditionalCost.builder().name("Garage").description("Stellplatz").amount(30)
+                  .distribution(Distribution.NONE).frequency(Frequency.MONTHLY).build())))
+          .build()));
+    }
+
+    Building building = buildingRepository.save(Building.builder().landlord(landlord)
+        .flatList(flats)
+        .address(addressRepository.save(Address.builder().street("Lastweg " + prefix)
+            .zip(10000 + landlordNr).city("Lastdorf").state("Testland").country("DE").build()))
+        .operatingCosts(additionalCostRepository.saveAll(List.of(
+            AdditionalCost.builder().name("Garten").description("Gartenpflege").amount(25)
+                .distribution(Distribution.FLAT).frequency(Frequency.MONTHLY).build(),
+            AdditionalCost.builder().name("Müll").description("Müllabfuhr").amount(300)
+                .distribution(Distribution.PERSON).frequency(Frequency.YEARLY).build())))
+        .build());
+    flats.forEach(flat -> flat.setBuilding(building));
+
+    if (size.invoices()) {
+      int currentYear = LocalDate.now().getYear();
+      for (Flat flat : flats) {
+        for (int year = currentYear - size.years(); year < currentYear; year++) {
+          flat.getInvoiceList().add(invoiceRepository.save(Invoice.builder().building(building)
+              .flat(flat).invoiceForYear(year).totalColdRent(flat.getColdRent() * 12)
+              .totalCost(flat.getWarmRent() * 12).totalWarmRentPaid(flat.getWarmRent() * 12)
+              .pdf(PDF_PLACEHOLDER).build()));
+        }
+      }
+    }
+    flatRepository.saveAll(flats);
+  }
+
+  /**
+   * Insert one reading per month for the configured years
+   */
+  private void generateReadings(PortfolioSize size, Meter meter, Person tenant, Random random) {
+    LocalDateTime now = LocalDateTime.now();
+    int months = size.years() * 12;
+    List<Object[]> rows = new ArrayList<>(months + 1);
+    int reading = random.nextInt(1000);
+    for (int month = months; month >= 0; month--) {
+      rows.add(new Object[]{Timestamp.valueOf(now.minusMonths(month)), reading, meter.getId(),
+          tenant.getId()});
+      reading += 50 + random.nextInt(200);
+    }
+    jdbcTemplate.batchUpdate(
+        "insert into update_tbl (created_at, reading, meter_id, person_id) values (?, ?, ?, ?)",
+        rows);
+  }
+
+  private static Person person(String email, Role role, String passwordHash, Address address) {
+    return Person.builder().email(email).firstName("Load").lastName("Test").gender(Gender.DIVERSE)
+        .phoneNumber("+490000000").birthDate(LocalDate.of(1980, 1, 1)).password(passwordHash)
+        .address(address).roleList(new ArrayList<>(List.of(role))).build();
+  }
+
+  /**
+   * Size of a generated portfolio, read from the system properties {@code vermity.load.*}
+   *
+   * @param landlords            Number of landlords
+   * @param buildingsPerLandlord Buildings of each landlord
+   * @param flatsPerBuilding     Flats of each building, every flat gets a tenant
+   * @param metersPerFlat        Meters of each flat
+   * @param years                Years of monthly readings and yearly invoices
+   * @param invoices             Whether invoices are generated
+   * @param seed                 Seed of the random values
+   */
+  public record PortfolioSize(int landlords, int buildingsPerLandlord, int flatsPerBuilding,
+                              int metersPerFlat, int years, boolean invoices, long seed) {
+
+    public static PortfolioSize fromSystemProperties() {
+      return new PortfolioSize(
+          Integer.getInteger("vermity.load.landlords", 5),
+          Integer.getInteger("vermity.load.buildingsPerLandlord", 4),
+          Integer.getInteger("vermity.load.flatsPerBuilding", 10),
+          Integer.getInteger("vermity.load.metersPerFlat", 3),
+          Integer.getInteger("vermity.load.years", 3),
+          Boolean.parseBoolean(System.getProperty("vermity.load.invoices", "true")),
+          Long.getLong("vermity.load.seed", 42L));
+    }
+  }
+
+  /**
+   * Logins of a generated portfolio
+   *
+   * @param landlordEmails Emails of the landlords
+   * @param tenantEmails   Emails of the tenants
+   * @param password       Password of every generated person
+   */
+  public record Portfolio(List<String> landlordEmails, List<String> tenantEmails,
+                          String password) {
+
+  }
+}
@@ -0,0 +1,221 @@
+package de.vermity.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.vermity.loadtest.PortfolioGenerator;
+import de.vermity.loadtest.PortfolioGenerator.Portfolio;
+import de.vermity.loadtest.PortfolioGenerator.PortfolioSize;
+import de.vermity.model.dto.GetInvoiceDto;
+import de.vermity.model.dto.MeterReadingRangeDto;
+import de.vermity.model.entity.Meter;
+import de.vermity.security.JWTGenerator;
+import de.vermity.service.ArchiveService;
+import de.vermity.service.InvoiceService;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Archives a generated portfolio with 5 years of readings and invoices and checks that invoices
+ * and reading ranges read from the archive match the ones of the hot tables before.
+ *
+ * @author Cedric Stumpf
+ */
+@SpringBootTest
+@TestInstance(Lifecycle.PER_CLASS)
+@TestPropertySource(locations = "classpath:application-test.properties", properties = {
+    "spring.datasource.url=jdbc:h2:mem:archive;MODE=MariaDB",
+    "vermity.archive.hot-years=2",
+    "vermity.archive.batch-size=3"})
+class ArchiveRepositoryTest {
+
+  private static final int FLATS = 2;
+  private static final int METERS = 2;
+  private static final int YEARS = 5;
+  private static final int HOT_YEARS = 2;
+
+  @Autowired
+  private ArchiveRepository archiveRepository;
+  @Autowired
+  private ArchiveService archiveService;
+  @Autowired
+  private BulkDeletion bulkDeletion;
+  @Autowired
+  private InvoiceService invoiceService;
+  @Autowired
+  private JWTGenerator jwtGenerator;
+  @Autowired
+  private PersonRepository personRepository;
+  @Autowired
+  private AddressRepository addressRepository;
+  @Autowired
+  private BuildingRepository buildingRepository;
+  @Autowired
+  private FlatRepository flatRepository;
+  @Autowired
+  private MeterRepository meterRepository;
+  @Autowired
+  private AdditionalCostRepository additionalCostRepository;
+  @Autowired
+  private InvoiceRepository invoiceRepository;
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+  @Autowired
+  private PasswordEncoder passwordEncoder;
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
+  private int firstHotYear;
+  private Integer buildingId;
+  private Integer archivedBuildingId;
+  private Integer deletedBuildingId;
+  private String landlordEmail;
+  private List<Integer> meterIds;
+  private List<Integer> currentReadings;
+  private long readings;
+  private List<MeterReadingRangeDto> ranges;
+
+  @BeforeAll
+  void generateAndArchivePortfolio() {
+    Portfolio portfolio = new PortfolioGenerator(personRepository, addressRepository,
+        buildingRepository, flatRepository, meterRepository, additionalCostRepository,
+        invoiceRepository, jdbcTemplate, passwordEncoder, transactionTemplate)
+        .generate(new PortfolioSize(1, 3, FLATS, METERS, YEARS, true, 13L));
+    landlordEmail = portfolio.landlordEmails().getFirst();
+    List<Integer> buildingIds = jdbcTemplate.queryForList("select b.id from building b"
+            + " join person p on p.id = b.landlord_id where p.email = ? order by b.id",
+        Integer.class, landlordEmail);
+    buildingId = buildingIds.getFirst();
+    archivedBuildingId = buildingIds.get(1);
+    deletedBuildingId = buildingIds.getLast();
+    meterIds = meterIdsOf(buildingId);
+    currentReadings = currentReadings();
+    readings = countReadings(buildingId);
+    firstHotYear = LocalDate.now().getYear() - HOT_YEARS + 1;
+    ranges = readingRanges(LocalDateTime.now().minusYears(YEARS), LocalDateTime.now());
+
+    archiveService.archive();
+  }
+
+  @Test
+  void archive_movesInvoicesBeforeTheHorizon() {
+    assertEquals(0, count("select count(*) from invoice where invoice_for_year < ?",
+        firstHotYear));
+    assertEquals(FLATS, count("select count(*) from invoice where building_id = ?", buildingId));
+    assertEquals(0, count("select count(*) from flat_invoice_list fil join invoice_archive a"
+        + " on a.id = fil.invoice_list_id"));
+    for (int year = firstHotYear - YEARS + 1; year < firstHotYear; year++) {
+      assertEquals(FLATS, archiveService.findInvoiceIds(buildingId, year).size());
+    }
+    assertTrue(archiveService.findInvoiceIds(buildingId, firstHotYear).isEmpty());
+  }
+
+  @Test
+  void archivedInvoices_keepTheirPdf() {
+    byte[] placeholder = Base64.getDecoder().decode(jdbcTemplate.queryForObject(
+        "select pdf from invoice where building_id = ? limit 1", String.class, buildingId));
+    List<Integer> flatIds = jdbcTemplate.queryForList("select id from flat where building_id = ?",
+        Integer.class, buildingId);
+
+    List<GetInvoiceDto> invoices = archiveService.findInvoicesOfFlats(flatIds);
+
+    assertEquals(FLATS * (YEARS - 1), invoices.size());
+    for (GetInvoiceDto invoice : invoices) {
+      assertArrayEquals(placeholder, Base64.getDecoder().decode(invoice.pdf()));
+      assertArrayEquals(placeholder, archiveService.findInvoicePdf(invoice.invoiceId())
+          .orElseThrow());
+    }
+  }
+
+  @Test
+  void archive_keepsTheLatestReadingOfEveryMeter() {
+    LocalDateTime horizon = LocalDate.of(firstHotYear, 1, 1).atStartOfDay();
+
+    assertEquals(currentReadings, currentReadings());
+    assertEquals(0, count("select count(*) from update_tbl u join flat_meter_list"
+        + " fml on fml.meter_list_id = u.meter_id join flat f on f.id = fml.flat_id"
+        + " where f.building_id = ? and u.created_at < ?", buildingId, horizon));
+    assertEquals(readings, countReadings(buildingId) + count("select sum(reading_count)"
+        + " from reading_archive a join flat_meter_list fml on fml.meter_list_id = a.meter_id"
+        + " join flat f on f.id = fml.flat_id where f.building_id = ?", buildingId));
+    assertTrue(archiveRepository.findMeterIdsToArchive(horizon, 10).isEmpty());
+  }
+
+  @Test
+  void findReadingRanges_combinesHotAndArchivedReadings() {
+    assertEquals(ranges, readingRanges(LocalDateTime.now().minusYears(YEARS),
+        LocalDateTime.now()));
+  }
+
+  @Test
+  void getAllInvoicesForAllBuildings_fallsBackToArchivedInvoices() {
+    List<Integer> hotInvoiceIds = jdbcTemplate.queryForList(
+        "select id from invoice where building_id = ?", Integer.class, archivedBuildingId);
+    transactionTemplate.executeWithoutResult(status ->
+        archiveRepository.archiveInvoices(hotInvoiceIds));
+
+    var response = invoiceService.getAllInvoicesForAllBuildings(
+        "Bearer " + jwtGenerator.generateAccessToken(landlordEmail));
+
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    List<Integer> invoiceIds = ((List<?>) response.getBody()).stream()
+        .map(GetInvoiceDto.class::cast)
+        .filter(invoice -> invoice.buildingId() == archivedBuildingId)
+        .map(GetInvoiceDto::invoiceId).sorted().toList();
+    assertEquals(hotInvoiceIds.stream().sorted().toList(), invoiceIds);
+  }
+
+  @Test
+  void deleteBuildings_deletesArchivedRows() {
+    List<Integer> deletedMeterIds = meterIdsOf(deletedBuildingId);
+
+    transactionTemplate.executeWithoutResult(status ->
+        bulkDeletion.deleteBuildings(List.of(deletedBuildingId)));
+
+    assertEquals(0, count("select count(*) from invoice_archive where building_id = ?",
+        deletedBuildingId));
+    assertTrue(archiveRepository.findReadingRanges(deletedMeterIds,
+        LocalDateTime.now().minusYears(YEARS), LocalDateTime.now()).isEmpty());
+  }
+
+  private List<MeterReadingRangeDto> readingRanges(LocalDateTime start, LocalDateTime end) {
+    return archiveService.findReadingRanges(meterIds, start, end).stream()
+        .sorted(Comparator.comparing(MeterReadingRangeDto::meterId)).toList();
+  }
+
+  private List<Integer> meterIdsOf(Integer building) {
+    return jdbcTemplate.queryForList("select fml.meter_list_id from flat_meter_list fml"
+            + " join flat f on f.id = fml.flat_id where f.building_id = ? order by 1",
+        Integer.class, building);
+  }
+
+  private List<Integer> currentReadings() {
+    return meterRepository.findAllById(meterIds).stream()
+        .sorted(Comparator.comparing(Meter::getId)).map(Meter::getReading).toList();
+  }
+
+  private long countReadings(Integer building) {
+    return count("select count(*) from update_tbl u join flat_meter_list fml"
+        + " on fml.meter_list_id = u.meter_id join flat f on f.id = fml.flat_id"
+        + " where f.building_id = ?", building);
+  }
+
+  private long count(String sql, Object... parameters) {
+    return jdbcTemplate.queryForObject(sql, Long.class, parameters);
+  }
+}
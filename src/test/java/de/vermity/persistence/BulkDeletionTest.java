@@ -0,0 +1,194 @@
+package de.vermity.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.vermity.loadtest.PortfolioGenerator;
+import de.vermity.loadtest.PortfolioGenerator.Portfolio;
+import de.vermity.loadtest.PortfolioGenerator.PortfolioSize;
+import de.vermity.service.DeletionService;
+import jakarta.persistence.EntityManagerFactory;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Deletes buildings and persons of a generated portfolio with 10 years of readings and invoices
+ * and checks that every dependent row is deleted without loading any entity.
+ *
+ * @author Cedric Stumpf
+ */
+@SpringBootTest
+@TestInstance(Lifecycle.PER_CLASS)
+@TestPropertySource(locations = "classpath:application-test.properties", properties =
+    "spring.datasource.url=jdbc:h2:mem:bulk-deletion;MODE=MariaDB")
+class BulkDeletionTest {
+
+  private static final int FLATS = 2;
+  private static final int METERS = 2;
+  private static final int YEARS = 10;
+
+  @Autowired
+  private BulkDeletion bulkDeletion;
+  @Autowired
+  private DeletionService deletionService;
+  @Autowired
+  private EntityManagerFactory entityManagerFactory;
+  @Autowired
+  private PersonRepository personRepository;
+  @Autowired
+  private AddressRepository addressRepository;
+  @Autowired
+  private BuildingRepository buildingRepository;
+  @Autowired
+  private FlatRepository flatRepository;
+  @Autowired
+  private MeterRepository meterRepository;
+  @Autowired
+  private AdditionalCostRepository additionalCostRepository;
+  @Autowired
+  private InvoiceRepository invoiceRepository;
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+  @Autowired
+  private PasswordEncoder passwordEncoder;
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
+  private Portfolio portfolio;
+
+  @BeforeAll
+  void generatePortfolio() {
+    portfolio = new PortfolioGenerator(personRepository, addressRepository, buildingRepository,
+        flatRepository, meterRepository, additionalCostRepository, invoiceRepository, jdbcTemplate,
+        passwordEncoder, transactionTemplate)
+        .generate(new PortfolioSize(2, 2, FLATS, METERS, YEARS, true, 11L));
+  }
+
+  @Test
+  void deleteBuildings_deletesDependentRowsWithoutLoadingThem() {
+    List<Integer> buildingIds = buildingIdsOf(0);
+    Integer buildingId = buildingIds.getFirst();
+    Integer otherBuildingId = buildingIds.getLast();
+    // Element collections of the invoices reference meters and costs of the building
+    jdbcTemplate.update("insert into invoice_meter_difference"
+        + " (invoice_id, meter_difference_key, meter_difference)"
+        + " select min(i.id), min(fml.meter_list_id), 100 from invoice i"
+        + " join flat f on f.id = i.flat_id join flat_meter_list fml on fml.flat_id = f.id"
+        + " where i.building_id = ?", buildingId);
+    long otherReadings = countReadings(otherBuildingId);
+    Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    long entityLoads = statistics.getEntityLoadCount();
+    long collectionLoads = statistics.getCollectionLoadCount();
+
+    transactionTemplate.executeWithoutResult(status ->
+        bulkDeletion.deleteBuildings(List.of(buildingId)));
+
+    assertEquals(entityLoads, statistics.getEntityLoadCount());
+    assertEquals(collectionLoads, statistics.getCollectionLoadCount());
+    assertEquals(0, count("select count(*) from building where id = ?", buildingId));
+    assertEquals(0, count("select count(*) from flat where building_id = ?", buildingId));
+    assertEquals(0, count("select count(*) from invoice where building_id = ?", buildingId));
+    assertEquals(0, count("select count(*) from invoice_meter_difference"));
+    assertEquals(otherReadings, countReadings(otherBuildingId));
+    assertEquals((long) FLATS * METERS * (YEARS * 12 + 1), otherReadings);
+  }
+
+  @Test
+  void detachedCost_isKeptWhileInvoicedAndDeletedWithTheBuilding() {
+    Integer buildingId = buildingIdsOf(1).getLast();
+    Integer costId = jdbcTemplate.queryForObject("select min(operating_costs_id)"
+        + " from building_operating_costs where building_id = ?", Integer.class, buildingId);
+    jdbcTemplate.update("insert into invoice_operating_cost_per_distribution_key"
+        + " (invoice_id, operating_cost_per_distribution_key_key,"
+        + " operating_cost_per_distribution_key) select min(id), ?, 25 from invoice"
+        + " where building_id = ?", costId, buildingId);
+    jdbcTemplate.update("delete from building_operating_costs where operating_costs_id = ?",
+        costId);
+
+    assertEquals(0, transactionTemplate.execute(status ->
+        bulkDeletion.deleteUnreferencedCosts(List.of(costId))));
+    assertEquals(1, count("select count(*) from additional_cost where id = ?", costId));
+
+    transactionTemplate.executeWithoutResult(status ->
+        bulkDeletion.deleteBuildings(List.of(buildingId)));
+
+    assertEquals(0, count("select count(*) from additional_cost where id = ?", costId));
+  }
+
+  @Test
+  void claimDeletedBuilding_claimsOnlySoftDeletedBuildings() {
+    Integer buildingId = buildingIdsOf(0).getLast();
+
+    assertFalse(transactionTemplate.execute(status ->
+        bulkDeletion.claimDeletedBuilding(buildingId)));
+  }
+
+  @Test
+  void softDeletedBuilding_isHiddenUntilPurged() {
+    Integer buildingId = buildingIdsOf(1).getFirst();
+
+    deletionService.deleteBuilding(buildingId);
+
+    assertTrue(buildingRepository.findById(buildingId).isEmpty());
+    assertNotNull(jdbcTemplate.queryForObject("select deleted_at from building where id = ?",
+        LocalDateTime.class, buildingId));
+    assertEquals(0, count("select count(*) from flat where building_id = ?"
+        + " and tenant_id is not null", buildingId));
+
+    deletionService.purge();
+
+    assertEquals(0, count("select count(*) from building where id = ?", buildingId));
+    assertEquals(0, count("select count(*) from flat where building_id = ?", buildingId));
+  }
+
+  @Test
+  void deletePerson_keepsReadingsOfTheirMeters() {
+    String email = portfolio.tenantEmails().getLast();
+    Integer tenantId = jdbcTemplate.queryForObject("select id from person where email = ?",
+        Integer.class, email);
+    Integer buildingId = jdbcTemplate.queryForObject(
+        "select building_id from flat where tenant_id = ?", Integer.class, tenantId);
+    long readings = countReadings(buildingId);
+
+    deletionService.deletePerson(tenantId);
+
+    assertTrue(personRepository.findByEmail(email).isEmpty());
+    assertEquals(0, count("select count(*) from flat where tenant_id = ?", tenantId));
+
+    deletionService.purge();
+
+    assertFalse(personRepository.existsById(tenantId));
+    assertEquals(0, count("select count(*) from update_tbl where person_id = ?", tenantId));
+    assertEquals(readings, countReadings(buildingId));
+  }
+
+  private List<Integer> buildingIdsOf(int landlord) {
+    return jdbcTemplate.queryForList("select b.id from building b join person p"
+            + " on p.id = b.landlord_id where p.email = ? order by b.id", Integer.class,
+        portfolio.landlordEmails().get(landlord));
+  }
+
+  private long countReadings(Integer buildingId) {
+    return count("select count(*) from update_tbl u join flat_meter_list fml"
+        + " on fml.meter_list_id = u.meter_id join flat f on f.id = fml.flat_id"
+        + " where f.building_id = ?", buildingId);
+  }
+
+  private long count(String sql, Object... parameters) {
+    return jdbcTemplate.queryForObject(sql, Long.class, parameters);
+  }
+}
@@ -0,0 +1,207 @@
+package de.vermity.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.vermity.loadtest.PortfolioGenerator;
+import de.vermity.loadtest.PortfolioGenerator.PortfolioSize;
+import de.vermity.model.entity.Flat;
+import de.vermity.model.entity.Invoice;
+import de.vermity.model.entity.Meter;
+import de.vermity.model.dto.FlatDto;
+import de.vermity.persistence.RepositoryIndexUsageTest.CapturingStatementInspector;
+import de.vermity.security.JWTGenerator;
+import de.vermity.service.BuildingService;
+import de.vermity.service.FlatService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.PersistentAttributeInterceptable;
+import org.hibernate.engine.spi.SelfDirtinessTracker;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Checks that the entities are enhanced at build time: invoices are loaded without their PDF and
+ * a flush only writes the entities whose attributes were set, the views select the PDFs of all
+ * their invoices at once. Logs the flush time with the whole portfolio loaded and the bytes of PDF
+ * that are not read when listing invoices.
+ *
+ * @author Cedric Stumpf
+ */
+@Slf4j
+@SpringBootTest
+@TestInstance(Lifecycle.PER_CLASS)
+@TestPropertySource(locations = "classpath:application-test.properties", properties = {
+    "spring.datasource.url=jdbc:h2:mem:enhancement;MODE=MariaDB",
+    "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "de.vermity.persistence.RepositoryIndexUsageTest$CapturingStatementInspector"})
+@ImportRuntimeHints(RepositoryIndexUsageTest.InspectorHints.class)
+class BytecodeEnhancementTest {
+
+  private static final int FLUSHES = 50;
+
+  @PersistenceContext
+  private EntityManager entityManager;
+  @Autowired
+  private PersonRepository personRepository;
+  @Autowired
+  private AddressRepository addressRepository;
+  @Autowired
+  private BuildingRepository buildingRepository;
+  @Autowired
+  private FlatRepository flatRepository;
+  @Autowired
+  private MeterRepository meterRepository;
+  @Autowired
+  private AdditionalCostRepository additionalCostRepository;
+  @Autowired
+  private InvoiceRepository invoiceRepository;
+  @Autowired
+  private FlatService flatService;
+  @Autowired
+  private BuildingService buildingService;
+  @Autowired
+  private JWTGenerator jwtGenerator;
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+  @Autowired
+  private PasswordEncoder passwordEncoder;
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
+  @BeforeAll
+  void generatePortfolio() {
+    new PortfolioGenerator(personRepository, addressRepository, buildingRepository,
+        flatRepository, meterRepository, additionalCostRepository, invoiceRepository, jdbcTemplate,
+        passwordEncoder, transactionTemplate)
+        .generate(new PortfolioSize(2, 2, 10, 2, 2, true, 42L));
+  }
+
+  @Test
+  void entitiesAreEnhanced() {
+    assertTrue(PersistentAttributeInterceptable.class.isAssignableFrom(Invoice.class));
+    assertTrue(SelfDirtinessTracker.class.isAssignableFrom(Flat.class));
+    assertTrue(SelfDirtinessTracker.class.isAssignableFrom(Meter.class));
+  }
+
+  @Test
+  void invoicesAreLoadedWithoutPdf() {
+    long pdfBytes = jdbcTemplate.queryForObject("select sum(length(pdf)) from invoice",
+        Long.class);
+
+    transactionTemplate.executeWithoutResult(status -> {
+      CapturingStatementInspector.STATEMENTS.clear();
+      List<Invoice> invoices = entityManager
+          .createQuery("select i from Invoice i", Invoice.class).getResultList();
+
+      assertFalse(invoices.isEmpty());
+      invoices.forEach(invoice -> assertFalse(Hibernate.isPropertyInitialized(invoice, "pdf")));
+      assertTrue(CapturingStatementInspector.STATEMENTS.stream()
+          .noneMatch(sql -> sql.toLowerCase().contains("pdf")), "PDF selected with the invoice");
+      log.info("Loaded {} invoices without {} bytes of PDF", invoices.size(), pdfBytes);
+
+      Invoice invoice = invoices.getFirst();
+      assertFalse(invoice.getPdf().isEmpty());
+      assertTrue(Hibernate.isPropertyInitialized(invoice, "pdf"));
+    });
+  }
+
+  @Test
+  void viewsSelectThePdfsOnce() {
+    Map<String, Object> flat = jdbcTemplate.queryForMap("""
+        select f.id flat_id, t.email tenant, l.email landlord from flat f
+        join person t on t.id = f.tenant_id join building b on b.id = f.building_id
+        join person l on l.id = b.landlord_id order by f.id limit 1""");
+    int flatId = ((Number) flat.get("flat_id")).intValue();
+    String tenantToken = "Bearer " + jwtGenerator.generateAccessToken((String) flat.get("tenant"));
+    String landlordToken = "Bearer "
+        + jwtGenerator.generateAccessToken((String) flat.get("landlord"));
+    Supplier<Object> tenantView = () -> flatService.getFlat(tenantToken).getBody();
+    Supplier<Object> landlordView = () -> buildingService.getAllBuildingsLandlordView(landlordToken)
+        .getBody();
+    // Fills the second-level cache, the counts below only contain the statements of the views
+    tenantView.get();
+    landlordView.get();
+
+    List<String> tenantStatements = statementsOf(tenantView);
+    List<String> landlordStatements = statementsOf(landlordView);
+    int invoices = invoiceCount(tenantView.get());
+    addInvoice(flatId);
+
+    assertEquals(invoices + 1, invoiceCount(tenantView.get()));
+    assertEquals(1, tenantStatements.stream().filter(sql -> sql.contains("pdf")).count(),
+        "PDFs of the tenant view " + tenantStatements);
+    assertEquals(1, landlordStatements.stream().filter(sql -> sql.contains("pdf")).count(),
+        "PDFs of the landlord view " + landlordStatements);
+    // Another invoice does not add a statement
+    assertEquals(tenantStatements.size(), statementsOf(tenantView).size());
+    assertEquals(landlordStatements.size(), statementsOf(landlordView).size());
+  }
+
+  @Test
+  void flushWritesOnlyTrackedChanges() {
+    transactionTemplate.executeWithoutResult(status -> {
+      List<Flat> flats = entityManager.createQuery("select f from Flat f", Flat.class)
+          .getResultList();
+      Flat flat = flats.getFirst();
+      assertFalse(((SelfDirtinessTracker) flat).$$_hibernate_hasDirtyAttributes());
+
+      long start = System.nanoTime();
+      for (int i = 0; i < FLUSHES; i++) {
+        entityManager.flush();
+      }
+      double cleanMicros = (System.nanoTime() - start) / 1e3 / FLUSHES;
+
+      flat.setResidents(flat.getResidents() + 1);
+      assertArrayEquals(new String[]{"residents"},
+          ((SelfDirtinessTracker) flat).$$_hibernate_getDirtyAttributes());
+      CapturingStatementInspector.STATEMENTS.clear();
+      entityManager.flush();
+      List<String> updates = CapturingStatementInspector.STATEMENTS.stream()
+          .filter(sql -> sql.stripLeading().toLowerCase().startsWith("update")).toList();
+      assertEquals(1, updates.size(), "Unexpected updates " + updates);
+      assertFalse(((SelfDirtinessTracker) flat).$$_hibernate_hasDirtyAttributes());
+
+      log.info("Flush with {} managed entities: {} µs",
+          entityManager.unwrap(Session.class).getStatistics().getEntityCount(),
+          String.format("%.1f", cleanMicros));
+      status.setRollbackOnly();
+    });
+  }
+
+  private static List<String> statementsOf(Supplier<Object> view) {
+    CapturingStatementInspector.STATEMENTS.clear();
+    view.get();
+    return CapturingStatementInspector.STATEMENTS.stream().map(String::toLowerCase).toList();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static int invoiceCount(Object tenantView) {
+    return ((List<FlatDto>) tenantView).stream().mapToInt(flat -> flat.invoiceList().size()).sum();
+  }
+
+  private void addInvoice(int flatId) {
+    transactionTemplate.executeWithoutResult(status -> {
+      Flat flat = flatRepository.findById(flatId).orElseThrow();
+      flat.getInvoiceList().add(invoiceRepository.save(Invoice.builder()
+          .building(flat.getBuilding()).flat(flat).invoiceForYear(2000).pdf("pdf").build()));
+    });
+  }
+}
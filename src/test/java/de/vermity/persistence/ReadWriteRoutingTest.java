@@ -0,0 +1,153 @@
+package de.vermity.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.vermity.model.entity.Address;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import jakarta.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Routes against two H2 databases standing in for primary and replica. The replica is a copy of
+ * the primary taken by the test, rows written afterwards only exist on the primary, so the count
+ * shows where a transaction read from.
+ *
+ * @author Cedric Stumpf
+ */
+@SpringBootTest
+@TestInstance(Lifecycle.PER_CLASS)
+@TestPropertySource(locations = "classpath:application-test.properties", properties = {
+    "spring.datasource.url=jdbc:h2:mem:routing-primary;MODE=MariaDB",
+    "vermity.datasource.replica.urls=" + ReadWriteRoutingTest.REPLICA_URL,
+    "vermity.datasource.replica.max-lag=5000",
+    "vermity.datasource.replica.check-interval=3600000",
+    "vermity.cache.second-level.replica-delay=1000"})
+class ReadWriteRoutingTest {
+
+  static final String REPLICA_URL =
+      "jdbc:h2:mem:routing-replica;MODE=MariaDB;DB_CLOSE_DELAY=-1";
+
+  @Autowired
+  private DataSource dataSource;
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+  @Autowired
+  private AddressRepository addressRepository;
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+  @Autowired
+  private SecondLevelCache secondLevelCache;
+  @Autowired
+  private EntityManagerFactory entityManagerFactory;
+
+  private ReadWriteRoutingDataSource routingDataSource;
+  private JdbcTemplate replicaTemplate;
+  private TransactionTemplate readOnlyTransaction;
+  private TransactionTemplate writeTransaction;
+
+  @BeforeAll
+  void setUp() {
+    routingDataSource = (ReadWriteRoutingDataSource)
+        ((LazyConnectionDataSourceProxy) dataSource).getTargetDataSource();
+    replicaTemplate = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", "password"));
+    readOnlyTransaction = new TransactionTemplate(transactionManager);
+    readOnlyTransaction.setReadOnly(true);
+    writeTransaction = new TransactionTemplate(transactionManager);
+  }
+
+  /**
+   * Copy the primary to the replica, then write a row only the primary has
+   */
+  @BeforeEach
+  void replicate() throws Exception {
+    Path script = Files.createTempFile("routing-primary", ".sql");
+    try {
+      jdbcTemplate.execute("script to '" + script + "'");
+      replicaTemplate.execute("drop all objects");
+      replicaTemplate.execute("runscript from '" + script + "'");
+    } finally {
+      Files.delete(script);
+    }
+    addressRepository.save(Address.builder().street("Nur auf dem Primary").zip(1).city("")
+        .state("").country("").build());
+  }
+
+  @Test
+  void readOnlyTransactionsReadFromTheReplica() {
+    routingDataSource.checkReplicas();
+
+    assertEquals(List.of(0), routingDataSource.getUsableReplicas());
+    assertEquals(countOnReplica(),
+        readOnlyTransaction.execute(status -> addressRepository.count()));
+    assertEquals(countOnReplica() + 1,
+        writeTransaction.execute(status -> addressRepository.count()));
+  }
+
+  @Test
+  void laggingReplicaIsNotRead() {
+    LocalDateTime beat = replicaTemplate.queryForObject(
+        "select beat from replication_heartbeat where id = 1", LocalDateTime.class);
+    replicaTemplate.update("update replication_heartbeat set beat = ? where id = 1",
+        beat.minusHours(1));
+    routingDataSource.checkReplicas();
+
+    assertTrue(routingDataSource.getUsableReplicas().isEmpty());
+    assertEquals(countOnReplica() + 1,
+        readOnlyTransaction.execute(status -> addressRepository.count()));
+  }
+
+  @Test
+  void brokenReplicaIsNotRead() {
+    routingDataSource.checkReplicas();
+    replicaTemplate.execute("drop all objects");
+    routingDataSource.checkReplicas();
+
+    assertTrue(routingDataSource.getUsableReplicas().isEmpty());
+    assertEquals(jdbcTemplate.queryForObject("select count(*) from address", Long.class),
+        readOnlyTransaction.execute(status -> addressRepository.count()));
+  }
+
+  @Test
+  void entityReadFromLaggingReplicaIsEvictedAgain() throws Exception {
+    Integer addressId = addressRepository.save(Address.builder().street("Alt").zip(2).city("")
+        .state("").country("").build()).getId();
+    replicate();
+    routingDataSource.checkReplicas();
+    // Changed on the primary and evicted, the replica has not replicated the change yet
+    jdbcTemplate.update("update address set street = 'Neu' where id = ?", addressId);
+    secondLevelCache.evictLocally(Address.class, addressId);
+
+    assertEquals("Alt", readOnlyTransaction.execute(status ->
+        addressRepository.findById(addressId).orElseThrow().getStreet()));
+    assertTrue(entityManagerFactory.getCache().contains(Address.class, addressId));
+
+    long deadline = System.currentTimeMillis() + 5000;
+    while (entityManagerFactory.getCache().contains(Address.class, addressId)
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(50);
+    }
+    assertFalse(entityManagerFactory.getCache().contains(Address.class, addressId));
+  }
+
+  private long countOnReplica() {
+    return replicaTemplate.queryForObject("select count(*) from address", Long.class);
+  }
+}
@@ -0,0 +1,198 @@
+package de.vermity.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import de.vermity.loadtest.PortfolioGenerator;
+import de.vermity.loadtest.PortfolioGenerator.PortfolioSize;
+import de.vermity.model.entity.Address;
+import de.vermity.model.entity.Person;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs the queries of the repositories against a generated portfolio and checks with EXPLAIN that
+ * every issued select, including the eager loads following it, is answered by an index.
+ *
+ * @author Cedric Stumpf
+ */
+@SpringBootTest
+@TestInstance(Lifecycle.PER_CLASS)
+@TestPropertySource(locations = "classpath:application-test.properties", properties = {
+    "spring.datasource.url=jdbc:h2:mem:explain;MODE=MariaDB",
+    "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "de.vermity.persistence.RepositoryIndexUsageTest$CapturingStatementInspector"})
+@ImportRuntimeHints(RepositoryIndexUsageTest.InspectorHints.class)
+class RepositoryIndexUsageTest {
+
+  @Autowired
+  private PersonRepository personRepository;
+  @Autowired
+  private AddressRepository addressRepository;
+  @Autowired
+  private BuildingRepository buildingRepository;
+  @Autowired
+  private FlatRepository flatRepository;
+  @Autowired
+  private MeterRepository meterRepository;
+  @Autowired
+  private AdditionalCostRepository additionalCostRepository;
+  @Autowired
+  private InvoiceRepository invoiceRepository;
+  @Autowired
+  private RevokedTokenRepository revokedTokenRepository;
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+  @Autowired
+  private PasswordEncoder passwordEncoder;
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
+  private Person landlord;
+  private Person tenant;
+  private Address address;
+  private int buildingId;
+  private int flatId;
+  private int invoiceId;
+  private int invoiceYear;
+  private String meterNr;
+  private int meterId;
+
+  @BeforeAll
+  void generatePortfolio() {
+    new PortfolioGenerator(personRepository, addressRepository, buildingRepository,
+        flatRepository, meterRepository, additionalCostRepository, invoiceRepository, jdbcTemplate,
+        passwordEncoder, transactionTemplate).generate(new PortfolioSize(3, 2, 5, 2, 1, true, 42L));
+    jdbcTemplate.execute("analyze");
+
+    Map<String, Object> invoice = jdbcTemplate.queryForMap(
+        "select id, flat_id, building_id, invoice_for_year from invoice order by id limit 1");
+    invoiceId = ((Number) invoice.get("id")).intValue();
+    flatId = ((Number) invoice.get("flat_id")).intValue();
+    buildingId = ((Number) invoice.get("building_id")).intValue();
+    invoiceYear = ((Number) invoice.get("invoice_for_year")).intValue();
+    landlord = personRepository.findById(jdbcTemplate.queryForObject(
+        "select landlord_id from building where id = ?", Integer.class, buildingId)).orElseThrow();
+    tenant = personRepository.findById(jdbcTemplate.queryForObject(
+        "select tenant_id from flat where id = ?", Integer.class, flatId)).orElseThrow();
+    address = addressRepository.findById(jdbcTemplate.queryForObject(
+        "select address_id from building where id = ?", Integer.class, buildingId)).orElseThrow();
+    meterNr = jdbcTemplate.queryForObject("select meter_nr from meter order by id limit 1",
+        String.class);
+    meterId = jdbcTemplate.queryForObject(
+        "select meter_list_id from flat_meter_list where flat_id = ? limit 1", Integer.class,
+        flatId);
+  }
+
+  Stream<Arguments> repositoryQueries() {
+    return Stream.of(
+        query("PersonRepository.findByEmail",
+            () -> personRepository.findByEmail(landlord.getEmail())),
+        query("PersonRepository.findById", () -> personRepository.findById(tenant.getId())),
+        query("AddressRepository.findByStateAndCityAndStreetAndZipAndCountry",
+            () -> addressRepository.findByStateAndCityAndStreetAndZipAndCountry(
+                address.getState(), address.getCity(), address.getStreet(), address.getZip(),
+                address.getCountry())),
+        query("BuildingRepository.findByAddress",
+            () -> buildingRepository
+                .findByAddress_StreetAndAddress_CityAndAddress_StateAndAddress_ZipAndAddress_Country(
+                    address.getStreet(), address.getCity(), address.getState(), address.getZip(),
+                    address.getCountry())),
+        query("BuildingRepository.findByLandlord",
+            () -> buildingRepository.findByLandlord(landlord)),
+        query("BuildingRepository.findByFlatId", () -> buildingRepository.findByFlatId(flatId)),
+        query("FlatRepository.findByTenant", () -> flatRepository.findByTenant(tenant)),
+        query("FlatRepository.findByIdAndBuilding_Id",
+            () -> flatRepository.findByIdAndBuilding_Id(flatId, buildingId)),
+        query("FlatRepository.existsByIdAndBuilding_Id",
+            () -> flatRepository.existsByIdAndBuilding_Id(flatId, buildingId)),
+        query("FlatRepository.existsByIdAndTenant_Id",
+            () -> flatRepository.existsByIdAndTenant_Id(flatId, tenant.getId())),
+        query("FlatRepository.existsByIdAndMeterList_Id",
+            () -> flatRepository.existsByIdAndMeterList_Id(flatId, meterId)),
+        query("MeterRepository.findByMeterNrIn",
+            () -> meterRepository.findByMeterNrIn(List.of(meterNr))),
+        query("InvoiceRepository.findIdsByBuildingIdAndInvoiceForYear",
+            () -> invoiceRepository.findIdsByBuildingIdAndInvoiceForYear(buildingId, invoiceYear)),
+        query("InvoiceRepository.findPdfById", () -> invoiceRepository.findPdfById(invoiceId)),
+        query("InvoiceRepository.existsByIdAndFlat_Building_Id",
+            () -> invoiceRepository.existsByIdAndFlat_Building_Id(invoiceId, buildingId)),
+        query("RevokedTokenRepository.existsById",
+            () -> revokedTokenRepository.existsById("00000000-0000-0000-0000-000000000000")));
+  }
+
+  @ParameterizedTest(name = "{0}")
+  @MethodSource("repositoryQueries")
+  void repositoryQueryUsesIndex(String name, Runnable query) {
+    CapturingStatementInspector.STATEMENTS.clear();
+    query.run();
+
+    List<String> selects = CapturingStatementInspector.STATEMENTS.stream()
+        .filter(sql -> sql.stripLeading().toLowerCase().startsWith("select")).toList();
+    assertFalse(selects.isEmpty(), name + " issued no select");
+    for (String sql : selects) {
+      String plan = explain(sql);
+      assertFalse(plan.contains("tableScan"), name + " scans a table:\n" + plan);
+    }
+  }
+
+  /**
+   * Explain a statement, the plan only depends on the statement, so every parameter is bound to
+   * the same dummy value
+   */
+  private String explain(String sql) {
+    Object[] parameters = new Object[(int) sql.chars().filter(c -> c == '?').count()];
+    Arrays.fill(parameters, "1");
+    return String.join("\n",
+        jdbcTemplate.queryForList("explain " + sql, String.class, parameters));
+  }
+
+  private static Arguments query(String name, Runnable query) {
+    return Arguments.of(name, query);
+  }
+
+  /**
+   * Records the SQL of every statement Hibernate prepares
+   */
+  public static class CapturingStatementInspector implements StatementInspector {
+
+    static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+    @Override
+    public String inspect(String sql) {
+      STATEMENTS.add(sql);
+      return sql;
+    }
+  }
+
+  /**
+   * Hibernate creates the statement inspector from its class name
+   */
+  static class InspectorHints implements RuntimeHintsRegistrar {
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+      hints.reflection().registerType(CapturingStatementInspector.class,
+          MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+    }
+  }
+}
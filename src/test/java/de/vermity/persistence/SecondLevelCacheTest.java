@@ -0,0 +1,130 @@
+package de.vermity.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.vermity.loadtest.PortfolioGenerator;
+import de.vermity.loadtest.PortfolioGenerator.PortfolioSize;
+import de.vermity.model.entity.Building;
+import de.vermity.util.CacheInvalidationEvent;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Checks that buildings are read from the second-level cache after the first load and evicted by
+ * the invalidations of other instances. Logs the hit ratio of the building region.
+ *
+ * @author Cedric Stumpf
+ */
+@Slf4j
+@SpringBootTest
+@TestInstance(Lifecycle.PER_CLASS)
+@TestPropertySource(locations = "classpath:application-test.properties", properties =
+    "spring.datasource.url=jdbc:h2:mem:second-level-cache;MODE=MariaDB")
+class SecondLevelCacheTest {
+
+  private static final int LOADS = 20;
+
+  @Autowired
+  private EntityManagerFactory entityManagerFactory;
+  @Autowired
+  private SecondLevelCache secondLevelCache;
+  @Autowired
+  private ApplicationEventPublisher eventPublisher;
+  @Autowired
+  private PersonRepository personRepository;
+  @Autowired
+  private AddressRepository addressRepository;
+  @Autowired
+  private BuildingRepository buildingRepository;
+  @Autowired
+  private FlatRepository flatRepository;
+  @Autowired
+  private MeterRepository meterRepository;
+  @Autowired
+  private AdditionalCostRepository additionalCostRepository;
+  @Autowired
+  private InvoiceRepository invoiceRepository;
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+  @Autowired
+  private PasswordEncoder passwordEncoder;
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
+  private Integer buildingId;
+
+  @BeforeAll
+  void generatePortfolio() {
+    new PortfolioGenerator(personRepository, addressRepository, buildingRepository,
+        flatRepository, meterRepository, additionalCostRepository, invoiceRepository, jdbcTemplate,
+        passwordEncoder, transactionTemplate)
+        .generate(new PortfolioSize(1, 2, 2, 1, 1, false, 7L));
+    buildingId = jdbcTemplate.queryForObject("select min(id) from building", Integer.class);
+  }
+
+  @BeforeEach
+  void clearCache() {
+    entityManagerFactory.getCache().evictAll();
+  }
+
+  @Test
+  void buildingIsReadFromTheCache() {
+    CacheRegionStatistics statistics = regionStatistics("building");
+    long hits = statistics.getHitCount();
+
+    loadBuilding();
+    assertTrue(entityManagerFactory.getCache().contains(Building.class, buildingId));
+    for (int i = 0; i < LOADS; i++) {
+      loadBuilding();
+    }
+
+    assertEquals(hits + LOADS, statistics.getHitCount());
+    log.info("Building region after {} loads: hit ratio {}", LOADS + 1,
+        String.format("%.2f", secondLevelCache.hitRatio("building")));
+  }
+
+  @Test
+  void invalidationOfOtherInstanceEvictsBuilding() {
+    loadBuilding();
+    assertTrue(entityManagerFactory.getCache().contains(Building.class, buildingId));
+
+    eventPublisher.publishEvent(
+        new CacheInvalidationEvent(SecondLevelCache.CACHE_NAME, "Flat:" + buildingId));
+    assertTrue(entityManagerFactory.getCache().contains(Building.class, buildingId));
+
+    eventPublisher.publishEvent(
+        new CacheInvalidationEvent(SecondLevelCache.CACHE_NAME, "Building:" + buildingId));
+    assertFalse(entityManagerFactory.getCache().contains(Building.class, buildingId));
+
+    loadBuilding();
+    eventPublisher.publishEvent(new CacheInvalidationEvent(SecondLevelCache.CACHE_NAME,
+        "Building"));
+    assertFalse(entityManagerFactory.getCache().contains(Building.class, buildingId));
+  }
+
+  private void loadBuilding() {
+    transactionTemplate.executeWithoutResult(status ->
+        assertTrue(buildingRepository.findById(buildingId).isPresent()));
+  }
+
+  private CacheRegionStatistics regionStatistics(String region) {
+    return entityManagerFactory.unwrap(SessionFactory.class).getStatistics()
+        .getDomainDataRegionStatistics(region);
+  }
+}
@@ -0,0 +1,54 @@
+package de.vermity.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * Sends logins through the embedded Tomcat the way the load balancer forwards them and checks that
+ * the rate limit per IP applies to the client in {@code X-Forwarded-For}, not to the proxy.
+ *
+ * @author Cedric Stumpf
+ */
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@TestPropertySource(locations = "classpath:application-test.properties", properties = {
+    "spring.datasource.url=jdbc:h2:mem:admission-control;MODE=MariaDB",
+    "vermity.admission.login.ip.capacity=1",
+    "vermity.admission.login.ip.refill-per-minute=1"})
+class AdmissionControlFilterTest {
+
+  private final HttpClient httpClient = HttpClient.newHttpClient();
+
+  @LocalServerPort
+  private int port;
+
+  @Test
+  void loginRateLimit_appliesPerForwardedClient() throws Exception {
+    assertNotEquals(HttpStatus.TOO_MANY_REQUESTS.value(), login("203.0.113.1", "a@tester.com"));
+    assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), login("203.0.113.1", "b@tester.com"));
+    // Another client behind the same proxy has its own bucket
+    assertNotEquals(HttpStatus.TOO_MANY_REQUESTS.value(), login("203.0.113.2", "c@tester.com"));
+  }
+
+  private int login(String clientIp, String email) throws IOException, InterruptedException {
+    HttpRequest request = HttpRequest.newBuilder()
+        .uri(URI.create("http://localhost:" + port + "/login"))
+        .header("Content-Type", "application/json")
+        .header("X-Forwarded-For", clientIp)
+        .POST(HttpRequest.BodyPublishers.ofString(
+            "{\"email\":\"" + email + "\",\"password\":\"falsch\"}"))
+        .build();
+    return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+  }
+}
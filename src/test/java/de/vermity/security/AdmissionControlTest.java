@@ -0,0 +1,73 @@
+package de.vermity.security;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.OptionalLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Test class for {@link AdmissionControl}.
+ *
+ * @author Cedric Stumpf
+ */
+class AdmissionControlTest {
+
+  private AdmissionControl admissionControl;
+
+  @BeforeEach
+  void setUp() {
+    admissionControl = new AdmissionControl();
+    ReflectionTestUtils.setField(admissionControl, "enabled", true);
+    ReflectionTestUtils.setField(admissionControl, "ipCapacity", 3L);
+    ReflectionTestUtils.setField(admissionControl, "ipRefillPerMinute", 1L);
+    ReflectionTestUtils.setField(admissionControl, "accountCapacity", 2L);
+    ReflectionTestUtils.setField(admissionControl, "accountRefillPerMinute", 2L);
+    ReflectionTestUtils.setField(admissionControl, "concurrencyLimitedPaths",
+        List.of("/auth/createInvoice"));
+    ReflectionTestUtils.setField(admissionControl, "maxConcurrentRequests", 1);
+  }
+
+  @Test
+  void tryLoginFromIp_rejectsAfterBurst() {
+    for (int i = 0; i < 3; i++) {
+      assertTrue(admissionControl.tryLoginFromIp("10.0.0.1").isEmpty());
+    }
+    OptionalLong retryAfter = admissionControl.tryLoginFromIp("10.0.0.1");
+
+    assertTrue(retryAfter.isPresent());
+    assertTrue(retryAfter.getAsLong() > 0 && retryAfter.getAsLong() <= 60);
+    assertTrue(admissionControl.tryLoginFromIp("10.0.0.2").isEmpty());
+  }
+
+  @Test
+  void tryLoginForAccount_ignoresCaseOfEmail() {
+    assertTrue(admissionControl.tryLoginForAccount("t@tester.com").isEmpty());
+    assertTrue(admissionControl.tryLoginForAccount("T@Tester.com").isEmpty());
+
+    assertTrue(admissionControl.tryLoginForAccount("t@TESTER.com").isPresent());
+  }
+
+  @Test
+  void tryLogin_disabled() {
+    ReflectionTestUtils.setField(admissionControl, "enabled", false);
+    for (int i = 0; i < 10; i++) {
+      assertTrue(admissionControl.tryLoginForAccount("t@tester.com").isEmpty());
+    }
+    assertFalse(admissionControl.isConcurrencyLimited("/auth/createInvoice"));
+  }
+
+  @Test
+  void tryEnter_limitsConcurrentRequests() {
+    assertTrue(admissionControl.isConcurrencyLimited("/auth/createInvoice"));
+    assertFalse(admissionControl.isConcurrencyLimited("/auth/getFlat"));
+
+    assertTrue(admissionControl.tryEnter("/auth/createInvoice"));
+    assertFalse(admissionControl.tryEnter("/auth/createInvoice"));
+    admissionControl.leave("/auth/createInvoice");
+    assertTrue(admissionControl.tryEnter("/auth/createInvoice"));
+  }
+}
@@ -0,0 +1,101 @@
+package de.vermity.security;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import de.vermity.model.entity.Person;
+import de.vermity.persistence.PersonRepository;
+import de.vermity.persistence.SecondLevelCache;
+import de.vermity.util.enums.Role;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * Test class for {@link CustomUserDetailsService}, authenticates with the provider Spring Security
+ * creates for it.
+ *
+ * @author Cedric Stumpf
+ */
+@ExtendWith(MockitoExtension.class)
+// Mocks SecondLevelCache, a class, with the inline mock maker of Mockito
+@DisabledInNativeImage
+class CustomUserDetailsServiceTest {
+
+  private static final String PASSWORD = "Password1234556!";
+
+  @Mock
+  private PersonRepository personRepository;
+
+  @Mock
+  private SecondLevelCache secondLevelCache;
+
+  @InjectMocks
+  private CustomUserDetailsService userDetailsService;
+
+  @Test
+  void authenticate_returnsPersonAsPrincipal() {
+    Person person = person(new BCryptPasswordEncoder(4).encode(PASSWORD));
+    when(personRepository.findByEmail("t@tester.com")).thenReturn(Optional.of(person));
+
+    Authentication authentication = provider(4).authenticate(
+        new UsernamePasswordAuthenticationToken("t@tester.com", PASSWORD));
+
+    verify(personRepository, never()).updatePasswordByEmail(anyString(), anyString());
+    assertAll(
+        () -> assertThat(authentication.isAuthenticated()).isTrue(),
+        () -> assertThat(authentication.getPrincipal()).isInstanceOf(PersonPrincipal.class),
+        () -> assertThat(((PersonPrincipal) authentication.getPrincipal()).getPerson())
+            .isEqualTo(person));
+  }
+
+  @Test
+  void authenticate_withLowerStrength_rehashesPassword() {
+    String oldHash = new BCryptPasswordEncoder(4).encode(PASSWORD);
+    Person person = person(oldHash);
+    when(personRepository.findByEmail("t@tester.com")).thenReturn(Optional.of(person));
+
+    Authentication authentication = provider(5).authenticate(
+        new UsernamePasswordAuthenticationToken("t@tester.com", PASSWORD));
+
+    ArgumentCaptor<String> newHash = ArgumentCaptor.forClass(String.class);
+    verify(personRepository).updatePasswordByEmail(eq("t@tester.com"), newHash.capture());
+    assertAll(
+        () -> assertThat(authentication.isAuthenticated()).isTrue(),
+        () -> assertThat(newHash.getValue().startsWith("$2a$05$")).isTrue(),
+        () -> assertThat(new BCryptPasswordEncoder().matches(PASSWORD, newHash.getValue()))
+            .isTrue(),
+        () -> assertThat(person.getPassword()).isEqualTo(newHash.getValue()));
+  }
+
+  private DaoAuthenticationProvider provider(int strength) {
+    DaoAuthenticationProvider provider = new DaoAuthenticationProvider(
+        new BCryptPasswordEncoder(strength));
+    provider.setUserDetailsService(userDetailsService);
+    provider.setUserDetailsPasswordService(userDetailsService);
+    return provider;
+  }
+
+  private static Person person(String password) {
+    return Person.builder()
+        .email("t@tester.com")
+        .password(password)
+        .roleList(List.of(Role.TENANT))
+        .build();
+  }
+}
@@ -3,16 +3,26 @@ package de.vermity.security;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Encoders;
 import io.jsonwebtoken.security.InvalidKeyException;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 import org.junit.jupiter.params.provider.NullAndEmptySource;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.security.core.Authentication;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
@@ -24,7 +34,9 @@ import org.springframework.test.util.ReflectionTestUtils;
  * @author Cedric Stumpf
  */
 @TestPropertySource("classpath:application-test.properties")
-@SpringJUnitConfig(JWTGenerator.class)
+@SpringJUnitConfig({JWTGenerator.class, SigningKeys.class})
+// TokenRevocationList is a class, only the inline mock maker can mock it at runtime
+@DisabledInNativeImage
 class JWTGeneratorTest {
 
   private JWTGenerator jwtGenerator;
@@ -32,9 +44,15 @@ class JWTGeneratorTest {
   @Value("${vermity.token.expiration}")
   private long JWT_EXPIRATION;
 
+  @Autowired
+  private SigningKeys signingKeys;
+
+  @MockBean
+  private TokenRevocationList revocationList;
+
   @BeforeEach
   void setUp() {
-    jwtGenerator = new JWTGenerator();
+    jwtGenerator = generator(signingKeys);
   }
 
   @ParameterizedTest
@@ -55,6 +73,77 @@ class JWTGeneratorTest {
     assertThat(ReflectionTestUtils.getField(jwtGenerator, "JWT_EXPIRATION")).isEqualTo(expiration);
   }
 
+  @Test
+  void validateToken_refreshToken_isRejected() {
+    // given
+    String refreshToken = jwtGenerator.generateRefreshToken("test@example.com");
+
+    // when & then
+    assertThrows(JwtException.class, () -> jwtGenerator.validateToken(refreshToken));
+    assertThat(jwtGenerator.parseRefreshToken(refreshToken).getSubject())
+        .isEqualTo("test@example.com");
+  }
+
+  @Test
+  void parseRefreshToken_accessToken_isRejected() {
+    // given
+    String token = jwtGenerator.generateAccessToken("test@example.com");
+
+    // when & then
+    assertThrows(JwtException.class, () -> jwtGenerator.parseRefreshToken(token));
+  }
+
+  @Test
+  void validateToken_revokedToken_isRejected() {
+    // given
+    String token = jwtGenerator.generateAccessToken("test@example.com");
+    Claims claims = jwtGenerator.parseAccessToken(token);
+    when(revocationList.isRevoked(claims.getId())).thenReturn(true);
+
+    // when & then
+    assertThrows(JwtException.class, () -> jwtGenerator.validateToken(token));
+  }
+
+  @Test
+  void revoke_storesIdUntilExpiration() {
+    // given
+    Claims claims = jwtGenerator.parseRefreshToken(
+        jwtGenerator.generateRefreshToken("test@example.com"));
+
+    // when
+    jwtGenerator.revoke(claims);
+
+    // then
+    verify(revocationList).revoke(claims.getId(), claims.getExpiration().toInstant());
+  }
+
+  @Test
+  void validateToken_afterKeyRotation_acceptsTokensOfOldKey() {
+    // given
+    String oldKey = Encoders.BASE64.encode(Jwts.SIG.HS512.key().build().getEncoded());
+    String newKey = Encoders.BASE64.encode(Jwts.SIG.HS512.key().build().getEncoded());
+    String oldToken = generator(signingKeys(oldKey))
+        .generateAccessToken("test@example.com");
+
+    // when
+    JWTGenerator rotated = generator(signingKeys(newKey, oldKey));
+    JWTGenerator withoutOldKey = generator(signingKeys(newKey));
+
+    // then
+    assertAll(
+        () -> assertThat(rotated.getUsernameFromJWT(oldToken)).isEqualTo("test@example.com"),
+        () -> assertThat(rotated.getUsernameFromJWT(rotated.generateAccessToken("new@example.com")))
+            .isEqualTo("new@example.com"),
+        () -> assertThrows(JwtException.class, () -> withoutOldKey.validateToken(oldToken)));
+  }
+
+  @Test
+  void signingKeys_withShortKey_failsOnStartup() {
+    String shortKey = Encoders.BASE64.encode(new byte[32]);
+
+    assertThrows(IllegalStateException.class, () -> signingKeys(shortKey));
+  }
+
   @ParameterizedTest
   @ValueSource(longs = {3600000})
   void validateTokenExpiration(Long expiration) {
@@ -85,4 +174,18 @@ class JWTGeneratorTest {
     // then
     assertEquals("", token);
   }
-}
\ No newline at end of file
+
+  private JWTGenerator generator(SigningKeys keys) {
+    JWTGenerator generator = new JWTGenerator(keys, revocationList);
+    ReflectionTestUtils.setField(generator, "JWT_EXPIRATION", JWT_EXPIRATION);
+    ReflectionTestUtils.setField(generator, "REFRESH_EXPIRATION", JWT_EXPIRATION);
+    return generator;
+  }
+
+  private static SigningKeys signingKeys(String... encodedKeys) {
+    SigningKeys keys = new SigningKeys();
+    ReflectionTestUtils.setField(keys, "encodedKeys", encodedKeys);
+    keys.init();
+    return keys;
+  }
+}
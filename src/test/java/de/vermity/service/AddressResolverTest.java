@@ -0,0 +1,131 @@
+package de.vermity.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import de.vermity.model.dto.AddressDto;
+import de.vermity.model.entity.Address;
+import de.vermity.persistence.AddressRepository;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * Test class for {@link AddressResolver}.
+ *
+ * @author Cedric Stumpf
+ */
+@ExtendWith(MockitoExtension.class)
+// Mocks the transaction manager, Mockito generates the mock class at runtime
+@DisabledInNativeImage
+class AddressResolverTest {
+
+  @Mock
+  private AddressRepository addressRepository;
+
+  @Mock
+  private PlatformTransactionManager transactionManager;
+
+  private AddressResolver addressResolver;
+
+  private Address savedAddress;
+
+  @BeforeEach
+  void setUp() {
+    addressResolver = new AddressResolver(addressRepository, transactionManager, 100);
+    savedAddress = Address.builder().id(5).street("Hauptstraße 1").zip(12345).city("Berlin")
+        .state("Berlin").country("Deutschland").build();
+  }
+
+  @Test
+  void emptyAddress_secondRegistrationUsesIndex() {
+    Address emptyAddress = Address.builder().id(1).build();
+    when(addressRepository.findByStateAndCityAndStreetAndZipAndCountry("", "", "", 0, ""))
+        .thenReturn(Optional.of(emptyAddress));
+
+    assertEquals(emptyAddress, addressResolver.emptyAddress());
+    assertEquals(emptyAddress, addressResolver.emptyAddress());
+
+    verify(addressRepository, times(1))
+        .findByStateAndCityAndStreetAndZipAndCountry("", "", "", 0, "");
+    verify(addressRepository, never()).saveAndFlush(any());
+  }
+
+  @Test
+  void find_normalizesWhitespace() {
+    when(addressRepository.findByStateAndCityAndStreetAndZipAndCountry("Berlin", "Berlin",
+        "Hauptstraße 1", 12345, "Deutschland")).thenReturn(Optional.of(savedAddress));
+
+    assertEquals(Optional.of(savedAddress), addressResolver.find(
+        new AddressDto(" Hauptstraße   1", 12345, "Berlin ", "Deutschland", "\tBerlin")));
+    assertEquals(Optional.of(savedAddress), addressResolver.find(
+        new AddressDto("Hauptstraße 1", 12345, "Berlin", "Deutschland", "Berlin")));
+
+    verify(addressRepository, times(1)).findByStateAndCityAndStreetAndZipAndCountry("Berlin",
+        "Berlin", "Hauptstraße 1", 12345, "Deutschland");
+  }
+
+  @Test
+  void find_unknownAddress_isNotSaved() {
+    assertTrue(addressResolver.find(
+        new AddressDto("Nebenstraße 2", 12345, "Berlin", "Deutschland", "Berlin")).isEmpty());
+
+    verify(addressRepository, never()).saveAndFlush(any());
+  }
+
+  @Test
+  void resolve_unknownAddress_isSavedOnce() {
+    when(addressRepository.saveAndFlush(any())).thenReturn(savedAddress);
+    AddressDto addressDto = new AddressDto("Hauptstraße 1", 12345, "Berlin", "Deutschland",
+        "Berlin");
+
+    assertEquals(savedAddress, addressResolver.resolve(addressDto));
+    assertEquals(savedAddress, addressResolver.resolve(addressDto));
+
+    verify(addressRepository, times(1)).saveAndFlush(any());
+    verify(addressRepository, times(1)).findByStateAndCityAndStreetAndZipAndCountry("Berlin",
+        "Berlin", "Hauptstraße 1", 12345, "Deutschland");
+  }
+
+  @Test
+  void resolve_concurrentInsert_readsSavedAddress() {
+    when(addressRepository.findByStateAndCityAndStreetAndZipAndCountry("Berlin", "Berlin",
+        "Hauptstraße 1", 12345, "Deutschland"))
+        .thenReturn(Optional.empty(), Optional.of(savedAddress));
+    when(addressRepository.saveAndFlush(any()))
+        .thenThrow(new DataIntegrityViolationException("unique_address"));
+
+    assertEquals(savedAddress, addressResolver.resolve(
+        new AddressDto("Hauptstraße 1", 12345, "Berlin", "Deutschland", "Berlin")));
+  }
+
+  @Test
+  void resolve_conflictWithoutSavedAddress_throws() {
+    when(addressRepository.saveAndFlush(any()))
+        .thenThrow(new DataIntegrityViolationException("unique_address"));
+
+    assertThrows(DataIntegrityViolationException.class, () -> addressResolver.resolve(
+        new AddressDto("Hauptstraße 1", 12345, "Berlin", "Deutschland", "Berlin")));
+  }
+
+  @Test
+  void key_dependsOnFieldBoundaries() {
+    Address address = Address.builder().street("ab").city("c").build();
+    Address shifted = Address.builder().street("a").city("bc").build();
+
+    assertNotEquals(AddressResolver.key(address), AddressResolver.key(shifted));
+  }
+}
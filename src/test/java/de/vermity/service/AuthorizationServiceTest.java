@@ -0,0 +1,91 @@
+package de.vermity.service;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import de.vermity.persistence.FlatRepository;
+import de.vermity.persistence.InvoiceRepository;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+/**
+ * Test class for {@link AuthorizationService}.
+ *
+ * @author Cedric Stumpf
+ */
+@ExtendWith(MockitoExtension.class)
+// Only mocks, a native image cannot load the classes Mockito generates at runtime
+@DisabledInNativeImage
+class AuthorizationServiceTest {
+
+  @Mock
+  private FlatRepository flatRepository;
+
+  @Mock
+  private InvoiceRepository invoiceRepository;
+
+  @Mock
+  private BuildingStructureCache buildingStructureCache;
+
+  @InjectMocks
+  private AuthorizationService authorizationService;
+
+  @Test
+  void isLandlordOfBuilding_usesCachedLandlord() {
+    when(buildingStructureCache.findLandlordIdByBuildingId(3)).thenReturn(Optional.of(11));
+
+    assertTrue(authorizationService.isLandlordOfBuilding(11, 3));
+    assertFalse(authorizationService.isLandlordOfBuilding(12, 3));
+    verifyNoInteractions(flatRepository, invoiceRepository);
+  }
+
+  @Test
+  void isLandlordOfBuilding_unknownBuilding() {
+    when(buildingStructureCache.findLandlordIdByBuildingId(4)).thenReturn(Optional.empty());
+
+    assertFalse(authorizationService.isLandlordOfBuilding(11, 4));
+  }
+
+  @Test
+  void isTenantOfFlat() {
+    when(flatRepository.existsByIdAndTenant_Id(7, 2)).thenReturn(true);
+    when(flatRepository.existsByIdAndTenant_Id(7, 3)).thenReturn(false);
+
+    assertTrue(authorizationService.isTenantOfFlat(2, 7));
+    assertFalse(authorizationService.isTenantOfFlat(3, 7));
+  }
+
+  @Test
+  void isFlatOfBuilding() {
+    when(flatRepository.existsByIdAndBuilding_Id(7, 3)).thenReturn(true);
+    when(flatRepository.existsByIdAndBuilding_Id(8, 3)).thenReturn(false);
+
+    assertTrue(authorizationService.isFlatOfBuilding(7, 3));
+    assertFalse(authorizationService.isFlatOfBuilding(8, 3));
+  }
+
+  @Test
+  void isMeterOfFlat() {
+    when(flatRepository.existsByIdAndMeterList_Id(7, 5)).thenReturn(true);
+    when(flatRepository.existsByIdAndMeterList_Id(7, 6)).thenReturn(false);
+
+    assertTrue(authorizationService.isMeterOfFlat(5, 7));
+    assertFalse(authorizationService.isMeterOfFlat(6, 7));
+  }
+
+  @Test
+  void isInvoiceOfBuilding() {
+    when(invoiceRepository.existsByIdAndFlat_Building_Id(9, 3)).thenReturn(true);
+    when(invoiceRepository.existsByIdAndFlat_Building_Id(9, 4)).thenReturn(false);
+
+    assertTrue(authorizationService.isInvoiceOfBuilding(9, 3));
+    assertFalse(authorizationService.isInvoiceOfBuilding(9, 4));
+  }
+}
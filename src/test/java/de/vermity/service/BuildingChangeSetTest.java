@@ -0,0 +1,158 @@
+package de.vermity.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.vermity.model.dto.AddressDto;
+import de.vermity.model.dto.FlatDto;
+import de.vermity.model.dto.MeterDto;
+import de.vermity.model.dto.ModifyBuildingDto;
+import de.vermity.model.entity.AdditionalCost;
+import de.vermity.model.entity.Building;
+import de.vermity.model.entity.Flat;
+import de.vermity.model.entity.Meter;
+import de.vermity.util.enums.Distribution;
+import de.vermity.util.enums.Frequency;
+import de.vermity.util.enums.MeterType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link BuildingChangeSet}.
+ *
+ * @author Cedric Stumpf
+ */
+class BuildingChangeSetTest {
+
+  private static final AddressDto ADDRESS = new AddressDto("Street", 12345, "City", "Country",
+      "State");
+
+  private Building building;
+
+  @BeforeEach
+  void setUp() {
+    building = Building.builder().id(1).flatList(List.of(flat(1), flat(2))).build();
+  }
+
+  @Test
+  void unchangedRequest_hasNoChanges() {
+    var changes = BuildingChangeSet.of(building, request(flatDto(1), flatDto(2)));
+
+    assertTrue(changes.changedFlats().isEmpty());
+    assertTrue(changes.newFlats().isEmpty());
+    assertTrue(changes.newMeters().isEmpty());
+    assertTrue(changes.changedMeters().isEmpty());
+    assertTrue(changes.readings().isEmpty());
+    assertTrue(changes.newMeterNumbers().isEmpty());
+  }
+
+  @Test
+  void changedFlat_isMatchedById() {
+    FlatDto changed = new FlatDto(2, List.of(meterDto(2, 200)), "2.OG links", 3, 80, 4,
+        List.of(addition("Garage"), addition("Keller")), 700, 900, List.of(), 0);
+
+    var changes = BuildingChangeSet.of(building, request(flatDto(1), changed));
+
+    assertEquals(1, changes.changedFlats().size());
+    var flatChange = changes.changedFlats().getFirst();
+    assertEquals(2, flatChange.flat().getId());
+    assertTrue(flatChange.attributesChanged());
+    assertEquals(List.of("Keller"),
+        flatChange.addedAdditions().stream().map(AdditionalCost::getName).toList());
+    assertTrue(flatChange.removedAdditions().isEmpty());
+  }
+
+  @Test
+  void missingAddition_isRemoved() {
+    FlatDto withoutAdditions = new FlatDto(1, List.of(meterDto(1, 100)), "1.OG", 3, 80, 2,
+        List.of(), 600, 800, List.of(), 0);
+
+    var changes = BuildingChangeSet.of(building, request(withoutAdditions, flatDto(2)));
+
+    var flatChange = changes.changedFlats().getFirst();
+    assertFalse(flatChange.attributesChanged());
+    assertEquals(List.of("Garage"),
+        flatChange.removedAdditions().stream().map(AdditionalCost::getName).toList());
+  }
+
+  @Test
+  void metersAreMatchedByNumber() {
+    FlatDto flatDto = new FlatDto(1, List.of(meterDto(1, 150),
+        new MeterDto(0, 10, "M-new", MeterType.WASSERWARM, 2, 5)), "1.OG", 3, 80, 2,
+        List.of(addition("Garage")), 600, 800, List.of(), 0);
+    MeterDto cheaper = new MeterDto(0, 200, "M-2", MeterType.GAS, 0.3, 10);
+    FlatDto otherFlat = new FlatDto(2, List.of(cheaper), "2.OG", 3, 80, 2,
+        List.of(addition("Garage")), 600, 800, List.of(), 0);
+
+    var changes = BuildingChangeSet.of(building, request(flatDto, otherFlat));
+
+    assertEquals(1, changes.readings().size());
+    assertEquals("M-1", changes.readings().getFirst().meter().getMeterNr());
+    assertEquals(150, changes.readings().getFirst().reading());
+    assertEquals(1, changes.changedMeters().size());
+    assertEquals("M-2", changes.changedMeters().getFirst().meter().getMeterNr());
+    assertEquals(1, changes.newMeters().size());
+    assertEquals(1, changes.newMeters().getFirst().flat().getId());
+    assertEquals(List.of("M-new"), changes.newMeterNumbers());
+  }
+
+  @Test
+  void unknownFlatId_isNewFlat() {
+    FlatDto newFlat = new FlatDto(0, List.of(meterDto(3, 0)), "DG", 2, 50, 1, List.of(), 400,
+        550, List.of(), 0);
+
+    var changes = BuildingChangeSet.of(building, request(flatDto(1), flatDto(2), newFlat));
+
+    assertEquals(List.of(newFlat), changes.newFlats());
+    assertEquals(List.of("M-3"), changes.newMeterNumbers());
+  }
+
+  @Test
+  void largeBuilding_isComparedOnce() {
+    List<Flat> flats = IntStream.rangeClosed(1, 300).mapToObj(BuildingChangeSetTest::flat)
+        .toList();
+    building.setFlatList(new ArrayList<>(flats));
+    List<FlatDto> flatDtos = IntStream.rangeClosed(1, 300).mapToObj(id -> new FlatDto(id,
+        List.of(meterDto(id, id * 100 + 1)), id == 1 ? "1.OG" : id + ". Etage", 3, 80, 2,
+        List.of(addition("Garage")), 600, 800, List.of(), 0)).toList();
+
+    var changes = BuildingChangeSet.of(building,
+        new ModifyBuildingDto(1, flatDtos, List.of(), ADDRESS, 0));
+
+    assertEquals(300, changes.readings().size());
+    assertEquals(299, changes.changedFlats().size());
+    assertTrue(changes.newMeters().isEmpty());
+  }
+
+  private static Flat flat(int id) {
+    return Flat.builder().id(id).location(id + ".OG").rooms(3).squareMeter(80).residents(2)
+        .coldRent(600).warmRent(800)
+        .meterList(List.of(Meter.builder().id(id).meterNr("M-" + id).reading(id * 100)
+            .type(MeterType.GAS).costPerUnit(0.5).baseCost(10).build()))
+        .additionList(List.of(AdditionalCost.builder().id(id).name("Garage").amount(30)
+            .distribution(Distribution.NONE).frequency(Frequency.MONTHLY).build()))
+        .build();
+  }
+
+  private static FlatDto flatDto(int id) {
+    return new FlatDto(id, List.of(meterDto(id, id * 100)), id + ".OG", 3, 80, 2,
+        List.of(addition("Garage")), 600, 800, List.of(), 0);
+  }
+
+  private static MeterDto meterDto(int id, int reading) {
+    return new MeterDto(id, reading, "M-" + id, MeterType.GAS, 0.5, 10);
+  }
+
+  private static AdditionalCost addition(String name) {
+    return AdditionalCost.builder().name(name).amount(30).distribution(Distribution.NONE)
+        .frequency(Frequency.MONTHLY).build();
+  }
+
+  private static ModifyBuildingDto request(FlatDto... flats) {
+    return new ModifyBuildingDto(1, List.of(flats), List.of(), ADDRESS, 0);
+  }
+}
@@ -2,10 +2,13 @@ package de.vermity.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.anyList;
 import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -21,11 +24,12 @@ import de.vermity.model.entity.Flat;
 import de.vermity.model.entity.Meter;
 import de.vermity.model.entity.Person;
 import de.vermity.persistence.AdditionalCostRepository;
-import de.vermity.persistence.AddressRepository;
 import de.vermity.persistence.BuildingRepository;
 import de.vermity.persistence.FlatRepository;
+import de.vermity.persistence.InvoiceRepository;
 import de.vermity.persistence.MeterRepository;
 import de.vermity.persistence.PersonRepository;
+import de.vermity.persistence.SecondLevelCache;
 import de.vermity.persistence.UpdateRepository;
 import de.vermity.security.JWTGenerator;
 import de.vermity.util.UserUtil;
@@ -38,6 +42,8 @@ import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 import org.junit.jupiter.params.provider.EnumSource;
@@ -46,12 +52,15 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 
 /**
  * Unit tests for the BuildingService class.
  *
  * @author Cedric Stumpf
  */
+// All collaborators are Mockito mocks, their classes cannot be generated in a native image
+@DisabledInNativeImage
 class BuildingServiceTest {
 
   @Mock
@@ -64,7 +73,7 @@ class BuildingServiceTest {
   private MeterRepository meterRepository;
 
   @Mock
-  private AddressRepository addressRepository;
+  private AddressResolver addressResolver;
 
   @Mock
   private PersonRepository personRepository;
@@ -81,6 +90,18 @@ class BuildingServiceTest {
   @Mock
   private UpdateRepository updateRepository;
 
+  @Mock
+  private BuildingStructureCache buildingStructureCache;
+
+  @Mock
+  private SecondLevelCache secondLevelCache;
+
+  @Mock
+  private DeletionService deletionService;
+
+  @Mock
+  private InvoiceRepository invoiceRepository;
+
   @InjectMocks
   private BuildingService buildingService;
 
@@ -117,13 +138,13 @@ class BuildingServiceTest {
         new AdditionalCost(0, "Garage", "Rent of Garage", 25, Distribution.NONE,
             Frequency.MONTHLY));
     FlatDto flatDto = new FlatDto(0, meterDtoList, "1.OG", 3, 100, 2, additionList, 300, 500,
-        List.of());
+        List.of(), 0);
     List<FlatDto> flatList = List.of(flatDto);
 
     List<AdditionalCost> operatingCosts = List.of(
         new AdditionalCost(0, "Garden", "Gardening", 25, Distribution.FLAT, Frequency.MONTHLY));
 
-    return new BuildingDto(0, flatList, operatingCosts, addressDto);
+    return new BuildingDto(0, flatList, operatingCosts, addressDto, 0);
   }
 
   private BuildingDto createTestBuildingDtoMoreFlats() {
@@ -135,19 +156,19 @@ class BuildingServiceTest {
         new AdditionalCost(0, "Garage", "Rent of Garage", 25, Distribution.NONE,
             Frequency.MONTHLY));
     FlatDto flatDto1 = new FlatDto(0, meterDtoList, "1.OG", 1, 100, 2, additionList, 300, 500,
-        List.of());
+        List.of(), 0);
     FlatDto flatDto2 = new FlatDto(1, meterDtoList, "2.OG", 2, 200, 4, additionList, 300, 500,
-        List.of());
+        List.of(), 0);
     FlatDto flatDto3 = new FlatDto(2, meterDtoList, "3.OG", 3, 300, 5, additionList, 300, 500,
-        List.of());
+        List.of(), 0);
     FlatDto flatDto4 = new FlatDto(3, meterDtoList, "4.OG", 4, 400, 6, additionList, 300, 500,
-        List.of());
+        List.of(), 0);
     List<FlatDto> flatList = List.of(flatDto1, flatDto2, flatDto3, flatDto4);
 
     List<AdditionalCost> operatingCosts = List.of(
         new AdditionalCost(0, "Garden", "Gardening", 25, Distribution.FLAT, Frequency.MONTHLY));
 
-    return new BuildingDto(0, flatList, operatingCosts, addressDto);
+    return new BuildingDto(0, flatList, operatingCosts, addressDto, 0);
   }
 
   private ModifyBuildingDto createTestModifyBuildingDto() {
@@ -159,13 +180,13 @@ class BuildingServiceTest {
         new AdditionalCost(0, "Garage", "Rent of Garage", 25, Distribution.NONE,
             Frequency.MONTHLY));
     FlatDto flatDto = new FlatDto(0, meterDtoList, "1.OG", 3, 100, 2, additionList, 300, 500,
-        List.of());
+        List.of(), 0);
     List<FlatDto> flatList = List.of(flatDto);
 
     List<AdditionalCost> operatingCosts = List.of(
         new AdditionalCost(0, "Garden", "Gardening", 25, Distribution.FLAT, Frequency.MONTHLY));
 
-    return new ModifyBuildingDto(0, flatList, operatingCosts, addressDto);
+    return new ModifyBuildingDto(0, flatList, operatingCosts, addressDto, 0);
   }
 
   private ModifyBuildingDto createTestModifyBuildingDtoWithMoreFlats() {
@@ -177,19 +198,19 @@ class BuildingServiceTest {
         new AdditionalCost(0, "Garage", "Rent of Garage", 25, Distribution.NONE,
             Frequency.MONTHLY));
     FlatDto flatDto1 = new FlatDto(0, meterDtoList, "1.OG", 1, 100, 2, additionList, 300, 500,
-        List.of());
+        List.of(), 0);
     FlatDto flatDto2 = new FlatDto(1, meterDtoList, "2.OG", 2, 200, 4, additionList, 300, 500,
-        List.of());
+        List.of(), 0);
     FlatDto flatDto3 = new FlatDto(2, meterDtoList, "3.OG", 3, 300, 5, additionList, 300, 500,
-        List.of());
+        List.of(), 0);
     FlatDto flatDto4 = new FlatDto(3, meterDtoList, "4.OG", 4, 400, 6, additionList, 300, 500,
-        List.of());
+        List.of(), 0);
     List<FlatDto> flatList = List.of(flatDto1, flatDto2, flatDto3, flatDto4);
 
     List<AdditionalCost> operatingCosts = List.of(
         new AdditionalCost(0, "Garden", "Gardening", 25, Distribution.FLAT, Frequency.MONTHLY));
 
-    return new ModifyBuildingDto(0, flatList, operatingCosts, addressDto);
+    return new ModifyBuildingDto(0, flatList, operatingCosts, addressDto, 0);
   }
 
   private Building createTestBuilding() {
@@ -374,6 +395,8 @@ class BuildingServiceTest {
     // Assert
     assertEquals(expectedStatus, response.getStatusCode());
     assertEquals(expectedMessage, response.getBody());
+    verify(deletionService, times(expectedStatus == HttpStatus.OK ? 1 : 0))
+        .deleteBuilding(building.getId());
   }
 
   @ParameterizedTest
@@ -414,16 +437,13 @@ class BuildingServiceTest {
       var address = Address.builder().build();
       address.setCity("New City");
       address.setId(2);
-      when(addressRepository.findByStateAndCityAndStreetAndZipAndCountry(anyString(), anyString(),
-          anyString(), anyInt(), anyString())).thenReturn(Optional.of(address));
+      when(addressResolver.find(any())).thenReturn(Optional.of(address));
 
     } else if (newAddressExists) {
-      when(addressRepository.findByStateAndCityAndStreetAndZipAndCountry(anyString(), anyString(),
-          anyString(), anyInt(), anyString())).thenReturn(Optional.of(new Address()));
+      when(addressResolver.find(any())).thenReturn(Optional.of(new Address()));
     } else {
-      when(addressRepository.findByStateAndCityAndStreetAndZipAndCountry(anyString(), anyString(),
-          anyString(), anyInt(), anyString())).thenReturn(Optional.empty());
-      when(addressRepository.saveAndFlush(any())).thenReturn(
+      when(addressResolver.find(any())).thenReturn(Optional.empty());
+      when(addressResolver.resolve(any())).thenReturn(
           Address.builder().street("Street").zip(12345).city("City")
               .country("Country").state("State").build());
       when(buildingRepository.saveAndFlush(any())).thenReturn(building);
@@ -442,6 +462,45 @@ class BuildingServiceTest {
     }
   }
 
+  @Test
+  void modifyBuilding_ExistingMeterNumber_WritesNothing() {
+    // Arrange
+    building.setLandlord(user);
+    when(buildingRepository.findById(anyInt())).thenReturn(Optional.of(building));
+    when(meterRepository.findByMeterNrIn(List.of("99999"))).thenReturn(List.of(new Meter()));
+    FlatDto flatDto = new FlatDto(0, List.of(
+        new MeterDto(1, 1000, "12345", MeterType.GAS, 0.48, 12.50),
+        new MeterDto(0, 10, "99999", MeterType.GAS, 0.48, 12.50)), "1.OG", 3, 100, 2,
+        List.of(), 300, 500, List.of(), 0);
+    var request = new ModifyBuildingDto(0, List.of(flatDto), List.of(),
+        new AddressDto("Street", 12345, "City", "Country", "State"), 0);
+
+    // Act
+    var response = buildingService.modifyBuilding(request, bearerToken);
+
+    // Assert
+    assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    assertEquals("Zählernummer existiert bereits!", response.getBody());
+    verify(meterRepository, never()).saveAll(any());
+    verify(updateRepository, never()).insertAll(any());
+    verify(additionalCostRepository, never()).saveAllAndFlush(any());
+  }
+
+  @Test
+  void modifyBuilding_StaleVersion_WritesNothing() {
+    // Arrange
+    building.setLandlord(user);
+    // Another request modified the building after the landlord read it
+    building.setVersion(1);
+    when(buildingRepository.findById(anyInt())).thenReturn(Optional.of(building));
+
+    // Act & Assert
+    assertThrows(ObjectOptimisticLockingFailureException.class,
+        () -> buildingService.modifyBuilding(modifyBuildingDto, bearerToken));
+    verify(meterRepository, never()).saveAll(any());
+    verify(additionalCostRepository, never()).saveAllAndFlush(any());
+  }
+
   @ParameterizedTest
   @CsvSource({
       "invalidToken, UNAUTHORIZED, Bitte melde dich zuerst an!, false, false",
@@ -0,0 +1,144 @@
+package de.vermity.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import de.vermity.model.entity.Building;
+import de.vermity.model.entity.Flat;
+import de.vermity.model.entity.Person;
+import de.vermity.persistence.BuildingRepository;
+import de.vermity.persistence.SecondLevelCache;
+import de.vermity.util.CacheInvalidationBus;
+import de.vermity.util.CacheInvalidationEvent;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Test class for {@link BuildingStructureCache}.
+ *
+ * @author Cedric Stumpf
+ */
+@ExtendWith(MockitoExtension.class)
+// CacheInvalidationBus and SecondLevelCache are classes mocked by the inline mock maker
+@DisabledInNativeImage
+class BuildingStructureCacheTest {
+
+  @Mock
+  private BuildingRepository buildingRepository;
+
+  @Mock
+  private CacheInvalidationBus invalidationBus;
+
+  @Mock
+  private SecondLevelCache secondLevelCache;
+
+  @InjectMocks
+  private BuildingStructureCache buildingStructureCache;
+
+  private Flat flat;
+  private Building building;
+
+  @BeforeEach
+  void setUp() {
+    flat = Flat.builder().id(7).build();
+    building = Building.builder().id(3).landlord(Person.builder().id(11).build())
+        .flatList(List.of(flat, Flat.builder().id(8).build())).build();
+  }
+
+  @Test
+  void findBuildingByFlat_secondLookupUsesIndex() {
+    when(buildingRepository.findByFlatId(7)).thenReturn(Optional.of(building));
+    when(buildingRepository.findById(3)).thenReturn(Optional.of(building));
+
+    assertEquals(Optional.of(building), buildingStructureCache.findBuildingByFlat(flat));
+    assertEquals(Optional.of(building), buildingStructureCache.findBuildingByFlat(flat));
+    assertEquals(Optional.of(11), buildingStructureCache.findLandlordIdByBuildingId(3));
+
+    verify(buildingRepository, times(1)).findByFlatId(7);
+    verify(buildingRepository, times(1)).findById(3);
+  }
+
+  @Test
+  void findBuildingIdByFlatId_hitDoesNotQuery() {
+    when(buildingRepository.findByFlatId(7)).thenReturn(Optional.of(building));
+
+    assertEquals(Optional.of(3), buildingStructureCache.findBuildingIdByFlatId(7));
+    assertEquals(Optional.of(3), buildingStructureCache.findBuildingIdByFlatId(7));
+    assertEquals(Optional.of(3), buildingStructureCache.findBuildingIdByFlatId(8));
+    assertEquals(Optional.of(11), buildingStructureCache.findLandlordIdByBuildingId(3));
+
+    verify(buildingRepository, times(1)).findByFlatId(7);
+    verifyNoMoreInteractions(buildingRepository);
+  }
+
+  @Test
+  void evictBuilding_inTransaction_evictsAfterCommit() {
+    when(buildingRepository.findById(3)).thenReturn(Optional.of(building));
+    assertEquals(Optional.of(11), buildingStructureCache.findLandlordIdByBuildingId(3));
+
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      buildingStructureCache.evictBuilding(3);
+      // Before the commit a lookup still gets the cached id and does not index the old state
+      assertEquals(Optional.of(11), buildingStructureCache.findLandlordIdByBuildingId(3));
+      verify(buildingRepository, times(1)).findById(3);
+      verify(invalidationBus).publish(BuildingStructureCache.CACHE_NAME, 3);
+      TransactionSynchronizationManager.getSynchronizations()
+          .forEach(TransactionSynchronization::afterCommit);
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    assertEquals(Optional.of(11), buildingStructureCache.findLandlordIdByBuildingId(3));
+    verify(buildingRepository, times(2)).findById(3);
+  }
+
+  @Test
+  void evictBuilding_forcesReload() {
+    when(buildingRepository.findById(3)).thenReturn(Optional.of(building));
+
+    assertEquals(Optional.of(11), buildingStructureCache.findLandlordIdByBuildingId(3));
+    buildingStructureCache.evictBuilding(3);
+    assertEquals(Optional.of(11), buildingStructureCache.findLandlordIdByBuildingId(3));
+
+    verify(buildingRepository, times(2)).findById(3);
+    verify(invalidationBus).publish(BuildingStructureCache.CACHE_NAME, 3);
+  }
+
+  @Test
+  void onInvalidation_ofOtherInstance_forcesReload() {
+    when(buildingRepository.findById(3)).thenReturn(Optional.of(building));
+
+    assertEquals(Optional.of(11), buildingStructureCache.findLandlordIdByBuildingId(3));
+    buildingStructureCache.onInvalidation(new CacheInvalidationEvent("other-cache", "3"));
+    assertEquals(Optional.of(11), buildingStructureCache.findLandlordIdByBuildingId(3));
+    buildingStructureCache.onInvalidation(
+        new CacheInvalidationEvent(BuildingStructureCache.CACHE_NAME, "3"));
+    assertEquals(Optional.of(11), buildingStructureCache.findLandlordIdByBuildingId(3));
+
+    verify(buildingRepository, times(2)).findById(3);
+    verify(secondLevelCache).evictLocally(Building.class, 3);
+    verifyNoInteractions(invalidationBus);
+  }
+
+  @Test
+  void findLandlordIdByBuildingId_unknownBuilding() {
+    when(buildingRepository.findById(4)).thenReturn(Optional.empty());
+
+    assertTrue(buildingStructureCache.findLandlordIdByBuildingId(4).isEmpty());
+  }
+}
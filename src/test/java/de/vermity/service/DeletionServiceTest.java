@@ -0,0 +1,149 @@
+package de.vermity.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import de.vermity.model.entity.Building;
+import de.vermity.model.entity.Person;
+import de.vermity.persistence.BulkDeletion;
+import de.vermity.persistence.SecondLevelCache;
+import java.util.List;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Test class for {@link DeletionService}.
+ *
+ * @author Cedric Stumpf
+ */
+@ExtendWith(MockitoExtension.class)
+// BulkDeletion and TransactionTemplate are classes, mocking them needs the inline mock maker
+@DisabledInNativeImage
+class DeletionServiceTest {
+
+  @Mock
+  private BulkDeletion bulkDeletion;
+
+  @Mock
+  private TransactionTemplate transactionTemplate;
+
+  @Mock
+  private BuildingStructureCache buildingStructureCache;
+
+  @Mock
+  private SecondLevelCache secondLevelCache;
+
+  @InjectMocks
+  private DeletionService deletionService;
+
+  @BeforeEach
+  void setUp() {
+    ReflectionTestUtils.setField(deletionService, "soft", true);
+    ReflectionTestUtils.setField(deletionService, "purgeBatchSize", 20);
+  }
+
+  @Test
+  void deleteBuilding_soft_onlyMarksBuilding() {
+    deletionService.deleteBuilding(3);
+
+    verify(bulkDeletion).softDeleteBuildings(eq(List.of(3)), any());
+    verify(bulkDeletion, never()).deleteBuildings(any());
+    verify(buildingStructureCache).evictBuilding(3);
+    verify(secondLevelCache).evictLocally(Building.class, 3);
+    verify(secondLevelCache).evict(Building.class, 3);
+  }
+
+  @Test
+  void deleteBuilding_hard_deletesRows() {
+    ReflectionTestUtils.setField(deletionService, "soft", false);
+
+    deletionService.deleteBuilding(3);
+
+    verify(bulkDeletion).deleteBuildings(List.of(3));
+    verify(bulkDeletion, never()).softDeleteBuildings(any(), any());
+    verify(buildingStructureCache).evictBuilding(3);
+  }
+
+  @Test
+  void deletePerson_evictsBuildingsOfPerson() {
+    when(bulkDeletion.softDeletePerson(eq(7), any())).thenReturn(List.of(4, 5));
+
+    deletionService.deletePerson(7);
+
+    verify(buildingStructureCache).evictBuilding(4);
+    verify(buildingStructureCache).evictBuilding(5);
+    verify(secondLevelCache).evict(Building.class, 5);
+    verify(secondLevelCache).evict(Person.class, 7);
+  }
+
+  @Test
+  void deletePerson_unsavedPerson_deletesNothing() {
+    deletionService.deletePerson(null);
+
+    verifyNoInteractions(bulkDeletion, secondLevelCache);
+  }
+
+  @Test
+  void purge_failedBuilding_purgesTheOthers() {
+    runTransactions();
+    when(bulkDeletion.claimDeletedBuilding(anyInt())).thenReturn(true);
+    when(bulkDeletion.claimDeletedPerson(anyInt())).thenReturn(true);
+    when(bulkDeletion.findDeletedBuildingIds(20)).thenReturn(List.of(1, 2));
+    when(bulkDeletion.findDeletedPersonIds(20)).thenReturn(List.of(9));
+    doThrow(new CannotAcquireLockException("Deadlock")).when(bulkDeletion)
+        .deleteBuildings(List.of(1));
+
+    deletionService.purge();
+
+    verify(bulkDeletion).deleteBuildings(List.of(2));
+    verify(bulkDeletion).deletePerson(9);
+  }
+
+  @Test
+  void purge_claimedByAnotherInstance_skipsBuilding() {
+    runTransactions();
+    when(bulkDeletion.findDeletedBuildingIds(20)).thenReturn(List.of(1, 2));
+    when(bulkDeletion.findDeletedPersonIds(20)).thenReturn(List.of());
+    when(bulkDeletion.claimDeletedBuilding(1)).thenReturn(false);
+    when(bulkDeletion.claimDeletedBuilding(2)).thenReturn(true);
+
+    deletionService.purge();
+
+    verify(bulkDeletion, never()).deleteBuildings(List.of(1));
+    verify(bulkDeletion).deleteBuildings(List.of(2));
+  }
+
+  @Test
+  void deleteDetachedCosts_deletesUnreferencedCosts() {
+    deletionService.deleteDetachedCosts(List.of(5, 6));
+
+    verify(bulkDeletion).deleteUnreferencedCosts(List.of(5, 6));
+  }
+
+  private void runTransactions() {
+    when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+        invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    doAnswer(invocation -> {
+      invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+      return null;
+    }).when(transactionTemplate).executeWithoutResult(any());
+  }
+}
@@ -1,10 +1,13 @@
 package de.vermity.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import de.vermity.model.dto.AddressDto;
@@ -24,6 +27,7 @@ import de.vermity.model.entity.Person;
 import de.vermity.model.entity.Update;
 import de.vermity.persistence.BuildingRepository;
 import de.vermity.persistence.FlatRepository;
+import de.vermity.persistence.InvoiceRepository;
 import de.vermity.persistence.MeterRepository;
 import de.vermity.persistence.PersonRepository;
 import de.vermity.persistence.UpdateRepository;
@@ -36,8 +40,12 @@ import de.vermity.util.enums.MeterType;
 import de.vermity.util.enums.Role;
 import io.jsonwebtoken.JwtException;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
@@ -46,6 +54,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 
 /**
  * Test class for the FlatService class.
@@ -53,6 +62,8 @@ import org.springframework.http.HttpStatus;
  * @author Cedric Stumpf
  */
 @ExtendWith(MockitoExtension.class)
+// Repositories and services are mocked, the mock classes are generated at runtime
+@DisabledInNativeImage
 class FlatServiceTest {
 
   @Mock
@@ -76,6 +87,15 @@ class FlatServiceTest {
   @Mock
   private JWTGenerator jwtGenerator;
 
+  @Mock
+  private BuildingStructureCache buildingStructureCache;
+
+  @Mock
+  private AuthorizationService authorizationService;
+
+  @Mock
+  private InvoiceRepository invoiceRepository;
+
   @InjectMocks
   private FlatService flatService;
 
@@ -83,7 +103,8 @@ class FlatServiceTest {
   private static Stream<Arguments> provideUpdateTenant() {
     return Stream.of(
         Arguments.of(
-            new ModifyFlatDto(1, 1, "newTenantEmail", "newTenantFirstName", "newTenantLastName", 1),
+            new ModifyFlatDto(1, 1, "newTenantEmail", "newTenantFirstName", "newTenantLastName", 1,
+                0),
             "token",
             Optional.of(
                 Person.builder().id(1).phoneNumber("+49000000").email("Landlord@t.de")
@@ -102,7 +123,8 @@ class FlatServiceTest {
             null
         ),
         Arguments.of(
-            new ModifyFlatDto(1, 1, "newTenantEmail", "newTenantFirstName", "newTenantLastName", 0),
+            new ModifyFlatDto(1, 1, "newTenantEmail", "newTenantFirstName", "newTenantLastName", 0,
+                0),
             "token",
             Optional.of(
                 Person.builder().phoneNumber("+49000000").email("Landlord@t.de").gender(Gender.MALE)
@@ -115,7 +137,8 @@ class FlatServiceTest {
             null
         ),
         Arguments.of(
-            new ModifyFlatDto(1, 1, "newTenantEmail", "newTenantFirstName", "newTenantLastName", 0),
+            new ModifyFlatDto(1, 1, "newTenantEmail", "newTenantFirstName", "newTenantLastName", 0,
+                0),
             "token",
             Optional.of(
                 Person.builder().phoneNumber("+49000000").email("Landlord@t.de").gender(Gender.MALE)
@@ -128,7 +151,8 @@ class FlatServiceTest {
             null
         ),
         Arguments.of(
-            new ModifyFlatDto(1, 1, "newTenantEmail", "newTenantFirstName", "newTenantLastName", 0),
+            new ModifyFlatDto(1, 1, "newTenantEmail", "newTenantFirstName", "newTenantLastName", 0,
+                0),
             "token",
             Optional.empty(),
             null,
@@ -139,7 +163,8 @@ class FlatServiceTest {
             null
         ),
         Arguments.of(
-            new ModifyFlatDto(1, 1, "newTenantEmail", "newTenantFirstName", "newTenantLastName", 0),
+            new ModifyFlatDto(1, 1, "newTenantEmail", "newTenantFirstName", "newTenantLastName", 0,
+                0),
             "token",
             Optional.of(
                 Person.builder().phoneNumber("+49000000").email("Landlord@t.de").gender(Gender.MALE)
@@ -152,7 +177,7 @@ class FlatServiceTest {
             null
         ),
         Arguments.of(
-            new ModifyFlatDto(1, 1, "newTenantEmail", "", "", 0),
+            new ModifyFlatDto(1, 1, "newTenantEmail", "", "", 0, 0),
             "token",
             Optional.of(
                 Person.builder().id(2).phoneNumber("+49000000").email("Landlord@t.de")
@@ -167,7 +192,7 @@ class FlatServiceTest {
             null
         ),
         Arguments.of(
-            new ModifyFlatDto(1, 1, "newTenantEmail", "", "", 0),
+            new ModifyFlatDto(1, 1, "newTenantEmail", "", "", 0, 0),
             "token",
             Optional.of(
                 Person.builder().id(1).phoneNumber("+49000000").email("Landlord@t.de")
@@ -186,7 +211,7 @@ class FlatServiceTest {
         ),
         Arguments.of(
             new ModifyFlatDto(
-                1, 1, "", "new Name", "Tenant", 1),
+                1, 1, "", "new Name", "Tenant", 1, 0),
             "token",
             Optional.of(
                 Person.builder().id(1).phoneNumber("+49000000").email("Landlord@t.de")
@@ -203,7 +228,7 @@ class FlatServiceTest {
             null,
             Person.builder().firstName("new Name").lastName("Tenant").build()
         ),
-        Arguments.of(new ModifyFlatDto(1, 1, "", "NotWorking", "", 1), "token",
+        Arguments.of(new ModifyFlatDto(1, 1, "", "NotWorking", "", 1, 0), "token",
             Optional.of(
                 Person.builder().id(1).phoneNumber("+49000000").email("Landlord@t.de")
                     .gender(Gender.MALE)
@@ -221,7 +246,7 @@ class FlatServiceTest {
             null,
             null
         ),
-        Arguments.of(new ModifyFlatDto(1, 1, "", "", "", 0), "token",
+        Arguments.of(new ModifyFlatDto(1, 1, "", "", "", 0, 0), "token",
             Optional.of(
                 Person.builder().id(1).phoneNumber("+49000000").email("Landlord@t.de")
                     .gender(Gender.MALE)
@@ -239,7 +264,7 @@ class FlatServiceTest {
             null,
             null
         ),
-        Arguments.of(new ModifyFlatDto(1, 1, "newTenant", "", "", 0), "token",
+        Arguments.of(new ModifyFlatDto(1, 1, "newTenant", "", "", 0, 0), "token",
             Optional.of(
                 Person.builder().id(1).phoneNumber("+49000000").email("Landlord@t.de")
                     .gender(Gender.MALE)
@@ -286,7 +311,7 @@ class FlatServiceTest {
                 List.of(
                     AdditionalCost.builder().amount(30).frequency(Frequency.MONTHLY).distribution(
                         Distribution.NONE).description("Garage").id(1).build()), 300, 500,
-                List.of()))
+                List.of(), 0))
         ),
         Arguments.of(
             "token",
@@ -321,7 +346,7 @@ class FlatServiceTest {
                 List.of(
                     new InvoiceDto(1, false, "pdf"),
                     new InvoiceDto(2, true, "abc")
-                )))
+                ), 0))
         ),
         Arguments.of(
             "token",
@@ -678,6 +703,10 @@ class FlatServiceTest {
       when(userUtil.verifyUser(anyString())).thenReturn(landlordOptional);
     }
     lenient().when(buildingRepository.findById(anyInt())).thenReturn(buildingOptional);
+    lenient().when(flatRepository.findByIdAndBuilding_Id(anyInt(), anyInt()))
+        .thenAnswer(invocation -> buildingOptional == null ? Optional.empty()
+            : buildingOptional.flatMap(b -> b.getFlatList().stream()
+                .filter(f -> f.getId().equals(invocation.getArgument(0))).findFirst()));
     lenient().when(personRepository.findByEmail(anyString())).thenReturn(tenantOptional);
     if (tenantOptional == null) {
       lenient().when(personRepository.saveAndFlush(any())).thenReturn(tenant);
@@ -706,6 +735,10 @@ class FlatServiceTest {
       when(userUtil.verifyUser(anyString())).thenReturn(personOptional);
     }
     lenient().when(flatRepository.findByTenant(any())).thenReturn(flatList);
+    // The PDFs are selected in one query, answered from the invoices of the flats
+    lenient().when(invoiceRepository.findPdfsByIds(any())).thenReturn(flatList == null ? Map.of()
+        : flatList.stream().flatMap(flat -> flat.getInvoiceList().stream())
+            .collect(Collectors.toMap(Invoice::getId, Invoice::getPdf)));
 
     var response = flatService.getFlat(token);
 
@@ -730,9 +763,20 @@ class FlatServiceTest {
     } else {
       when(userUtil.verifyUser(anyString())).thenReturn(personOptional);
     }
-    lenient().when(flatRepository.findById(anyInt())).thenReturn(flatOptional);
+    boolean flatFound = flatOptional != null && flatOptional.isPresent();
+    lenient().when(flatRepository.existsById(anyInt())).thenReturn(flatFound);
+    lenient().when(authorizationService.isTenantOfFlat(anyInt(), anyInt())).thenReturn(
+        flatFound && flatOptional.get().getTenant().getId()
+            .equals(personOptional.map(Person::getId).orElse(null)));
     lenient().when(meterRepository.findById(anyInt())).thenReturn(meterOptional);
+    lenient().when(authorizationService.isMeterOfFlat(anyInt(), anyInt())).thenReturn(
+        flatFound && meterOptional != null && meterOptional.isPresent()
+            && flatOptional.get().getMeterList().contains(meterOptional.get()));
     lenient().when(updateRepository.saveAndFlush(any())).thenReturn(update);
+    // Like the database, a reading lower than the current one is not appended
+    lenient().when(updateRepository.appendReading(anyInt(), anyInt(), anyInt()))
+        .thenAnswer(invocation -> meterOptional.get().getReading()
+            <= invocation.<Integer>getArgument(2) ? 1 : 0);
 
     var response = flatService.updateMeterReading(updateMeterReadingDto, token);
 
@@ -757,7 +801,13 @@ class FlatServiceTest {
       when(userUtil.verifyUser(anyString())).thenReturn(personOptional);
     }
     lenient().when(flatRepository.findById(anyInt())).thenReturn(flatOptional);
-    lenient().when(buildingRepository.findByFlatListContaining(any())).thenReturn(buildingOptional);
+    // The cache maps the flat to building 2 and its landlord 5, the landlord is loaded by id
+    Optional<Person> landlord = buildingOptional == null ? Optional.empty()
+        : buildingOptional.map(Building::getLandlord);
+    lenient().when(buildingStructureCache.findBuildingIdByFlatId(anyInt()))
+        .thenReturn(landlord.map(person -> 2));
+    lenient().when(buildingStructureCache.findLandlordIdByBuildingId(2)).thenReturn(Optional.of(5));
+    lenient().when(personRepository.findById(5)).thenReturn(landlord);
 
     var response = flatService.getLandlordByFlat(flatId, token);
 
@@ -765,4 +815,49 @@ class FlatServiceTest {
     assertEquals(expectedMessage, response.getBody());
   }
 
-}
\ No newline at end of file
+  @Test
+  void updateMeterReadingRejectsReadingOvertakenConcurrently() {
+    Person tenant = Person.builder().id(1).phoneNumber("+49000000").email("Tenant@t.de")
+        .gender(Gender.MALE).roleList(List.of(Role.TENANT)).firstName("Ten").lastName("Ant")
+        .build();
+    Meter meter = Meter.builder().id(1).meterNr("12345").type(MeterType.GAS).reading(98765)
+        .costPerUnit(0.48).build();
+    when(userUtil.verifyUser(anyString())).thenReturn(Optional.of(tenant));
+    when(flatRepository.existsById(anyInt())).thenReturn(true);
+    when(authorizationService.isTenantOfFlat(1, 1)).thenReturn(true);
+    when(meterRepository.findById(anyInt())).thenReturn(Optional.of(meter));
+    when(authorizationService.isMeterOfFlat(1, 1)).thenReturn(true);
+    // Another request stored a higher reading after the meter was loaded
+    when(updateRepository.appendReading(anyInt(), anyInt(), anyInt())).thenReturn(0);
+
+    var response = flatService.updateMeterReading(new UpdateMeterReadingDto(1, 1, 123456),
+        "token");
+
+    assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    assertEquals("Neuer Zählerstand ist niedriger als der aktuelle Zählerstand",
+        response.getBody());
+    verify(updateRepository).appendReading(1, 1, 123456);
+    verify(updateRepository, never()).saveAndFlush(any());
+  }
+
+  @Test
+  void updateTenantRejectsStaleVersion() {
+    Person landlord = Person.builder().id(1).phoneNumber("+49000000").email("Landlord@t.de")
+        .gender(Gender.MALE).roleList(List.of(Role.LANDLORD)).firstName("Land").lastName("Lord")
+        .build();
+    Person tenant = Person.builder().id(2).email("Tenant@t.de").roleList(List.of(Role.TENANT))
+        .build();
+    when(userUtil.verifyUser(anyString())).thenReturn(Optional.of(landlord));
+    when(buildingRepository.findById(1)).thenReturn(
+        Optional.of(Building.builder().id(1).landlord(landlord).build()));
+    when(personRepository.findByEmail("Tenant@t.de")).thenReturn(Optional.of(tenant));
+    // Another landlord request changed the tenant after the flat was read
+    when(flatRepository.findByIdAndBuilding_Id(1, 1)).thenReturn(
+        Optional.of(Flat.builder().id(1).version(2).build()));
+
+    assertThrows(ObjectOptimisticLockingFailureException.class, () -> flatService.updateTenant(
+        new ModifyFlatDto(1, 1, "Tenant@t.de", "", "", 1, 1), "token"));
+    verify(flatRepository, never()).saveAndFlush(any());
+  }
+
+}
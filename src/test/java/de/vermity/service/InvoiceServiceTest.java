@@ -19,6 +19,7 @@ import de.vermity.util.enums.Gender;
 import io.jsonwebtoken.JwtException;
 import java.util.Optional;
 import java.util.stream.Stream;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
@@ -34,6 +35,8 @@ import org.springframework.http.HttpStatus;
  * @author Cedric Stumpf
  */
 @ExtendWith(MockitoExtension.class)
+// Mocks the repositories and ArchiveService, which needs bytecode generation at runtime
+@DisabledInNativeImage
 class InvoiceServiceTest {
 
   @Mock
@@ -51,6 +54,12 @@ class InvoiceServiceTest {
   @Mock
   private FlatRepository flatRepository;
 
+  @Mock
+  private BuildingStructureCache buildingStructureCache;
+
+  @Mock
+  private ArchiveService archiveService;
+
   @InjectMocks
   private InvoiceService invoiceService;
 
@@ -188,7 +197,7 @@ class InvoiceServiceTest {
       lenient().when(userUtil.verifyUser(anyString())).thenReturn(landlordOptional);
     }
     lenient().when(flatRepository.findById(any())).thenReturn(flatOptional);
-    lenient().when(buildingRepository.findByFlatListContaining(any())).thenReturn(buildingOptional);
+    lenient().when(buildingStructureCache.findBuildingByFlat(any())).thenReturn(buildingOptional);
     lenient().when(invoiceRepository.saveAndFlush(any())).thenReturn(invoiceOptional);
 
     var response = invoiceService.createInvoice(token, flatId, totalRentPaid);
@@ -2,6 +2,7 @@ package de.vermity.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 import de.vermity.model.dto.AddressDto;
 import de.vermity.model.dto.BuildingDto;
@@ -19,8 +20,13 @@ import de.vermity.util.enums.Frequency;
 import de.vermity.util.enums.Gender;
 import de.vermity.util.enums.MeterType;
 import de.vermity.util.enums.Role;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.zip.ZipInputStream;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
@@ -29,6 +35,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.HttpStatus;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
@@ -37,6 +44,7 @@ import org.springframework.transaction.annotation.Transactional;
  * @author Cedric Stumpf
  */
 @SpringBootTest
+@TestPropertySource(properties = "vermity.admission.enabled=false")
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
 @Transactional
 class InvoiceServiceTestWithPersistence {
@@ -79,7 +87,8 @@ class InvoiceServiceTestWithPersistence {
 
     ModifyFlatDto modifyFlatDto = new ModifyFlatDto(building.getFirst().buildingId(),
         building.getFirst().flatList().getFirst()
-            .flatId(), tenantRegisterDto.email(), "", "", 1);
+            .flatId(), tenantRegisterDto.email(), "", "", 1,
+        building.getFirst().flatList().getFirst().version());
     flatService.updateTenant(modifyFlatDto, landlordLogin.token());
 
     flatService.updateMeterReading(
@@ -121,9 +130,9 @@ class InvoiceServiceTestWithPersistence {
     );
 
     FlatDto flatDto = new FlatDto(0, meterDtoList, "1.OG", 3, 100, 2, additionList, 300, 500,
-        List.of());
+        List.of(), 0);
     FlatDto flatDto2 = new FlatDto(0, List.of(), "1.OG rechts", 4, 400, 6, additionList, 1300, 1500,
-        List.of());
+        List.of(), 0);
     List<FlatDto> flatList = List.of(flatDto, flatDto2);
 
     List<AdditionalCost> operatingCosts = List.of(
@@ -134,7 +143,7 @@ class InvoiceServiceTestWithPersistence {
         new AdditionalCost(0, "Garden", "Gardening", 25, Distribution.NONE, Frequency.MONTHLY)
     );
 
-    return new BuildingDto(0, flatList, operatingCosts, addressDto);
+    return new BuildingDto(0, flatList, operatingCosts, addressDto, 0);
   }
 
   @ParameterizedTest
@@ -208,4 +217,30 @@ class InvoiceServiceTestWithPersistence {
     assertEquals(expectedStatus, response.getStatusCode());
   }
 
-}
\ No newline at end of file
+  @ParameterizedTest
+  @CsvSource({
+      "OK, 500",
+  })
+  void testExportInvoices(
+      HttpStatus expectedStatus,
+      double totalRentPaid
+  ) throws IOException {
+    invoiceService.createInvoice(landlordLogin.token(), building.getFirst().flatList().getFirst()
+        .flatId(), totalRentPaid);
+
+    var response = invoiceService.exportInvoices(building.getFirst().buildingId(),
+        LocalDate.now().minusYears(1).getYear(), landlordLogin.token());
+
+    assertEquals(expectedStatus, response.getStatusCode());
+    assertNotNull(response.getBody());
+    ByteArrayOutputStream zip = new ByteArrayOutputStream();
+    response.getBody().writeTo(zip);
+    try (ZipInputStream zipInputStream = new ZipInputStream(
+        new ByteArrayInputStream(zip.toByteArray()))) {
+      assertNotNull(zipInputStream.getNextEntry());
+      assertEquals("%PDF", new String(zipInputStream.readNBytes(4), StandardCharsets.US_ASCII));
+      assertNull(zipInputStream.getNextEntry());
+    }
+  }
+
+}
@@ -0,0 +1,191 @@
+package de.vermity.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.vermity.loadtest.PortfolioGenerator;
+import de.vermity.loadtest.PortfolioGenerator.PortfolioSize;
+import de.vermity.model.dto.UpdateMeterReadingDto;
+import de.vermity.model.entity.Flat;
+import de.vermity.model.entity.Meter;
+import de.vermity.model.entity.Update;
+import de.vermity.persistence.AdditionalCostRepository;
+import de.vermity.persistence.AddressRepository;
+import de.vermity.persistence.BuildingRepository;
+import de.vermity.persistence.FlatRepository;
+import de.vermity.persistence.InvoiceRepository;
+import de.vermity.persistence.MeterRepository;
+import de.vermity.persistence.PersonRepository;
+import de.vermity.persistence.UpdateRepository;
+import de.vermity.security.JWTGenerator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Submits readings for the same meter from many threads and checks that no accepted reading is
+ * lost and the meter ends at the highest one.
+ *
+ * @author Cedric Stumpf
+ */
+@Slf4j
+@SpringBootTest
+@TestInstance(Lifecycle.PER_CLASS)
+@TestPropertySource(locations = "classpath:application-test.properties", properties =
+    "spring.datasource.url=jdbc:h2:mem:meter-concurrency;MODE=MariaDB;LOCK_TIMEOUT=10000")
+class MeterReadingConcurrencyTest {
+
+  private static final int THREADS = 8;
+  private static final int READINGS_PER_THREAD = 50;
+
+  @Autowired
+  private FlatService flatService;
+  @Autowired
+  private JWTGenerator jwtGenerator;
+  @Autowired
+  private PersonRepository personRepository;
+  @Autowired
+  private AddressRepository addressRepository;
+  @Autowired
+  private BuildingRepository buildingRepository;
+  @Autowired
+  private FlatRepository flatRepository;
+  @Autowired
+  private MeterRepository meterRepository;
+  @Autowired
+  private UpdateRepository updateRepository;
+  @Autowired
+  private AdditionalCostRepository additionalCostRepository;
+  @Autowired
+  private InvoiceRepository invoiceRepository;
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+  @Autowired
+  private PasswordEncoder passwordEncoder;
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
+  private int flatId;
+  private int meterId;
+  private String bearerToken;
+
+  @BeforeAll
+  void generatePortfolio() {
+    new PortfolioGenerator(personRepository, addressRepository, buildingRepository,
+        flatRepository, meterRepository, additionalCostRepository, invoiceRepository, jdbcTemplate,
+        passwordEncoder, transactionTemplate).generate(new PortfolioSize(1, 1, 1, 1, 1, false, 42L));
+    Map<String, Object> meter = jdbcTemplate.queryForMap("""
+        select f.id flat_id, fm.meter_list_id meter_id, p.email email from flat f
+        join flat_meter_list fm on fm.flat_id = f.id join person p on p.id = f.tenant_id
+        order by f.id limit 1""");
+    flatId = ((Number) meter.get("flat_id")).intValue();
+    meterId = ((Number) meter.get("meter_id")).intValue();
+    bearerToken = "Bearer " + jwtGenerator.generateAccessToken((String) meter.get("email"));
+  }
+
+  @Test
+  void concurrentReadingsAreNotLost() throws Exception {
+    int start = meterRepository.findById(meterId).orElseThrow().getReading();
+    int updatesBefore = countUpdates();
+    int lastIdBefore = jdbcTemplate.queryForObject(
+        "select coalesce(max(id), 0) from update_tbl where meter_id = ?", Integer.class, meterId);
+    AtomicInteger nextReading = new AtomicInteger(start);
+    AtomicInteger accepted = new AtomicInteger();
+    AtomicInteger rejected = new AtomicInteger();
+
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    long startNanos = System.nanoTime();
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < THREADS; i++) {
+        futures.add(executor.submit(() -> {
+          for (int j = 0; j < READINGS_PER_THREAD; j++) {
+            var response = submit(nextReading.incrementAndGet());
+            if (response.getStatusCode() == HttpStatus.OK) {
+              accepted.incrementAndGet();
+            } else {
+              // Overtaken by a higher reading of another thread
+              assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+              rejected.incrementAndGet();
+            }
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    double seconds = (System.nanoTime() - startNanos) / 1e9;
+
+    log.info("{} readings in {} s ({} per second), {} accepted, {} overtaken",
+        THREADS * READINGS_PER_THREAD, String.format("%.2f", seconds),
+        Math.round(THREADS * READINGS_PER_THREAD / seconds), accepted.get(), rejected.get());
+    assertEquals(THREADS * READINGS_PER_THREAD, accepted.get() + rejected.get());
+    assertTrue(accepted.get() > 0);
+    assertEquals(accepted.get(), countUpdates() - updatesBefore);
+    // No accepted reading is lower than one accepted before it
+    List<Integer> logged = jdbcTemplate.queryForList("select reading from update_tbl"
+        + " where meter_id = ? and id > ? order by id", Integer.class, meterId, lastIdBefore);
+    assertEquals(logged.stream().sorted().toList(), logged);
+    assertEquals(nextReading.get(), meterRepository.findById(meterId).orElseThrow().getReading());
+  }
+
+  @Test
+  void landlordCorrectionLowersTheReading() {
+    Meter meter = meterRepository.findById(meterId).orElseThrow();
+    int corrected = meter.getReading() - 100;
+
+    transactionTemplate.executeWithoutResult(status -> updateRepository.insertAll(List.of(
+        Update.builder().meter(meter).reading(corrected).build())));
+
+    assertEquals(corrected, meterRepository.findById(meterId).orElseThrow().getReading());
+    // Tenants continue from the corrected reading
+    assertEquals(HttpStatus.BAD_REQUEST, submit(corrected - 1).getStatusCode());
+    assertEquals(HttpStatus.OK, submit(corrected + 1).getStatusCode());
+    assertEquals(corrected + 1, meterRepository.findById(meterId).orElseThrow().getReading());
+  }
+
+  @Test
+  void staleFlatIsNotSaved() {
+    Flat first = flatRepository.findById(flatId).orElseThrow();
+    Flat second = flatRepository.findById(flatId).orElseThrow();
+
+    first.setResidents(first.getResidents() + 1);
+    flatRepository.saveAndFlush(first);
+    second.setResidents(second.getResidents() + 2);
+
+    assertThrows(ObjectOptimisticLockingFailureException.class,
+        () -> flatRepository.saveAndFlush(second));
+  }
+
+  private ResponseEntity<?> submit(int reading) {
+    return flatService.updateMeterReading(new UpdateMeterReadingDto(flatId, meterId, reading),
+        bearerToken);
+  }
+
+  private int countUpdates() {
+    return jdbcTemplate.queryForObject("select count(*) from update_tbl where meter_id = ?",
+        Integer.class, meterId);
+  }
+}
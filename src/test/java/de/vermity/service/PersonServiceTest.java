@@ -7,9 +7,10 @@ import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyString;
-import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import de.vermity.model.dto.AddressDto;
@@ -17,28 +18,39 @@ import de.vermity.model.dto.AuthPersonDto;
 import de.vermity.model.dto.LoginDto;
 import de.vermity.model.dto.PasswordChangeDto;
 import de.vermity.model.dto.PersonDto;
+import de.vermity.model.dto.RefreshTokenDto;
 import de.vermity.model.dto.RegisterDto;
+import de.vermity.model.dto.TokenDto;
 import de.vermity.model.entity.Address;
 import de.vermity.model.entity.Person;
-import de.vermity.persistence.AddressRepository;
 import de.vermity.persistence.PersonRepository;
+import de.vermity.persistence.SecondLevelCache;
+import de.vermity.security.AdmissionControl;
 import de.vermity.security.JWTGenerator;
+import de.vermity.security.PersonPrincipal;
 import de.vermity.util.UserUtil;
 import de.vermity.util.enums.Gender;
 import de.vermity.util.enums.Role;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.InvalidKeyException;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalLong;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentMatchers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
@@ -51,6 +63,8 @@ import org.springframework.security.crypto.password.PasswordEncoder;
  * @author Cedric Stumpf <br> Test class for {@link PersonService}
  */
 @ExtendWith(MockitoExtension.class)
+// Mocks AuthenticationManager and the repositories, a native image cannot define classes
+@DisabledInNativeImage
 class PersonServiceTest {
 
   @Mock
@@ -69,7 +83,16 @@ class PersonServiceTest {
   private UserUtil userUtil;
 
   @Mock
-  private AddressRepository addressRepository;
+  private AddressResolver addressResolver;
+
+  @Mock
+  private AdmissionControl admissionControl;
+
+  @Mock
+  private SecondLevelCache secondLevelCache;
+
+  @Mock
+  private DeletionService deletionService;
 
   @InjectMocks
   private PersonService personService;
@@ -104,6 +127,7 @@ class PersonServiceTest {
     verify(personRepository, times(1)).findByEmail(personDto.email());
     verify(userUtil, times(1)).isPasswordValid(personDto.password());
     verify(personRepository, times(1)).saveAndFlush(any(Person.class));
+    verify(addressResolver, times(1)).emptyAddress();
     assertAll(
         () -> assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED),
         () -> assertThat(response.getBody()).isEqualTo("Benutzer erstellt"));
@@ -195,15 +219,14 @@ class PersonServiceTest {
 
     // when
     when(userUtil.verifyUser(token))
-        .thenReturn(Optional.of(Person.builder().password("Password1234556!").build()));
+        .thenReturn(Optional.of(Person.builder().id(7).password("Password1234556!").build()));
     when(passwordEncoder.matches(authPersonDto.password(), "Password1234556!")).thenReturn(true);
-    doNothing().when(personRepository).delete(any(Person.class));
     var response = personService.deleteUser(authPersonDto, token);
 
     // then
     verify(userUtil, times(1)).verifyUser(token);
     verify(passwordEncoder, times(1)).matches(authPersonDto.password(), "Password1234556!");
-    verify(personRepository, times(1)).delete(any(Person.class));
+    verify(deletionService, times(1)).deletePerson(7);
     assertAll(
         () -> assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK),
         () -> assertThat(response.getBody()).isEqualTo("Benutzer gelöscht"));
@@ -318,63 +341,53 @@ class PersonServiceTest {
   void loginUser_withValidCredentials_returnsPersonDto() {
     // given
     // create user
-    RegisterDto personDto =
-        new RegisterDto(
-            "Tester",
-            "Test",
-            MALE,
-            "+49123456789",
-            "t@tester.com",
-            LocalDate.of(2000, 1, 1),
-            "Password1234556!",
-            List.of(Role.TENANT));
+    Person person =
+        Person.builder()
+            .firstName("Tester")
+            .lastName("Test")
+            .gender(MALE)
+            .birthDate(LocalDate.of(2000, 1, 1))
+            .email("t@tester.com")
+            .roleList(List.of(Role.TENANT))
+            .phoneNumber("+49123456789")
+            .password("Password1234556!")
+            .address(
+                Address.builder()
+                    .city("city")
+                    .country("country")
+                    .zip(123412)
+                    .state("state")
+                    .street("street")
+                    .build())
+            .build();
 
     SecurityContext context = SecurityContextHolder.createEmptyContext();
+    List<SimpleGrantedAuthority> authorities =
+        List.of(new SimpleGrantedAuthority(Role.TENANT.name()));
     Authentication authentication =
         new UsernamePasswordAuthenticationToken(
-            "t@tester.com",
-            "Password1234556!",
-            List.of(new SimpleGrantedAuthority(Role.TENANT.name())));
+            new PersonPrincipal(person, authorities), "Password1234556!", authorities);
     context.setAuthentication(authentication);
     SecurityContextHolder.setContext(context);
 
     // when
-    when(personRepository.findByEmail(personDto.email()))
-        .thenReturn(
-            Optional.of(
-                Person.builder()
-                    .firstName("Tester")
-                    .lastName("Test")
-                    .gender(MALE)
-                    .birthDate(LocalDate.of(2000, 1, 1))
-                    .email("asd@asd.de")
-                    .roleList(List.of(Role.TENANT))
-                    .phoneNumber("+49123456789")
-                    .password("Password1234556!")
-                    .address(
-                        Address.builder()
-                            .city("city")
-                            .country("country")
-                            .zip(123412)
-                            .state("state")
-                            .street("street")
-                            .build())
-                    .build()));
-    when(passwordEncoder.matches("Password1234556!", "Password1234556!")).thenReturn(true);
-
     when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
         .thenReturn(authentication);
     when(jwtGenerator.generateToken(any())).thenReturn("Bearer Token");
     var response = personService.loginUser(new LoginDto("t@tester.com", "Password1234556!"));
 
     // then
-    verify(personRepository, times(1)).findByEmail(personDto.email());
-    verify(passwordEncoder, times(1)).matches("Password1234556!", "Password1234556!");
+    // the password is only verified by the authentication manager
+    verify(personRepository, never()).findByEmail(any());
+    verifyNoInteractions(passwordEncoder);
     verify(jwtGenerator, times(1)).generateToken(any());
     verify(authenticationManager, times(1)).authenticate(any());
     assertAll(
         () -> assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK),
         () -> assertThat(response.getBody()).isInstanceOf(PersonDto.class),
+        () ->
+            assertThat(((PersonDto) Objects.requireNonNull(response.getBody())).email())
+                .isEqualTo("t@tester.com"),
         () ->
             assertThat(
                 ((PersonDto) Objects.requireNonNull(response.getBody()))
@@ -383,6 +396,24 @@ class PersonServiceTest {
                 .isTrue());
   }
 
+  /**
+   * @author Cedric Stumpf <br> Test method for {@link PersonService#loginUser(LoginDto)} tests for
+   * too many login attempts of an account returns too many requests without checking the password
+   */
+  @Test
+  void loginUser_withTooManyAttempts_returnsTooManyRequests() {
+    // when
+    when(admissionControl.tryLoginForAccount("t@tester.com")).thenReturn(OptionalLong.of(30));
+    var response = personService.loginUser(new LoginDto("t@tester.com", "Invalid"));
+
+    // then
+    verifyNoInteractions(authenticationManager, passwordEncoder);
+    assertAll(
+        () -> assertThat(response.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS),
+        () -> assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("30"),
+        () -> assertThat(response.getBody()).isEqualTo(AdmissionControl.TOO_MANY_REQUESTS));
+  }
+
   /**
    * @author Cedric Stumpf <br> Test method for {@link PersonService#loginUser(LoginDto)} tests for
    * invalid credentials returns unauthorized
@@ -442,6 +473,24 @@ class PersonServiceTest {
         () -> assertThat(response.getBody()).isEqualTo("JWT erstellung fehlgeschlagen"));
   }
 
+  /**
+   * @author Cedric Stumpf <br> Test method for {@link PersonService#loginUser(LoginDto)} tests for
+   * too many login attempts of an account returns too many requests without checking the password
+   */
+  @Test
+  void loginUser_withTooManyAttempts_returnsTooManyRequests() {
+    // when
+    when(admissionControl.tryLoginForAccount("t@tester.com")).thenReturn(OptionalLong.of(30));
+    var response = personService.loginUser(new LoginDto("t@tester.com", "Invalid"));
+
+    // then
+    verifyNoInteractions(authenticationManager, passwordEncoder);
+    assertAll(
+        () -> assertThat(response.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS),
+        () -> assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("30"),
+        () -> assertThat(response.getBody()).isEqualTo(AdmissionControl.TOO_MANY_REQUESTS));
+  }
+
   /**
    * @author Cedric Stumpf <br> Test method for {@link PersonService#loginUser(LoginDto)} tests for
    * invalid credentials returns unauthorized
@@ -502,29 +551,129 @@ class PersonServiceTest {
   @Test
   void loginUser_withPasswordMissMatch_returnsUnauthorized() {
     // given
-    SecurityContext context = SecurityContextHolder.createEmptyContext();
-    Authentication authentication =
-        new UsernamePasswordAuthenticationToken(
-            "t@tester.com",
-            "Password1234556!",
-            List.of(new SimpleGrantedAuthority(Role.TENANT.name())));
-    context.setAuthentication(authentication);
-    SecurityContextHolder.setContext(context);
+
     // when
     when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
-        .thenReturn(authentication);
-    when(jwtGenerator.generateToken(any())).thenReturn("Bearer Token");
-    when(personRepository.findByEmail(any()))
-        .thenReturn(Optional.of(Person.builder().password("Password1234556!").build()));
-    when(passwordEncoder.matches(any(), any())).thenReturn(false);
+        .thenThrow(new BadCredentialsException("Bad credentials"));
 
     var response = personService.loginUser(new LoginDto("t@tester.com", "Invalid"));
 
     // then
     verify(authenticationManager, times(1)).authenticate(any());
-    verify(jwtGenerator, times(1)).generateToken(any());
-    verify(personRepository, times(1)).findByEmail(any());
-    verify(passwordEncoder, times(1)).matches(any(), any());
+    verifyNoInteractions(jwtGenerator, personRepository, passwordEncoder);
+    assertAll(
+        () -> assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED),
+        () -> assertThat(response.getBody()).isEqualTo("Invalide Anmeldeinformationen."));
+  }
+
+  /**
+   * @author Cedric Stumpf <br> Test method for {@link PersonService#refreshToken(RefreshTokenDto)}
+   * tests for a valid refresh token returns new tokens and revokes the used one
+   */
+  @Test
+  void refreshToken_withValidToken_returnsNewTokens() {
+    // given
+    Claims claims = Jwts.claims().subject("t@tester.com").id("refresh-id").build();
+
+    // when
+    when(jwtGenerator.parseRefreshToken("refresh")).thenReturn(claims);
+    when(personRepository.findByEmail("t@tester.com")).thenReturn(Optional.of(new Person()));
+    when(jwtGenerator.generateAccessToken("t@tester.com")).thenReturn("access");
+    when(jwtGenerator.revoke(claims)).thenReturn(true);
+    when(jwtGenerator.generateRefreshToken("t@tester.com")).thenReturn("new refresh");
+    var response = personService.refreshToken(new RefreshTokenDto("refresh"));
+
+    // then
+    verify(jwtGenerator, times(1)).revoke(claims);
+    assertAll(
+        () -> assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK),
+        () -> assertThat(response.getBody())
+            .isEqualTo(new TokenDto("Bearer access", "new refresh")));
+  }
+
+  /**
+   * @author Cedric Stumpf <br> Test method for {@link PersonService#refreshToken(RefreshTokenDto)}
+   * tests for a refresh token that another request revoked after it was parsed returns
+   * unauthorized without new tokens
+   */
+  @Test
+  void refreshToken_withReplayedToken_returnsUnauthorized() {
+    // given
+    Claims claims = Jwts.claims().subject("t@tester.com").id("refresh-id").build();
+
+    // when
+    when(jwtGenerator.parseRefreshToken("refresh")).thenReturn(claims);
+    when(personRepository.findByEmail("t@tester.com")).thenReturn(Optional.of(new Person()));
+    when(jwtGenerator.revoke(claims)).thenReturn(false);
+    var response = personService.refreshToken(new RefreshTokenDto("refresh"));
+
+    // then
+    verify(jwtGenerator, never()).generateAccessToken(any());
+    verify(jwtGenerator, never()).generateRefreshToken(any());
+    assertAll(
+        () -> assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED),
+        () -> assertThat(response.getBody()).isEqualTo("Bitte melde dich zuerst an!"));
+  }
+
+  /**
+   * @author Cedric Stumpf <br> Test method for {@link PersonService#refreshToken(RefreshTokenDto)}
+   * tests for a revoked refresh token returns unauthorized
+   */
+  @Test
+  void refreshToken_withRevokedToken_returnsUnauthorized() {
+    // when
+    when(jwtGenerator.parseRefreshToken("refresh")).thenThrow(new JwtException("Token revoked"));
+    var response = personService.refreshToken(new RefreshTokenDto("refresh"));
+
+    // then
+    verify(jwtGenerator, never()).revoke(any());
+    verify(jwtGenerator, never()).generateAccessToken(any());
+    assertAll(
+        () -> assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED),
+        () -> assertThat(response.getBody()).isEqualTo("Bitte melde dich zuerst an!"));
+  }
+
+  /**
+   * @author Cedric Stumpf <br> Test method for
+   * {@link PersonService#logoutUser(RefreshTokenDto, String)} tests for valid tokens revokes both
+   */
+  @Test
+  void logoutUser_withValidTokens_revokesTokens() {
+    // given
+    Claims accessClaims = Jwts.claims().subject("t@tester.com").id("access-id").build();
+    Claims refreshClaims = Jwts.claims().subject("t@tester.com").id("refresh-id").build();
+
+    // when
+    when(jwtGenerator.extractToken("Bearer access")).thenReturn("access");
+    when(jwtGenerator.parseAccessToken("access")).thenReturn(accessClaims);
+    when(jwtGenerator.parseRefreshToken("refresh")).thenReturn(refreshClaims);
+    var response = personService.logoutUser(new RefreshTokenDto("refresh"), "Bearer access");
+
+    // then
+    verify(jwtGenerator, times(1)).revoke(accessClaims);
+    verify(jwtGenerator, times(1)).revoke(refreshClaims);
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+  }
+
+  /**
+   * @author Cedric Stumpf <br> Test method for
+   * {@link PersonService#logoutUser(RefreshTokenDto, String)} tests for a refresh token of another
+   * user returns unauthorized
+   */
+  @Test
+  void logoutUser_withRefreshTokenOfOtherUser_returnsUnauthorized() {
+    // given
+    Claims accessClaims = Jwts.claims().subject("t@tester.com").id("access-id").build();
+    Claims refreshClaims = Jwts.claims().subject("other@tester.com").id("refresh-id").build();
+
+    // when
+    when(jwtGenerator.extractToken("Bearer access")).thenReturn("access");
+    when(jwtGenerator.parseAccessToken("access")).thenReturn(accessClaims);
+    when(jwtGenerator.parseRefreshToken("refresh")).thenReturn(refreshClaims);
+    var response = personService.logoutUser(new RefreshTokenDto("refresh"), "Bearer access");
+
+    // then
+    verify(jwtGenerator, never()).revoke(any());
     assertAll(
         () -> assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED),
         () -> assertThat(response.getBody()).isEqualTo("Invalide Anmeldeinformationen"));
@@ -705,25 +854,22 @@ class PersonServiceTest {
                         .street("street")
                         .build())
                 .build());
-    when(addressRepository.findByStateAndCityAndStreetAndZipAndCountry(
-        "state", "city", "street", 12345, "country"))
+    when(addressResolver.resolve(authPersonDto.address()))
         .thenReturn(
-            Optional.of(
-                Address.builder()
-                    .city("city")
-                    .country("country")
-                    .zip(123412)
-                    .state("state")
-                    .street("street")
-                    .build()));
+            Address.builder()
+                .city("city")
+                .country("country")
+                .zip(123412)
+                .state("state")
+                .street("street")
+                .build());
     var response = personService.modifyUser(authPersonDto, "Bearer Token");
 
     // then
     verify(userUtil, times(1)).verifyUser(anyString());
     verify(passwordEncoder, times(1)).matches("Password1234556!", "Password1234556!");
     verify(personRepository, times(1)).saveAndFlush(any(Person.class));
-    verify(addressRepository, times(1))
-        .findByStateAndCityAndStreetAndZipAndCountry("state", "city", "street", 12345, "country");
+    verify(addressResolver, times(1)).resolve(authPersonDto.address());
 
     assertAll(
         () -> assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK),
@@ -873,10 +1019,7 @@ class PersonServiceTest {
     when(userUtil.verifyUser(anyString()))
         .thenReturn(Optional.of(person));
     when(passwordEncoder.matches("Password1234556!", "Password1234556!")).thenReturn(true);
-    when(addressRepository.findByStateAndCityAndStreetAndZipAndCountry(
-        "state", "city", "street", 12345, "country"))
-        .thenReturn(Optional.empty());
-    when(addressRepository.saveAndFlush(any())).thenReturn(
+    when(addressResolver.resolve(authPersonDto.address())).thenReturn(
         Address.builder().street("street").zip(12345).country("country").state("state").city("city")
             .build());
     when(personRepository.saveAndFlush(any())).thenReturn(person);
@@ -885,8 +1028,7 @@ class PersonServiceTest {
     // then
     verify(userUtil, times(1)).verifyUser(anyString());
     verify(passwordEncoder, times(1)).matches("Password1234556!", "Password1234556!");
-    verify(addressRepository, times(1))
-        .findByStateAndCityAndStreetAndZipAndCountry("state", "city", "street", 12345, "country");
+    verify(addressResolver, times(1)).resolve(authPersonDto.address());
     assertAll(
         () -> assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK),
         () -> assertNotNull(response.getBody()),
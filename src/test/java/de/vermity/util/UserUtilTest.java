@@ -8,6 +8,7 @@ import de.vermity.persistence.PersonRepository;
 import de.vermity.security.JWTGenerator;
 import java.util.Optional;
 import java.util.stream.Stream;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
@@ -23,6 +24,8 @@ import org.mockito.junit.jupiter.MockitoExtension;
  * @author Cedric Stumpf
  */
 @ExtendWith(MockitoExtension.class)
+// Mocks JWTGenerator and PersonRepository, Mockito defines the mock classes at runtime
+@DisabledInNativeImage
 class UserUtilTest {
 
   @Mock